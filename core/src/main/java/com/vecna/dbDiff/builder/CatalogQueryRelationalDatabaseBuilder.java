@@ -0,0 +1,592 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+import com.vecna.dbDiff.jdbc.MetadataFactories;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.MetadataCategory;
+import com.vecna.dbDiff.model.ReadProfile;
+import com.vecna.dbDiff.model.SchemaInterner;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Builds a {@link RelationalDatabase} by querying the system catalog directly instead of going through
+ * {@link DatabaseMetaData}. Each kind of schema information is retrieved for the whole schema with a single set-based
+ * query, so the number of round trips doesn't depend on the number of tables.
+ *
+ * Subclasses supply the vendor-specific SQL for each {@link CatalogQuery}. Every query takes the schema names as its only
+ * parameters and must return the columns documented on the corresponding constant. The schema name must be compared with
+ * "IN " followed by {@link #SCHEMA_NAMES}, which is replaced by the parameter list, so that several schemas can be read
+ * at once. Subclasses that also report the expression of the table name column (see
+ * {@link #getTableNameExpression(CatalogQuery)}) and mark where it can be compared with {@link #TABLE_NAMES_FILTER} get a
+ * filter that lists exact table names pushed down into their queries.
+ *
+ * @author ogolberg@vecna.com
+ */
+public abstract class CatalogQueryRelationalDatabaseBuilder implements StreamingRelationalDatabaseBuilder,
+MultiSchemaRelationalDatabaseBuilder {
+  /**
+   * Catalog queries issued by the builder.
+   */
+  protected enum CatalogQuery {
+    /** table catalog, table schema, table name, table type, remarks. */
+    TABLES,
+    /**
+     * table catalog, table schema, table name, column name, sql type ({@link java.sql.Types}), type name, column size,
+     * nullability ({@link DatabaseMetaData#columnNullable} etc), default, ordinal.
+     */
+    COLUMNS,
+    /** table catalog, table schema, table name, column name, key sequence. */
+    PRIMARY_KEYS,
+    /**
+     * referenced table catalog, schema, table and column, referencing table catalog, schema, table and column, key sequence,
+     * constraint name.
+     */
+    FOREIGN_KEYS,
+    /** table catalog, table schema, table name, index name, column name; ordered by index and column position. */
+    INDICES
+  }
+
+  /**
+   * Handles a single row returned by a catalog query.
+   */
+  protected interface RowHandler {
+    /**
+     * Handle a row.
+     * @param rs result set positioned at the row.
+     * @throws SQLException if thrown by the jdbc driver.
+     */
+    void handleRow(ResultSet rs) throws SQLException;
+  }
+
+  /** Placeholder for the list of schema name parameters in the SQL of a {@link CatalogQuery}. */
+  protected static final String SCHEMA_NAMES = "{schemaNames}";
+
+  /**
+   * Placeholder for the table name condition in the SQL of a {@link CatalogQuery}, right after another condition. It's
+   * replaced by " AND " followed by the table name expression and an IN list when the query is restricted to a list of
+   * tables, and removed otherwise.
+   */
+  protected static final String TABLE_NAMES_FILTER = "{tableNamesFilter}";
+
+  /** Maximum number of schemas read by a single query. */
+  private static final int MAX_SCHEMAS_PER_QUERY = 500;
+
+  /** Maximum number of table names pushed down into a single query; longer lists are applied to the returned rows. */
+  private static final int MAX_TABLE_NAMES_PER_QUERY = 1000;
+
+  private final MetadataFactory m_metadataFactory;
+  private ReadProfile m_readProfile = ReadProfile.ALL;
+
+  /**
+   * Create a new builder.
+   * @param metadataFactory a {@link MetadataFactory} that provides the connection to query.
+   */
+  public CatalogQueryRelationalDatabaseBuilder(MetadataFactory metadataFactory) {
+    m_metadataFactory = metadataFactory;
+  }
+
+  /**
+   * Choose the kinds of metadata to read. The queries for the categories that are left out are skipped and tables get
+   * empty columns, keys or indices instead.
+   * @param readProfile the profile; {@link ReadProfile#ALL} by default.
+   */
+  public void setReadProfile(ReadProfile readProfile) {
+    m_readProfile = readProfile;
+  }
+
+  /**
+   * @param query a catalog query.
+   * @return the SQL for the query, with a {@link #SCHEMA_NAMES} placeholder and, if the query has a table name expression,
+   * a {@link #TABLE_NAMES_FILTER} placeholder.
+   */
+  protected abstract String getSql(CatalogQuery query);
+
+  /**
+   * @param query a catalog query.
+   * @return the SQL expression the table name column of the query is computed from (the referencing table for
+   * {@link CatalogQuery#FOREIGN_KEYS}), or null if the query can't be restricted to a list of tables, which is the default.
+   * The expression is compared with an IN list in place of the {@link #TABLE_NAMES_FILTER} placeholder of the query.
+   */
+  protected String getTableNameExpression(CatalogQuery query) {
+    return null;
+  }
+
+  /**
+   * Run a catalog query and feed the returned rows to a handler.
+   * @param query the query.
+   * @param catalogSchema the catalog/schema to read.
+   * @param handler row handler.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected void query(CatalogQuery query, CatalogSchema catalogSchema, RowHandler handler) throws SQLException {
+    try (PreparedStatement statement = m_metadataFactory.getMetadata().getConnection().prepareStatement(getSql(query, 1))) {
+      statement.setString(1, catalogSchema.getSchema());
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          handler.handleRow(rs);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param query a catalog query.
+   * @param schemaCount number of schemas to read.
+   * @return the SQL for the query with the schema names placeholder replaced by a parameter list of the given size and
+   * the table names filter placeholder removed.
+   */
+  protected String getSql(CatalogQuery query, int schemaCount) {
+    return getSql(query, schemaCount, "");
+  }
+
+  /**
+   * @param query a catalog query.
+   * @param schemaCount number of schemas to read.
+   * @param tableNamesFilter replaces the table names filter placeholder.
+   * @return the SQL for the query with the placeholders replaced.
+   */
+  private String getSql(CatalogQuery query, int schemaCount, String tableNamesFilter) {
+    String sql = getSql(query);
+    if (!sql.contains(SCHEMA_NAMES)) {
+      throw new IllegalStateException("the SQL for " + query + " doesn't contain " + SCHEMA_NAMES);
+    }
+    return sql.replace(SCHEMA_NAMES, getParameterList(schemaCount)).replace(TABLE_NAMES_FILTER, tableNamesFilter);
+  }
+
+  /**
+   * @param count number of parameters.
+   * @return a parenthesized list of the given number of parameters.
+   */
+  private static String getParameterList(int count) {
+    StringBuilder parameters = new StringBuilder("(?");
+    for (int i = 1; i < count; i++) {
+      parameters.append(", ?");
+    }
+    return parameters.append(')').toString();
+  }
+
+  /**
+   * @param query a catalog query that has a table name expression.
+   * @param schemaCount number of schemas to read.
+   * @param tableNameCount number of tables to read.
+   * @return the SQL for the query with the placeholders replaced by parameter lists of the given sizes; the schema names
+   * are bound before the table names.
+   */
+  protected String getSql(CatalogQuery query, int schemaCount, int tableNameCount) {
+    if (!getSql(query).contains(TABLE_NAMES_FILTER)) {
+      throw new IllegalStateException("the SQL for " + query + " doesn't contain " + TABLE_NAMES_FILTER);
+    }
+    return getSql(query, schemaCount,
+                  " AND " + getTableNameExpression(query) + " IN " + getParameterList(tableNameCount));
+  }
+
+  /**
+   * Run a catalog query for several schemas at once and feed the returned rows to a handler.
+   * @param query the query.
+   * @param catalogSchemas the catalogs/schemas to read.
+   * @param handler row handler.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected void query(CatalogQuery query, List<CatalogSchema> catalogSchemas, RowHandler handler) throws SQLException {
+    if (catalogSchemas.size() == 1) {
+      query(query, catalogSchemas.get(0), handler);
+      return;
+    }
+    List<String> parameters = new ArrayList<>(catalogSchemas.size());
+    for (CatalogSchema catalogSchema : catalogSchemas) {
+      parameters.add(catalogSchema.getSchema());
+    }
+    execute(getSql(query, catalogSchemas.size()), parameters, handler);
+  }
+
+  /**
+   * Run a catalog query for several schemas at once, restricted to a list of tables if the query supports it, and feed the
+   * returned rows to a handler. Rows of other tables may still be returned.
+   * @param query the query.
+   * @param catalogSchemas the catalogs/schemas to read.
+   * @param tableNames names of the tables to read or null to read all tables.
+   * @param handler row handler.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected void query(CatalogQuery query, List<CatalogSchema> catalogSchemas, Collection<String> tableNames,
+                       RowHandler handler) throws SQLException {
+    if (tableNames == null || getTableNameExpression(query) == null) {
+      query(query, catalogSchemas, handler);
+      return;
+    }
+    List<String> parameters = new ArrayList<>(catalogSchemas.size() + tableNames.size());
+    for (CatalogSchema catalogSchema : catalogSchemas) {
+      parameters.add(catalogSchema.getSchema());
+    }
+    parameters.addAll(tableNames);
+    execute(getSql(query, catalogSchemas.size(), tableNames.size()), parameters, handler);
+  }
+
+  /**
+   * Execute a query with string parameters and feed the returned rows to a handler.
+   * @param sql the query.
+   * @param parameters the parameters.
+   * @param handler row handler.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private void execute(String sql, List<String> parameters, RowHandler handler) throws SQLException {
+    try (PreparedStatement statement = m_metadataFactory.getMetadata().getConnection().prepareStatement(sql)) {
+      for (int i = 0; i < parameters.size(); i++) {
+        statement.setString(i + 1, parameters.get(i));
+      }
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          handler.handleRow(rs);
+        }
+      }
+    }
+  }
+
+  /**
+   * Convert a row returned by the {@link CatalogQuery#TABLES} query to a table.
+   * @param rs result set positioned at a table row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the table.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected RelationalTable readTable(ResultSet rs, SchemaInterner interner) throws SQLException {
+    RelationalTable table = new RelationalTable(interner.catalogSchema(rs.getString(1), rs.getString(2)),
+                                                interner.name(rs.getString(3)));
+    table.setType(interner.name(rs.getString(4)));
+    table.setTypeName(interner.name(rs.getString(5)));
+    return table;
+  }
+
+  /**
+   * Convert a row returned by the {@link CatalogQuery#COLUMNS} query to a column.
+   * @param rs result set positioned at a column row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the column.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected Column readColumn(ResultSet rs, SchemaInterner interner) throws SQLException {
+    Column column = new Column(interner.catalogSchema(rs.getString(1), rs.getString(2)), interner.name(rs.getString(4)),
+                               interner.name(rs.getString(3)));
+    column.setColumnType(interner.columnType(rs.getInt(5), rs.getString(6)));
+    column.setColumnSize(rs.getInt(7));
+
+    int nullable = rs.getInt(8);
+    column.setIsNullable((DatabaseMetaData.columnNullable == nullable ? true
+        : (DatabaseMetaData.columnNoNulls == nullable ? false : null)));
+
+    column.setDefault(interner.name(rs.getString(9)));
+    column.setOrdinal(rs.getInt(10));
+    return column;
+  }
+
+  /**
+   * Convert a row returned by the {@link CatalogQuery#FOREIGN_KEYS} query to a foreign key.
+   * @param rs result set positioned at a foreign key row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the foreign key.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected ForeignKey readForeignKey(ResultSet rs, SchemaInterner interner) throws SQLException {
+    ForeignKey fk = new ForeignKey();
+    fk.setPkCatalogSchema(interner.catalogSchema(rs.getString(1), rs.getString(2)));
+    fk.setPkTable(interner.name(rs.getString(3)));
+    fk.setPkColumn(interner.name(rs.getString(4)));
+
+    fk.setFkCatalogSchema(interner.catalogSchema(rs.getString(5), rs.getString(6)));
+    fk.setFkTable(interner.name(rs.getString(7)));
+    fk.setFkColumn(interner.name(rs.getString(8)));
+
+    fk.setKeySeq(interner.name(rs.getString(9)));
+    fk.setFkName(interner.name(rs.getString(10)));
+    return fk;
+  }
+
+  /**
+   * Find the table a catalog row belongs to.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param rs result set positioned at a row that starts with table catalog, schema and name.
+   * @param offset 1-based position of the table catalog column.
+   * @return the table or null if the row belongs to a table that's not being read.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private RelationalTable findTable(Table<CatalogSchema, String, RelationalTable> tables, ResultSet rs, int offset)
+      throws SQLException {
+    return tables.get(new CatalogSchema(rs.getString(offset), rs.getString(offset + 1)), rs.getString(offset + 2));
+  }
+
+  @Override
+  public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) throws RelationalDatabaseReadException,
+  InconsistentSchemaException {
+    return createRelationalDatabase(catalogSchema, new TableFilter());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If the filter includes exact table names and the queries support it, they're restricted to those tables; otherwise
+   * every catalog query covers the whole schema. Rows that belong to excluded tables are skipped.
+   */
+  @Override
+  public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    return new RelationalDatabase(readTables(Collections.singletonList(catalogSchema), filter, null).get(catalogSchema));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Every catalog query covers the whole schema, so tables are complete only after the last query returns. They're passed
+   * to the listener one by one afterwards.
+   */
+  @Override
+  public void readRelationalTables(CatalogSchema catalogSchema, RelationalTableListener listener)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    readRelationalTables(catalogSchema, new TableFilter(), listener);
+  }
+
+  @Override
+  public void readRelationalTables(CatalogSchema catalogSchema, TableFilter filter, RelationalTableListener listener)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    readTables(Collections.singletonList(catalogSchema), filter, listener);
+  }
+
+  @Override
+  public Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    return createRelationalDatabases(catalogSchemas, new TableFilter());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The schemas are read in batches of up to {@value #MAX_SCHEMAS_PER_QUERY}, with one query per kind of metadata per
+   * batch. The tables returned for a schema name are matched to the requested schema of the same catalog, or to the
+   * requested schema without a catalog if there's none; databases that don't report catalogs match by schema name.
+   */
+  @Override
+  public Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas,
+                                                                         TableFilter filter)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    Map<CatalogSchema, RelationalDatabase> databases = new LinkedHashMap<>();
+    for (List<CatalogSchema> batch : Lists.partition(new ArrayList<>(new LinkedHashSet<>(catalogSchemas)),
+                                                     MAX_SCHEMAS_PER_QUERY)) {
+      for (Map.Entry<CatalogSchema, List<RelationalTable>> entry : readTables(batch, filter, null).entrySet()) {
+        databases.put(entry.getKey(), new RelationalDatabase(entry.getValue()));
+      }
+    }
+    return databases;
+  }
+
+  /**
+   * Read the tables of one or more schemas.
+   * @param catalogSchemas the schemas.
+   * @param filter selects the tables to read.
+   * @param listener receives the tables as they're completed; may be null.
+   * @return the tables of each schema, by schema.
+   */
+  private Map<CatalogSchema, List<RelationalTable>> readTables(final List<CatalogSchema> catalogSchemas,
+                                                               final TableFilter filter, RelationalTableListener listener) {
+    final Map<CatalogSchema, List<RelationalTable>> tablesBySchema = new LinkedHashMap<>();
+    final Map<String, CatalogSchema> requestedSchemasByName = new HashMap<>();
+    for (CatalogSchema catalogSchema : catalogSchemas) {
+      tablesBySchema.put(catalogSchema, new ArrayList<RelationalTable>());
+      if (!requestedSchemasByName.containsKey(catalogSchema.getSchema()) || catalogSchema.getCatalog() == null) {
+        requestedSchemasByName.put(catalogSchema.getSchema(), catalogSchema);
+      }
+    }
+
+    final SchemaInterner interner = new SchemaInterner();
+    final List<RelationalTable> tables = new ArrayList<>();
+    final Table<CatalogSchema, String, RelationalTable> tableIndex = HashBasedTable.create();
+
+    final ListMultimap<RelationalTable, Column> columns = ArrayListMultimap.create();
+    final ListMultimap<RelationalTable, ForeignKey> fks = ArrayListMultimap.create();
+    final Map<RelationalTable, Map<Short, String>> pkColumns = new HashMap<>();
+    final Map<RelationalTable, ListMultimap<String, String>> idxColumns = new HashMap<>();
+
+    Set<String> includedNames = filter.getIncludedNames();
+    Collection<String> tableNames = includedNames == null || includedNames.size() > MAX_TABLE_NAMES_PER_QUERY ? null
+        : new ArrayList<>(includedNames);
+
+    try {
+      query(CatalogQuery.TABLES, catalogSchemas, tableNames, new RowHandler() {
+        @Override
+        public void handleRow(ResultSet rs) throws SQLException {
+          RelationalTable table = readTable(rs, interner);
+          CatalogSchema catalogSchema = catalogSchemas.size() == 1 ? catalogSchemas.get(0)
+              : getRequestedSchema(tablesBySchema.keySet(), requestedSchemasByName, table.getCatalogSchema());
+          if (catalogSchema != null && filter.accept(table.getName())) {
+            tables.add(table);
+            tablesBySchema.get(catalogSchema).add(table);
+            tableIndex.put(table.getCatalogSchema(), table.getName(), table);
+          }
+        }
+      });
+
+      if (tables.isEmpty()) {
+        return tablesBySchema;
+      }
+
+      if (tableNames != null) {
+        // the tables that were actually found, without the excluded ones
+        Set<String> foundNames = new LinkedHashSet<>();
+        for (RelationalTable table : tables) {
+          foundNames.add(table.getName());
+        }
+        tableNames = foundNames;
+      }
+
+      if (m_readProfile.includes(MetadataCategory.COLUMNS)) {
+        query(CatalogQuery.COLUMNS, catalogSchemas, tableNames, new RowHandler() {
+          @Override
+          public void handleRow(ResultSet rs) throws SQLException {
+            RelationalTable table = findTable(tableIndex, rs, 1);
+            if (table != null) {
+              columns.put(table, readColumn(rs, interner));
+            }
+          }
+        });
+      }
+
+      if (m_readProfile.includes(MetadataCategory.PRIMARY_KEYS)) {
+        query(CatalogQuery.PRIMARY_KEYS, catalogSchemas, tableNames, new RowHandler() {
+          @Override
+          public void handleRow(ResultSet rs) throws SQLException {
+            RelationalTable table = findTable(tableIndex, rs, 1);
+            if (table != null) {
+              Map<Short, String> primaryKeys = pkColumns.get(table);
+              if (primaryKeys == null) {
+                primaryKeys = new TreeMap<>();
+                pkColumns.put(table, primaryKeys);
+              }
+              primaryKeys.put(rs.getShort(5), interner.name(rs.getString(4)));
+            }
+          }
+        });
+      }
+
+      if (m_readProfile.includes(MetadataCategory.FOREIGN_KEYS)) {
+        query(CatalogQuery.FOREIGN_KEYS, catalogSchemas, tableNames, new RowHandler() {
+          @Override
+          public void handleRow(ResultSet rs) throws SQLException {
+            RelationalTable table = findTable(tableIndex, rs, 5);
+            if (table != null) {
+              fks.put(table, readForeignKey(rs, interner));
+            }
+          }
+        });
+      }
+
+      if (m_readProfile.includes(MetadataCategory.INDICES)) {
+        query(CatalogQuery.INDICES, catalogSchemas, tableNames, new RowHandler() {
+          @Override
+          public void handleRow(ResultSet rs) throws SQLException {
+            RelationalTable table = findTable(tableIndex, rs, 1);
+            if (table != null) {
+              ListMultimap<String, String> tableIdxColumns = idxColumns.get(table);
+              if (tableIdxColumns == null) {
+                tableIdxColumns = LinkedListMultimap.create();
+                idxColumns.put(table, tableIdxColumns);
+              }
+              tableIdxColumns.put(interner.name(rs.getString(4)), interner.name(rs.getString(5)));
+            }
+          }
+        });
+      }
+    } catch (SQLException e) {
+      throw new RelationalDatabaseReadException("could not read schema information", e);
+    } finally {
+      MetadataFactories.releaseMetadata(m_metadataFactory);
+    }
+
+    for (RelationalTable table : tables) {
+      table.setColumns(columns.get(table));
+      table.setFks(new HashSet<>(fks.get(table)));
+
+      Map<Short, String> primaryKeys = pkColumns.get(table);
+      table.setPkColumns(primaryKeys == null ? new ArrayList<String>() : Lists.newArrayList(primaryKeys.values()));
+
+      ListMultimap<String, String> tableIdxColumns = idxColumns.get(table);
+      if (tableIdxColumns == null) {
+        tableIdxColumns = LinkedListMultimap.create();
+      }
+      table.setIndices(RelationalDatabaseBuilderImpl.buildIndices(table, tableIdxColumns));
+
+      if (listener != null) {
+        listener.tableRead(table);
+      }
+    }
+
+    return tablesBySchema;
+  }
+
+  /**
+   * Find the requested schema a table returned by a multi-schema query belongs to.
+   * @param requestedSchemas the requested schemas.
+   * @param requestedSchemasByName the requested schemas by schema name, preferring the ones without a catalog.
+   * @param catalogSchema the catalog/schema reported for the table.
+   * @return the requested schema of the same catalog, the requested schema without a catalog if there's none, or (if the
+   * database doesn't report a catalog) the requested schema of the same name; null if the schema wasn't requested.
+   */
+  private static CatalogSchema getRequestedSchema(Set<CatalogSchema> requestedSchemas,
+                                                  Map<String, CatalogSchema> requestedSchemasByName,
+                                                  CatalogSchema catalogSchema) {
+    if (requestedSchemas.contains(catalogSchema)) {
+      return catalogSchema;
+    }
+    CatalogSchema requested = requestedSchemasByName.get(catalogSchema.getSchema());
+    if (requested != null && (requested.getCatalog() == null || catalogSchema.getCatalog() == null)) {
+      return requested;
+    }
+    return null;
+  }
+
+  /**
+   * Catalog queries run on the calling thread, so there's nothing to release.
+   */
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.util.Map;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+
+/**
+ * Cheaply retrieves a change marker for every table of a schema. A marker is an opaque string that changes whenever the
+ * definition of the table changes, so {@link IncrementalRelationalDatabaseBuilder} can tell which tables need to be
+ * re-read by comparing the markers to the ones it saw last time.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface ChangeMarkerReader {
+  /**
+   * @param catalogSchema the schema.
+   * @return change markers by table name, for all tables of the schema.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   */
+  Map<String, String> readChangeMarkers(CatalogSchema catalogSchema) throws RelationalDatabaseReadException;
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.vecna.dbDiff.jdbc.MetadataFactories;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+
+/**
+ * Fallback {@link ChangeMarkerReader} for databases that don't expose DDL change markers. The marker of a table is the
+ * number of its columns and a hash of their definitions, read with a single
+ * {@link java.sql.DatabaseMetaData#getColumns(String, String, String, String)} call for the whole schema. Only column
+ * changes (and added or dropped tables) are detected; key and index changes are not.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class ColumnDigestChangeMarkerReader implements ChangeMarkerReader {
+  private final MetadataFactory m_metadataFactory;
+
+  /**
+   * Create a new reader.
+   * @param metadataFactory a {@link MetadataFactory}.
+   */
+  public ColumnDigestChangeMarkerReader(MetadataFactory metadataFactory) {
+    m_metadataFactory = metadataFactory;
+  }
+
+  /**
+   * @param hasher hasher.
+   * @param s a string (may be null).
+   */
+  private static void putString(Hasher hasher, String s) {
+    if (s == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(s.length()).putString(s, Charsets.UTF_8);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Tables without columns aren't listed by getColumns(), so they don't get a marker.
+   */
+  @Override
+  public Map<String, String> readChangeMarkers(CatalogSchema catalogSchema) {
+    Map<String, Hasher> hashers = new TreeMap<>();
+    Map<String, Integer> counts = new TreeMap<>();
+
+    try {
+      ResultSet rs = m_metadataFactory.getMetadata().getColumns(catalogSchema.getCatalog(), catalogSchema.getSchema(),
+                                                                null, null);
+      try {
+        while (rs.next()) {
+          String table = rs.getString(3);
+          Hasher hasher = hashers.get(table);
+          if (hasher == null) {
+            hasher = Hashing.murmur3_128().newHasher();
+            hashers.put(table, hasher);
+            counts.put(table, 0);
+          }
+          counts.put(table, counts.get(table) + 1);
+
+          // name, type, type name, size, nullability, default, ordinal
+          putString(hasher, rs.getString(4));
+          hasher.putInt(rs.getInt(5));
+          putString(hasher, rs.getString(6));
+          hasher.putInt(rs.getInt(7));
+          hasher.putInt(rs.getInt(11));
+          putString(hasher, rs.getString(13));
+          hasher.putInt(rs.getInt(17));
+        }
+      } finally {
+        rs.close();
+      }
+    } catch (SQLException e) {
+      throw new RelationalDatabaseReadException("could not read change markers", e);
+    } finally {
+      MetadataFactories.releaseMetadata(m_metadataFactory);
+    }
+
+    Map<String, String> markers = new TreeMap<>();
+    for (Map.Entry<String, Hasher> entry : hashers.entrySet()) {
+      markers.put(entry.getKey(), counts.get(entry.getKey()) + ":" + entry.getValue().hash());
+    }
+    return markers;
+  }
+}
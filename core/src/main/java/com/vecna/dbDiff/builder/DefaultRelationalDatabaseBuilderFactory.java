@@ -0,0 +1,89 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+
+/**
+ * This abstract factory picks the fastest {@link RelationalDatabaseBuilder} available for a jdbc driver.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class DefaultRelationalDatabaseBuilderFactory {
+  /**
+   * Create the default builder for a jdbc driver. Drivers without a dedicated catalog reader get a
+   * {@link RelationalDatabaseBuilderImpl}.
+   * @param jdbcDriver driver class name.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @return the builder.
+   */
+  public static StreamingRelationalDatabaseBuilder getRelationalDatabaseBuilder(String jdbcDriver, MetadataFactory metadataFactory) {
+    return getRelationalDatabaseBuilder(jdbcDriver, metadataFactory, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create the default builder for a jdbc driver, limiting the number of threads it reads with. The catalog readers use a
+   * single thread regardless.
+   * @param jdbcDriver driver class name.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @param parallelism maximum number of threads the builder reads with.
+   * @return the builder.
+   */
+  public static StreamingRelationalDatabaseBuilder getRelationalDatabaseBuilder(String jdbcDriver, MetadataFactory metadataFactory,
+                                                                                int parallelism) {
+    if ("org.postgresql.Driver".equals(jdbcDriver)) {
+      return new PostgreSqlRelationalDatabaseBuilder(metadataFactory);
+    } else if ("net.sourceforge.jtds.jdbc.Driver".equals(jdbcDriver)) {
+      return new SQLServerRelationalDatabaseBuilder(metadataFactory);
+    } else {
+      return new RelationalDatabaseBuilderImpl(metadataFactory, parallelism);
+    }
+  }
+
+  /**
+   * Create the default builder for reading many schemas of a database at once.
+   * @param jdbcDriver driver class name.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @return the builder.
+   */
+  public static MultiSchemaRelationalDatabaseBuilder getMultiSchemaRelationalDatabaseBuilder(String jdbcDriver,
+                                                                                             MetadataFactory metadataFactory) {
+    if ("org.postgresql.Driver".equals(jdbcDriver)) {
+      return new PostgreSqlRelationalDatabaseBuilder(metadataFactory);
+    } else if ("net.sourceforge.jtds.jdbc.Driver".equals(jdbcDriver)) {
+      return new SQLServerRelationalDatabaseBuilder(metadataFactory);
+    } else {
+      return new RelationalDatabaseBuilderImpl(metadataFactory);
+    }
+  }
+
+  /**
+   * Create the default change marker reader for a jdbc driver, for use with an
+   * {@link IncrementalRelationalDatabaseBuilder}. Drivers without native change markers get a
+   * {@link ColumnDigestChangeMarkerReader}.
+   * @param jdbcDriver driver class name.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @return the change marker reader.
+   */
+  public static ChangeMarkerReader getChangeMarkerReader(String jdbcDriver, MetadataFactory metadataFactory) {
+    if ("org.postgresql.Driver".equals(jdbcDriver)) {
+      return new PostgreSqlChangeMarkerReader(metadataFactory);
+    } else {
+      return new ColumnDigestChangeMarkerReader(metadataFactory);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+*/
+
+package com.vecna.dbDiff.builder;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+
+/**
+ * A {@link RelationalDatabaseBuilder} that can read a subset of the tables of a schema.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface FilteringRelationalDatabaseBuilder extends RelationalDatabaseBuilder {
+  /**
+   * @param catalogSchema The schema to create a RelationalDatabase for.  Note: must have either catalog or schema defined
+   * @param filter selects the tables to read.
+   * @return A RelationalDatabase populated with the selected tables
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent (see {@link InconsistentSchemaException}).
+   */
+  RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter)
+      throws RelationalDatabaseReadException, InconsistentSchemaException;
+}
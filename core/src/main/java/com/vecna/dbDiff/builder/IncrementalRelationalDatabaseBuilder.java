@@ -0,0 +1,197 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Keeps the schema it read last and, when asked to read the same schema again, only re-reads the tables whose change
+ * markers (see {@link ChangeMarkerReader}) changed since then. The re-read tables are spliced into a new
+ * {@link RelationalDatabase} together with the unchanged tables of the previous one, which are shared between the two.
+ * Tables whose foreign keys reference a changed or dropped table are re-read as well, since the referenced columns may
+ * have changed.
+ *
+ * The first read of a schema, a read of a different schema or a read with a different {@link TableFilter} instance reads
+ * the whole schema. Markers are read before the tables, so changes made during a read are picked up by the next one.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class IncrementalRelationalDatabaseBuilder implements FilteringRelationalDatabaseBuilder, Closeable {
+  private final FilteringRelationalDatabaseBuilder m_builder;
+  private final ChangeMarkerReader m_changeMarkerReader;
+
+  private CatalogSchema m_catalogSchema;
+  private TableFilter m_filter;
+  private RelationalDatabase m_database;
+  private Map<String, String> m_markers;
+  private Set<String> m_changedTableNames = Collections.emptySet();
+
+  /**
+   * Create a new builder.
+   * @param builder the builder that reads the tables; closed together with this builder if it's {@link Closeable}.
+   * @param changeMarkerReader reads the change markers of the schema.
+   */
+  public IncrementalRelationalDatabaseBuilder(FilteringRelationalDatabaseBuilder builder,
+                                              ChangeMarkerReader changeMarkerReader) {
+    m_builder = builder;
+    m_changeMarkerReader = changeMarkerReader;
+  }
+
+  @Override
+  public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) throws RelationalDatabaseReadException,
+  InconsistentSchemaException {
+    return createRelationalDatabase(catalogSchema, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Pass the same filter instance every time to read the schema incrementally.
+   */
+  @Override
+  public synchronized RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter)
+      throws RelationalDatabaseReadException, InconsistentSchemaException {
+    Map<String, String> markers = m_changeMarkerReader.readChangeMarkers(catalogSchema);
+
+    if (m_database == null || !catalogSchema.equals(m_catalogSchema) || filter != m_filter) {
+      RelationalDatabase database = filter == null ? m_builder.createRelationalDatabase(catalogSchema)
+          : m_builder.createRelationalDatabase(catalogSchema, filter);
+      Set<String> changedTableNames = new HashSet<>();
+      for (RelationalTable table : database.getTables()) {
+        changedTableNames.add(table.getName());
+      }
+      update(catalogSchema, filter, database, markers, changedTableNames);
+      return database;
+    }
+
+    Set<String> changed = new HashSet<>();
+    for (Map.Entry<String, String> entry : markers.entrySet()) {
+      if ((filter == null || filter.accept(entry.getKey()))
+          && !Objects.equal(entry.getValue(), m_markers.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+
+    Set<String> dropped = new HashSet<>();
+    for (String name : m_markers.keySet()) {
+      if (!markers.containsKey(name) && m_database.getTableByName(name) != null) {
+        dropped.add(name);
+      }
+    }
+
+    if (changed.isEmpty() && dropped.isEmpty()) {
+      update(catalogSchema, filter, m_database, markers, Collections.<String>emptySet());
+      return m_database;
+    }
+
+    for (RelationalTable table : m_database.getTables()) {
+      if (!changed.contains(table.getName()) && !dropped.contains(table.getName())) {
+        for (ForeignKey fk : table.getFks()) {
+          if (changed.contains(fk.getPkTable()) || dropped.contains(fk.getPkTable())) {
+            changed.add(table.getName());
+            break;
+          }
+        }
+      }
+    }
+
+    TableFilter changedFilter = new TableFilter();
+    for (String name : changed) {
+      changedFilter.addIncludedName(name);
+    }
+    Map<String, RelationalTable> reread = new HashMap<>();
+    for (RelationalTable table : m_builder.createRelationalDatabase(catalogSchema, changedFilter).getTables()) {
+      reread.put(table.getName(), table);
+    }
+
+    // keep the order of the previous read, new tables go last
+    List<RelationalTable> tables = new ArrayList<>();
+    for (RelationalTable table : m_database.getTables()) {
+      if (changed.contains(table.getName())) {
+        RelationalTable rereadTable = reread.remove(table.getName());
+        if (rereadTable != null) {
+          tables.add(rereadTable);
+        }
+      } else if (!dropped.contains(table.getName())) {
+        tables.add(table);
+      }
+    }
+    tables.addAll(reread.values());
+
+    Set<String> changedTableNames = new HashSet<>(changed);
+    changedTableNames.addAll(dropped);
+
+    RelationalDatabase database = new RelationalDatabase(tables);
+    update(catalogSchema, filter, database, markers, changedTableNames);
+    return database;
+  }
+
+  /**
+   * Remember the result of a read.
+   * @param catalogSchema the schema that was read.
+   * @param filter the filter it was read with.
+   * @param database the result.
+   * @param markers the change markers read before the tables.
+   * @param changedTableNames names of the tables that were read or dropped.
+   */
+  private void update(CatalogSchema catalogSchema, TableFilter filter, RelationalDatabase database,
+                      Map<String, String> markers, Set<String> changedTableNames) {
+    m_catalogSchema = catalogSchema;
+    m_filter = filter;
+    m_database = database;
+    m_markers = markers;
+    m_changedTableNames = Collections.unmodifiableSet(changedTableNames);
+  }
+
+  /**
+   * @return names of the tables that were added, re-read or dropped by the last read; all tables if the last read wasn't
+   * incremental.
+   */
+  public synchronized Set<String> getChangedTableNames() {
+    return m_changedTableNames;
+  }
+
+  /**
+   * Forget the last read, so that the next one reads the whole schema.
+   */
+  public synchronized void reset() {
+    m_database = null;
+    m_markers = null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (m_builder instanceof Closeable) {
+      ((Closeable) m_builder).close();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.SchemaInterner;
+import com.vecna.dbDiff.model.db.Column;
+
+/**
+ * Reads a schema from the standard INFORMATION_SCHEMA views (TABLES, COLUMNS, TABLE_CONSTRAINTS, KEY_COLUMN_USAGE and
+ * REFERENTIAL_CONSTRAINTS). Works with any database that implements these views and doesn't have a dedicated reader.
+ *
+ * Note that the standard views don't describe plain (non-unique) indices, so only primary key and unique constraints are
+ * reported as indices, named after the constraint, and indices that don't back a constraint are never read. When such a
+ * schema is compared against a reference built by {@link RelationalDatabaseBuilderImpl} from the JDBC metadata, every
+ * plain index of the reference is reported as missing by the index comparison. Use
+ * {@link RelationalDatabaseBuilderImpl} for both sides if plain indices matter, or exclude
+ * {@link com.vecna.dbDiff.model.MetadataCategory#INDICES} from the read profile of the comparison.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class InformationSchemaRelationalDatabaseBuilder extends CatalogQueryRelationalDatabaseBuilder {
+  private static final Map<String, Integer> SQL_TYPES = ImmutableMap.<String, Integer>builder()
+      .put("CHARACTER", Types.CHAR)
+      .put("CHAR", Types.CHAR)
+      .put("NATIONAL CHARACTER", Types.NCHAR)
+      .put("CHARACTER VARYING", Types.VARCHAR)
+      .put("VARCHAR", Types.VARCHAR)
+      .put("NATIONAL CHARACTER VARYING", Types.NVARCHAR)
+      .put("CHARACTER LARGE OBJECT", Types.CLOB)
+      .put("CLOB", Types.CLOB)
+      .put("TEXT", Types.LONGVARCHAR)
+      .put("BINARY", Types.BINARY)
+      .put("BINARY VARYING", Types.VARBINARY)
+      .put("VARBINARY", Types.VARBINARY)
+      .put("BINARY LARGE OBJECT", Types.BLOB)
+      .put("BLOB", Types.BLOB)
+      .put("NUMERIC", Types.NUMERIC)
+      .put("DECIMAL", Types.DECIMAL)
+      .put("TINYINT", Types.TINYINT)
+      .put("SMALLINT", Types.SMALLINT)
+      .put("INTEGER", Types.INTEGER)
+      .put("INT", Types.INTEGER)
+      .put("BIGINT", Types.BIGINT)
+      .put("REAL", Types.REAL)
+      .put("FLOAT", Types.FLOAT)
+      .put("DOUBLE", Types.DOUBLE)
+      .put("DOUBLE PRECISION", Types.DOUBLE)
+      .put("BOOLEAN", Types.BOOLEAN)
+      .put("BIT", Types.BIT)
+      .put("DATE", Types.DATE)
+      .put("TIME", Types.TIME)
+      .put("TIME WITHOUT TIME ZONE", Types.TIME)
+      .put("TIME WITH TIME ZONE", Types.TIME)
+      .put("TIMESTAMP", Types.TIMESTAMP)
+      .put("TIMESTAMP WITHOUT TIME ZONE", Types.TIMESTAMP)
+      .put("TIMESTAMP WITH TIME ZONE", Types.TIMESTAMP)
+      .put("DATETIME", Types.TIMESTAMP)
+      .put("ARRAY", Types.ARRAY)
+      .build();
+
+  private static final String TABLES_SQL =
+      "SELECT TABLE_CATALOG, TABLE_SCHEMA, TABLE_NAME, 'TABLE', NULL "
+      + "FROM INFORMATION_SCHEMA.TABLES "
+      + "WHERE TABLE_SCHEMA IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " AND TABLE_TYPE IN ('BASE TABLE', 'TABLE') "
+      + "ORDER BY TABLE_NAME";
+
+  private static final String COLUMNS_SQL =
+      "SELECT TABLE_CATALOG, TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, DATA_TYPE, "
+      + "CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION, NUMERIC_PRECISION_RADIX, "
+      + "CASE WHEN IS_NULLABLE = 'YES' THEN 1 ELSE 0 END, COLUMN_DEFAULT, ORDINAL_POSITION "
+      + "FROM INFORMATION_SCHEMA.COLUMNS "
+      + "WHERE TABLE_SCHEMA IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+  private static final String KEY_COLUMNS_SQL =
+      "SELECT kcu.TABLE_CATALOG, kcu.TABLE_SCHEMA, kcu.TABLE_NAME, %s, kcu.ORDINAL_POSITION "
+      + "FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc "
+      + "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE kcu ON kcu.CONSTRAINT_CATALOG = tc.CONSTRAINT_CATALOG "
+      + "AND kcu.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA AND kcu.CONSTRAINT_NAME = tc.CONSTRAINT_NAME "
+      + "AND kcu.TABLE_NAME = tc.TABLE_NAME "
+      + "WHERE tc.CONSTRAINT_TYPE IN (%s) AND tc.TABLE_SCHEMA IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY kcu.TABLE_NAME, tc.CONSTRAINT_NAME, kcu.ORDINAL_POSITION";
+
+  private static final String PRIMARY_KEYS_SQL = String.format(KEY_COLUMNS_SQL, "kcu.COLUMN_NAME", "'PRIMARY KEY'");
+
+  private static final String INDICES_SQL = String.format(KEY_COLUMNS_SQL, "tc.CONSTRAINT_NAME, kcu.COLUMN_NAME",
+                                                          "'PRIMARY KEY', 'UNIQUE'");
+
+  private static final String FOREIGN_KEYS_SQL =
+      "SELECT pk.TABLE_CATALOG, pk.TABLE_SCHEMA, pk.TABLE_NAME, pk.COLUMN_NAME, "
+      + "fk.TABLE_CATALOG, fk.TABLE_SCHEMA, fk.TABLE_NAME, fk.COLUMN_NAME, fk.ORDINAL_POSITION, rc.CONSTRAINT_NAME "
+      + "FROM INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS rc "
+      + "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE fk ON fk.CONSTRAINT_CATALOG = rc.CONSTRAINT_CATALOG "
+      + "AND fk.CONSTRAINT_SCHEMA = rc.CONSTRAINT_SCHEMA AND fk.CONSTRAINT_NAME = rc.CONSTRAINT_NAME "
+      + "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE pk ON pk.CONSTRAINT_CATALOG = rc.UNIQUE_CONSTRAINT_CATALOG "
+      + "AND pk.CONSTRAINT_SCHEMA = rc.UNIQUE_CONSTRAINT_SCHEMA AND pk.CONSTRAINT_NAME = rc.UNIQUE_CONSTRAINT_NAME "
+      + "AND pk.ORDINAL_POSITION = fk.POSITION_IN_UNIQUE_CONSTRAINT "
+      + "WHERE rc.CONSTRAINT_SCHEMA IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY fk.TABLE_NAME, rc.CONSTRAINT_NAME, fk.ORDINAL_POSITION";
+
+  /**
+   * Create a new builder.
+   * @param metadataFactory a {@link MetadataFactory} that provides the connection to query.
+   */
+  public InformationSchemaRelationalDatabaseBuilder(MetadataFactory metadataFactory) {
+    super(metadataFactory);
+  }
+
+  @Override
+  protected String getSql(CatalogQuery query) {
+    switch (query) {
+      case TABLES:
+        return TABLES_SQL;
+      case COLUMNS:
+        return COLUMNS_SQL;
+      case PRIMARY_KEYS:
+        return PRIMARY_KEYS_SQL;
+      case FOREIGN_KEYS:
+        return FOREIGN_KEYS_SQL;
+      case INDICES:
+        return INDICES_SQL;
+      default:
+        throw new IllegalArgumentException("unknown query " + query);
+    }
+  }
+
+  @Override
+  protected String getTableNameExpression(CatalogQuery query) {
+    switch (query) {
+      case TABLES:
+      case COLUMNS:
+        return "TABLE_NAME";
+      case FOREIGN_KEYS:
+        return "fk.TABLE_NAME";
+      default:
+        return "kcu.TABLE_NAME";
+    }
+  }
+
+  /**
+   * Convert an INFORMATION_SCHEMA.COLUMNS row to a column. The row contains table catalog, table schema, table name,
+   * column name, standard data type name, character length, numeric precision and its radix, nullability, default and
+   * ordinal.
+   * @param rs result set positioned at a column row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the column.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  @Override
+  protected Column readColumn(ResultSet rs, SchemaInterner interner) throws SQLException {
+    Column column = new Column(interner.catalogSchema(rs.getString(1), rs.getString(2)), interner.name(rs.getString(4)),
+                               interner.name(rs.getString(3)));
+
+    String dataType = rs.getString(5);
+    Integer sqlType = dataType == null ? null : SQL_TYPES.get(dataType.toUpperCase());
+
+    column.setColumnType(interner.columnType(sqlType == null ? Types.OTHER : sqlType, dataType));
+    int columnSize = rs.getInt(6);
+    if (rs.wasNull()) {
+      columnSize = getDecimalPrecision(rs.getInt(7), rs.getInt(8));
+    }
+    column.setColumnSize(columnSize);
+    column.setIsNullable(rs.getInt(9) == 1);
+    column.setDefault(interner.name(rs.getString(10)));
+    column.setOrdinal(rs.getInt(11));
+    return column;
+  }
+
+  /**
+   * Convert a numeric precision to decimal digits, which is how the jdbc drivers report the size of numeric columns. A
+   * binary precision is converted to the number of digits of the largest value it holds, e.g. 64 bits (BIGINT) to 19 and
+   * 32 bits (INTEGER) to 10.
+   * @param precision the NUMERIC_PRECISION of a column, 0 if there's none.
+   * @param radix the NUMERIC_PRECISION_RADIX of the column, 0 if there's none.
+   * @return the precision in decimal digits.
+   */
+  private static int getDecimalPrecision(int precision, int radix) {
+    if (radix != 2 || precision == 0) {
+      return precision;
+    }
+    return (int) Math.floor((precision - 1) * Math.log10(2)) + 1;
+  }
+}
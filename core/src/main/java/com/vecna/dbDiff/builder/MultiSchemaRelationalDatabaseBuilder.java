@@ -0,0 +1,52 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+
+/**
+ * A {@link FilteringRelationalDatabaseBuilder} that can read many schemas of the same database at once (e.g. one schema
+ * per tenant), sharing metadata queries, connections and threads between them.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface MultiSchemaRelationalDatabaseBuilder extends FilteringRelationalDatabaseBuilder {
+  /**
+   * @param catalogSchemas the schemas to read.
+   * @return a RelationalDatabase for each schema, in the order the schemas were passed in.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent (see {@link InconsistentSchemaException}).
+   */
+  Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas)
+      throws RelationalDatabaseReadException, InconsistentSchemaException;
+
+  /**
+   * @param catalogSchemas the schemas to read.
+   * @param filter selects the tables to read in every schema.
+   * @return a RelationalDatabase with the selected tables for each schema, in the order the schemas were passed in.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent (see {@link InconsistentSchemaException}).
+   */
+  Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas,
+                                                                   TableFilter filter)
+      throws RelationalDatabaseReadException, InconsistentSchemaException;
+}
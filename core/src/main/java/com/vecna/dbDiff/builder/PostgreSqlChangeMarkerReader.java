@@ -0,0 +1,80 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.vecna.dbDiff.jdbc.MetadataFactories;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+
+/**
+ * Derives change markers from the transaction ids (xmin) of the pg_catalog rows that describe a table: its pg_class row
+ * and the pg_attribute, pg_attrdef, pg_index and pg_constraint rows that belong to it, as well as the pg_class rows of its
+ * indices. DDL rewrites these rows, so any change to the table gives them a new xmin or changes their count. All markers
+ * are read with a single query.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class PostgreSqlChangeMarkerReader implements ChangeMarkerReader {
+  private static final String MARKERS_SQL =
+      "SELECT c.relname, c.xmin::text"
+      + " || '/' || (SELECT count(*) || ':' || coalesce(sum(a.xmin::text::bigint), 0) "
+      + "FROM pg_catalog.pg_attribute a WHERE a.attrelid = c.oid)"
+      + " || '/' || (SELECT count(*) || ':' || coalesce(sum(d.xmin::text::bigint), 0) "
+      + "FROM pg_catalog.pg_attrdef d WHERE d.adrelid = c.oid)"
+      + " || '/' || (SELECT count(*) || ':' || coalesce(sum(i.xmin::text::bigint + ic.xmin::text::bigint), 0) "
+      + "FROM pg_catalog.pg_index i JOIN pg_catalog.pg_class ic ON ic.oid = i.indexrelid WHERE i.indrelid = c.oid)"
+      + " || '/' || (SELECT count(*) || ':' || coalesce(sum(con.xmin::text::bigint), 0) "
+      + "FROM pg_catalog.pg_constraint con WHERE con.conrelid = c.oid) "
+      + "FROM pg_catalog.pg_class c "
+      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+      + "WHERE c.relkind = 'r' AND n.nspname = ? "
+      + "ORDER BY c.relname";
+
+  private final MetadataFactory m_metadataFactory;
+
+  /**
+   * Create a new reader.
+   * @param metadataFactory a {@link MetadataFactory} that provides the connection to query.
+   */
+  public PostgreSqlChangeMarkerReader(MetadataFactory metadataFactory) {
+    m_metadataFactory = metadataFactory;
+  }
+
+  @Override
+  public Map<String, String> readChangeMarkers(CatalogSchema catalogSchema) {
+    Map<String, String> markers = new LinkedHashMap<>();
+    try (PreparedStatement statement = m_metadataFactory.getMetadata().getConnection().prepareStatement(MARKERS_SQL)) {
+      statement.setString(1, catalogSchema.getSchema());
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          markers.put(rs.getString(1), rs.getString(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new RelationalDatabaseReadException("could not read change markers", e);
+    } finally {
+      MetadataFactories.releaseMetadata(m_metadataFactory);
+    }
+    return markers;
+  }
+}
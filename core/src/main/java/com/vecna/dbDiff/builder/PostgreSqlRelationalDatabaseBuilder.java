@@ -0,0 +1,269 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.SchemaInterner;
+import com.vecna.dbDiff.model.db.Column;
+
+/**
+ * Reads a PostgreSQL schema straight from pg_catalog. Type codes, type names and column sizes follow the rules the
+ * PostgreSQL jdbc driver applies in {@link DatabaseMetaData#getColumns(String, String, String, String)}, so the resulting
+ * model is interchangeable with the one built by {@link RelationalDatabaseBuilderImpl}. Partitioned tables are read along
+ * with their partitions and reported as TABLE, the way the driver lists them (newer drivers report them as PARTITIONED
+ * TABLE, which {@link RelationalDatabaseBuilderImpl} doesn't request).
+ *
+ * @author ogolberg@vecna.com
+ */
+public class PostgreSqlRelationalDatabaseBuilder extends CatalogQueryRelationalDatabaseBuilder {
+  private static final Map<String, Integer> SQL_TYPES = ImmutableMap.<String, Integer>builder()
+      .put("int2", Types.SMALLINT)
+      .put("int4", Types.INTEGER)
+      .put("oid", Types.BIGINT)
+      .put("int8", Types.BIGINT)
+      .put("money", Types.DOUBLE)
+      .put("numeric", Types.NUMERIC)
+      .put("float4", Types.REAL)
+      .put("float8", Types.DOUBLE)
+      .put("char", Types.CHAR)
+      .put("bpchar", Types.CHAR)
+      .put("varchar", Types.VARCHAR)
+      .put("text", Types.VARCHAR)
+      .put("name", Types.VARCHAR)
+      .put("bytea", Types.BINARY)
+      .put("bool", Types.BIT)
+      .put("bit", Types.BIT)
+      .put("date", Types.DATE)
+      .put("time", Types.TIME)
+      .put("timetz", Types.TIME)
+      .put("timestamp", Types.TIMESTAMP)
+      .put("timestamptz", Types.TIMESTAMP)
+      .build();
+
+  private static final String TABLES_SQL =
+      "SELECT NULL::text, n.nspname, c.relname, 'TABLE', pg_catalog.obj_description(c.oid, 'pg_class') "
+      + "FROM pg_catalog.pg_class c "
+      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+      + "WHERE c.relkind IN ('r', 'p') AND n.nspname IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY c.relname";
+
+  private static final String COLUMNS_SQL =
+      "SELECT NULL::text, n.nspname, c.relname, a.attname, "
+      + "CASE WHEN t.typtype = 'd' THEN bt.typname ELSE t.typname END, "
+      + "CASE WHEN t.typtype = 'd' THEN t.typtypmod ELSE a.atttypmod END, "
+      + "a.attnotnull OR (t.typtype = 'd' AND t.typnotnull), "
+      + "pg_catalog.pg_get_expr(d.adbin, d.adrelid), a.attnum "
+      + "FROM pg_catalog.pg_attribute a "
+      + "JOIN pg_catalog.pg_class c ON c.oid = a.attrelid "
+      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+      + "JOIN pg_catalog.pg_type t ON t.oid = a.atttypid "
+      + "LEFT JOIN pg_catalog.pg_type bt ON t.typtype = 'd' AND bt.oid = t.typbasetype "
+      + "LEFT JOIN pg_catalog.pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum "
+      + "WHERE c.relkind IN ('r', 'p') AND n.nspname IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " AND a.attnum > 0 AND NOT a.attisdropped "
+      + "ORDER BY c.relname, a.attnum";
+
+  private static final String PRIMARY_KEYS_SQL =
+      "SELECT NULL::text, n.nspname, c.relname, a.attname, k.pos + 1 "
+      + "FROM pg_catalog.pg_index i "
+      + "JOIN pg_catalog.pg_class c ON c.oid = i.indrelid "
+      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+      + "CROSS JOIN generate_series(0, 31) AS k(pos) "
+      + "JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid AND a.attnum = i.indkey[k.pos] "
+      + "WHERE i.indisprimary AND n.nspname IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY c.relname, k.pos";
+
+  private static final String FOREIGN_KEYS_SQL =
+      "SELECT NULL::text, pkn.nspname, pkc.relname, pka.attname, "
+      + "NULL::text, fkn.nspname, fkc.relname, fka.attname, k.pos, con.conname "
+      + "FROM pg_catalog.pg_constraint con "
+      + "JOIN pg_catalog.pg_class fkc ON fkc.oid = con.conrelid "
+      + "JOIN pg_catalog.pg_namespace fkn ON fkn.oid = fkc.relnamespace "
+      + "JOIN pg_catalog.pg_class pkc ON pkc.oid = con.confrelid "
+      + "JOIN pg_catalog.pg_namespace pkn ON pkn.oid = pkc.relnamespace "
+      + "CROSS JOIN generate_series(1, 32) AS k(pos) "
+      + "JOIN pg_catalog.pg_attribute fka ON fka.attrelid = con.conrelid AND fka.attnum = con.conkey[k.pos] "
+      + "JOIN pg_catalog.pg_attribute pka ON pka.attrelid = con.confrelid AND pka.attnum = con.confkey[k.pos] "
+      + "WHERE con.contype = 'f' AND fkn.nspname IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY fkc.relname, con.conname, k.pos";
+
+  // expression columns are reported the same way the driver does (as the expression text)
+  private static final String INDICES_SQL =
+      "SELECT NULL::text, n.nspname, c.relname, ic.relname, "
+      + "CASE WHEN i.indkey[k.pos] = 0 THEN pg_catalog.pg_get_indexdef(i.indexrelid, k.pos + 1, false) ELSE a.attname END "
+      + "FROM pg_catalog.pg_index i "
+      + "JOIN pg_catalog.pg_class c ON c.oid = i.indrelid "
+      + "JOIN pg_catalog.pg_class ic ON ic.oid = i.indexrelid "
+      + "JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace "
+      + "CROSS JOIN generate_series(0, 31) AS k(pos) "
+      + "LEFT JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid AND a.attnum = i.indkey[k.pos] "
+      + "WHERE n.nspname IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " AND k.pos < i.indnatts "
+      + "ORDER BY c.relname, NOT i.indisunique, ic.relname, k.pos";
+
+  /**
+   * Create a new builder.
+   * @param metadataFactory a {@link MetadataFactory} that provides the connection to query.
+   */
+  public PostgreSqlRelationalDatabaseBuilder(MetadataFactory metadataFactory) {
+    super(metadataFactory);
+  }
+
+  @Override
+  protected String getSql(CatalogQuery query) {
+    switch (query) {
+      case TABLES:
+        return TABLES_SQL;
+      case COLUMNS:
+        return COLUMNS_SQL;
+      case PRIMARY_KEYS:
+        return PRIMARY_KEYS_SQL;
+      case FOREIGN_KEYS:
+        return FOREIGN_KEYS_SQL;
+      case INDICES:
+        return INDICES_SQL;
+      default:
+        throw new IllegalArgumentException("unknown query " + query);
+    }
+  }
+
+  @Override
+  protected String getTableNameExpression(CatalogQuery query) {
+    return query == CatalogQuery.FOREIGN_KEYS ? "fkc.relname" : "c.relname";
+  }
+
+  /**
+   * Convert a pg_attribute row to a column. The row contains table catalog, table schema, table name, column name,
+   * pg type name, type modifier, not-null flag, default expression and attribute number.
+   * @param rs result set positioned at a column row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the column.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  @Override
+  protected Column readColumn(ResultSet rs, SchemaInterner interner) throws SQLException {
+    Column column = new Column(interner.catalogSchema(rs.getString(1), rs.getString(2)), interner.name(rs.getString(4)),
+                               interner.name(rs.getString(3)));
+
+    String pgType = rs.getString(5);
+    int typmod = rs.getInt(6);
+    String defaultValue = rs.getString(8);
+
+    // the driver reports serial columns by their pseudo-type
+    if (defaultValue != null && defaultValue.contains("nextval(")) {
+      if ("int4".equals(pgType)) {
+        pgType = "serial";
+      } else if ("int8".equals(pgType)) {
+        pgType = "bigserial";
+      }
+    }
+
+    column.setColumnType(interner.columnType(getSqlType(pgType), pgType));
+    column.setColumnSize(getColumnSize(pgType, typmod));
+    column.setIsNullable(!rs.getBoolean(7));
+    column.setDefault(interner.name(defaultValue));
+    column.setOrdinal(rs.getInt(9));
+    return column;
+  }
+
+  /**
+   * Map a pg type name to a {@link Types} code.
+   * @param pgType pg type name.
+   * @return the sql type code.
+   */
+  private int getSqlType(String pgType) {
+    if ("serial".equals(pgType)) {
+      return Types.INTEGER;
+    } else if ("bigserial".equals(pgType)) {
+      return Types.BIGINT;
+    } else if (pgType.startsWith("_")) {
+      return Types.ARRAY;
+    }
+    Integer sqlType = SQL_TYPES.get(pgType);
+    return sqlType == null ? Types.OTHER : sqlType;
+  }
+
+  /**
+   * Compute the column size the same way the driver does for built-in types.
+   * @param pgType pg type name.
+   * @param typmod type modifier (-1 if not specified).
+   * @return the column size.
+   */
+  private int getColumnSize(String pgType, int typmod) {
+    switch (pgType) {
+      case "int2":
+        return 5;
+      case "int4":
+      case "serial":
+      case "oid":
+        return 10;
+      case "int8":
+      case "bigserial":
+        return 19;
+      case "float4":
+        return 8;
+      case "float8":
+        return 17;
+      case "bool":
+        return 1;
+      case "date":
+        return 13;
+      case "numeric":
+        return typmod == -1 ? 0 : ((typmod - 4) & 0xFFFF0000) >> 16;
+      case "char":
+      case "bpchar":
+      case "varchar":
+        return typmod == -1 ? Integer.MAX_VALUE : typmod - 4;
+      case "text":
+      case "bytea":
+        return Integer.MAX_VALUE;
+      case "bit":
+        return typmod;
+      case "time":
+        return 8 + getFractionalSecondsSize(typmod);
+      case "timetz":
+        return 8 + getFractionalSecondsSize(typmod) + 6;
+      case "timestamp":
+        return 19 + getFractionalSecondsSize(typmod);
+      case "timestamptz":
+        return 19 + getFractionalSecondsSize(typmod) + 6;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * @param typmod type modifier of a time type.
+   * @return number of characters taken up by the fractional seconds (including the decimal point).
+   */
+  private int getFractionalSecondsSize(int typmod) {
+    if (typmod == -1) {
+      return 7;
+    } else if (typmod == 0) {
+      return 0;
+    } else {
+      return typmod + 1;
+    }
+  }
+}
@@ -16,30 +16,50 @@
 
 package com.vecna.dbDiff.builder;
 
+import java.lang.reflect.InvocationTargetException;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Collections2;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vecna.dbDiff.jdbc.MetadataFactories;
 import com.vecna.dbDiff.jdbc.MetadataFactory;
 import com.vecna.dbDiff.model.CatalogSchema;
-import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.MetadataCategory;
+import com.vecna.dbDiff.model.ReadProfile;
+import com.vecna.dbDiff.model.SchemaInterner;
 import com.vecna.dbDiff.model.TableType;
 import com.vecna.dbDiff.model.db.Column;
 import com.vecna.dbDiff.model.db.ForeignKey;
@@ -54,76 +74,333 @@ import com.vecna.dbDiff.model.relationalDb.RelationalTable;
  * @author dlopuch@vecna.com
  * @author ogolberg@vecna.com
  */
-public class RelationalDatabaseBuilderImpl implements RelationalDatabaseBuilder {
+public class RelationalDatabaseBuilderImpl implements StreamingRelationalDatabaseBuilder, MultiSchemaRelationalDatabaseBuilder {
+  private static final Logger LOG = LoggerFactory.getLogger(RelationalDatabaseBuilderImpl.class);
+
+  /**
+   * Maximum number of exact table names that are looked up with a getTables() call each; longer lists are applied to a
+   * listing of the whole schema.
+   */
+  private static final int MAX_TABLE_NAME_LOOKUPS = 100;
+
   private final MetadataFactory m_metadataFactory;
-  private ExecutorService m_executor = new ForkJoinPool();
+  private final ExecutorService m_executor;
+  private final boolean m_ownsExecutor;
+  private boolean m_bulkRead;
+  private boolean m_tableNameLookup;
+  private long m_timeoutNanos;
+  private boolean m_suppressOtherFailures;
+  private Table<CatalogSchema, String, Long> m_tableSizeHints = HashBasedTable.create();
+  private ReadProfile m_readProfile = ReadProfile.ALL;
+
+  /**
+   * Convert the failure of a task as specified in {@link #runInParallel(Collection)}.
+   * @param e the failure.
+   * @return the exception to throw.
+   */
+  private static RuntimeException convertFailure(ExecutionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    } else if (cause instanceof SQLException) {
+      return new RelationalDatabaseReadException(cause);
+    } else {
+      return new RuntimeException(e);
+    }
+  }
 
   /**
-   * Execute multiple tasks in parallel (scaling to the number of available cores). If an exception is thrown by one of the tasks, it is converted as specified below.
+   * Execute multiple tasks in parallel on the builder's executor. Results are consumed in completion order, so the first
+   * failing task cancels the outstanding ones and its exception is converted as specified below right away.
    * @param <T> task return type.
    * @param tasks tasks to execute.
-   * @throws RelationalDatabaseReadException if one of the tasks throws a {@link SQLException} or a {@link RelationalDatabaseReadException}.
+   * @throws RelationalDatabaseReadException if one of the tasks throws a {@link SQLException} or a
+   * {@link RelationalDatabaseReadException}, or if the tasks don't finish before the timeout.
    * @throws InconsistentSchemaException if one of the tasks throws an {@link InconsistentSchemaException}.
    * @throws RuntimeException if one of the tasks throws any other exception.
    */
   private <T> void runInParallel(Collection<? extends Callable<T>> tasks) throws RelationalDatabaseReadException, InconsistentSchemaException, RuntimeException {
-    Collection<Future<T>> futures;
+    CompletionService<T> completionService = new ExecutorCompletionService<>(m_executor);
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    long deadline = System.nanoTime() + m_timeoutNanos;
+
     try {
-      futures = m_executor.invokeAll(tasks);
-    } catch (InterruptedException e) {
-      throw new IllegalStateException(e);
-    }
+      for (Callable<T> task : tasks) {
+        futures.add(completionService.submit(task));
+      }
 
-    for (Future<T> future : futures) {
-      try {
-        future.get();
-      } catch (ExecutionException e) {
-        Throwable cause = e.getCause();
-        if (cause instanceof RuntimeException) {
-          throw (RuntimeException) cause;
-        } else if (cause instanceof SQLException) {
-          throw new RelationalDatabaseReadException(cause);
+      for (int i = 0; i < futures.size(); i++) {
+        Future<T> future;
+        if (m_timeoutNanos > 0) {
+          future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (future == null) {
+            throw new RelationalDatabaseReadException("schema information was not read within "
+                + TimeUnit.NANOSECONDS.toMillis(m_timeoutNanos) + " ms");
+          }
         } else {
-          throw new RuntimeException(e);
+          future = completionService.take();
+        }
+
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          RuntimeException failure = convertFailure(e);
+          if (m_suppressOtherFailures) {
+            cancel(futures);
+            // cancelled tasks are queued as well, only the ones that had already failed are of interest
+            Future<T> other;
+            while ((other = completionService.poll()) != null) {
+              if (!other.isCancelled()) {
+                try {
+                  other.get();
+                } catch (ExecutionException otherFailure) {
+                  failure.addSuppressed(otherFailure.getCause());
+                }
+              }
+            }
+          }
+          throw failure;
         }
-      } catch (InterruptedException e) {
-        throw new IllegalStateException(e);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      cancel(futures);
+    }
+  }
+
+  /**
+   * Cancel the tasks that haven't finished yet.
+   * @param futures the tasks.
+   */
+  private static void cancel(Collection<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      future.cancel(true);
     }
   }
 
   /**
-   * Constructor that sets metadata based on a JDBC connection
+   * Constructor that sets metadata based on a JDBC connection. Tables are read by a pool with one thread per available
+   * core, which is shut down when the builder is closed.
    * @param metadataFactory a {@link MetadataFactory}.
    */
   public RelationalDatabaseBuilderImpl(MetadataFactory metadataFactory) {
+    this(metadataFactory, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a builder that reads tables with a fixed number of threads. Metadata calls are I/O-bound, so the parallelism
+   * should match the number of connections the {@link MetadataFactory} can usefully provide rather than the number of
+   * cores. The pool is shut down when the builder is closed.
+   *
+   * The threads are interruptible daemon threads, so that cancelled reads (see {@link #setTimeout(long, TimeUnit)}) are
+   * interrupted in the middle of blocking metadata calls.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @param parallelism number of tables read concurrently.
+   */
+  public RelationalDatabaseBuilderImpl(MetadataFactory metadataFactory, int parallelism) {
+    this(metadataFactory, Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("dbDiff-table-reader-%d").build()), true);
+  }
+
+  /**
+   * Create a builder that reads tables with an executor managed by the caller. Closing the builder doesn't shut the
+   * executor down. Outstanding reads are cancelled by interrupting them, which a {@link java.util.concurrent.ForkJoinPool}
+   * doesn't do, so prefer a thread pool executor.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @param executor executor to run table reads on.
+   */
+  public RelationalDatabaseBuilderImpl(MetadataFactory metadataFactory, ExecutorService executor) {
+    this(metadataFactory, executor, false);
+  }
+
+  /**
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @param executor executor to run table reads on.
+   * @param ownsExecutor whether to shut down the executor when the builder is closed.
+   */
+  private RelationalDatabaseBuilderImpl(MetadataFactory metadataFactory, ExecutorService executor, boolean ownsExecutor) {
     m_metadataFactory = metadataFactory;
+    m_executor = executor;
+    m_ownsExecutor = ownsExecutor;
+  }
+
+  /**
+   * Create a builder that reads every table on its own virtual thread. Requires a JDK with virtual thread support. Virtual
+   * threads aren't bounded, so pair this with a {@link com.vecna.dbDiff.jdbc.PooledMetadataFactory} to cap the number of
+   * connections.
+   * @param metadataFactory a {@link MetadataFactory}.
+   * @return the builder; its executor is shut down when the builder is closed.
+   * @throws UnsupportedOperationException if the JDK doesn't support virtual threads.
+   */
+  public static RelationalDatabaseBuilderImpl withVirtualThreads(MetadataFactory metadataFactory) {
+    ExecutorService executor;
+    try {
+      // looked up reflectively so that the library still runs on JDKs without virtual threads
+      executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException("virtual threads are not supported by this JDK", e);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new UnsupportedOperationException("could not create a virtual thread executor", e);
+    }
+    return new RelationalDatabaseBuilderImpl(metadataFactory, executor, true);
+  }
+
+  /**
+   * Enable or disable bulk reads. In bulk mode column, primary key, foreign key and index information is retrieved with a
+   * single metadata call per schema (passing a null table name) and bucketed by table, instead of one call per table.
+   * Drivers that don't support a null table name either reject it or silently return no rows. A bulk call that is rejected
+   * as unsupported (see {@link #isUnsupported(SQLException)}) falls back to per-table calls for that kind of metadata; a
+   * bulk column read that comes back empty although there are tables makes all kinds of metadata fall back, since every
+   * table has columns. Other failures are thrown, and an empty result of the other bulk calls is taken at face value
+   * (e.g. a schema without foreign keys). Fallbacks are logged. When a {@link TableFilter} selects the tables, the bulk
+   * results are narrowed down to the selected tables after they're read.
+   * @param bulkRead whether to read metadata in bulk.
+   */
+  public void setBulkRead(boolean bulkRead) {
+    m_bulkRead = bulkRead;
+  }
+
+  /**
+   * Enable or disable table name lookups. When enabled, the tables selected by a {@link TableFilter} of up to
+   * {@value #MAX_TABLE_NAME_LOOKUPS} exact names are looked up with a getTables() call per name and their metadata is read
+   * table by table, even in bulk mode, instead of listing (and bulk reading) the whole schema. That's about five calls
+   * per table, so it only pays off when a few tables are read from a large schema, e.g. by a {@link SortedTableIterator}
+   * with a small batch size. Disabled by default.
+   * @param tableNameLookup whether to look up the tables of exact name filters by name.
+   */
+  public void setTableNameLookup(boolean tableNameLookup) {
+    m_tableNameLookup = tableNameLookup;
+  }
+
+  /**
+   * Set an overall deadline for reading the tables of a schema. When it passes, the outstanding reads are cancelled and a
+   * {@link RelationalDatabaseReadException} is thrown.
+   * @param timeout the timeout; zero or negative means no timeout (the default).
+   * @param unit unit of the timeout.
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    m_timeoutNanos = Math.max(0, unit.toNanos(timeout));
+  }
+
+  /**
+   * When a table read fails, attach the failures of other reads that had already completed as suppressed exceptions of
+   * the one that's thrown. Off by default; either way the outstanding reads are cancelled on the first failure.
+   * @param suppressOtherFailures whether to attach the other failures.
+   */
+  public void setSuppressOtherFailures(boolean suppressOtherFailures) {
+    m_suppressOtherFailures = suppressOtherFailures;
+  }
+
+  /**
+   * Provide relative table sizes, so that the reads of the largest tables are scheduled first and don't become
+   * stragglers. Any measure will do, e.g. row counts or the sizes computed by {@link #getTableSizes(RelationalDatabase)}
+   * from a previous read. Tables are identified by catalog/schema and name, so that the hints of several schemas with the
+   * same tables (e.g. tenants) don't clash.
+   * @param tableSizeHints table sizes by catalog/schema and table name.
+   */
+  public void setTableSizeHints(Table<CatalogSchema, String, Long> tableSizeHints) {
+    m_tableSizeHints = HashBasedTable.create(tableSizeHints);
+  }
+
+  /**
+   * Choose the kinds of metadata to read. Tables get empty columns, keys or indices for the categories that are left out,
+   * so compare the result with an {@link com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine} using the same profile.
+   * @param readProfile the profile; {@link ReadProfile#ALL} by default.
+   */
+  public void setReadProfile(ReadProfile readProfile) {
+    m_readProfile = readProfile;
+  }
+
+  /**
+   * Estimate how expensive the metadata of each table is to read from a previously read schema (the number of columns,
+   * foreign keys and indices).
+   * @param database a previously read schema.
+   * @return table sizes by catalog/schema and table name, suitable for {@link #setTableSizeHints(Table)}.
+   */
+  public static Table<CatalogSchema, String, Long> getTableSizes(RelationalDatabase database) {
+    Table<CatalogSchema, String, Long> sizes = HashBasedTable.create();
+    for (RelationalTable table : database.getTables()) {
+      sizes.put(table.getCatalogSchema(), table.getName(), (long) table.getColumns().size() + table.getFks().size() + table.getIndices().size());
+    }
+    return sizes;
   }
 
   /**
-   * Retrieve all tables from a schema.
+   * Retrieve the selected tables from a schema.
    * @param catalogSchema catalog/schema.
+   * @param filter selects the tables.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
    * @return the tables.
    * @throws SQLException if thrown by the jdbc driver.
    */
-  private List<RelationalTable> getTables(final CatalogSchema catalogSchema) throws SQLException {
+  private List<RelationalTable> getTables(final CatalogSchema catalogSchema, TableFilter filter, SchemaInterner interner)
+      throws SQLException {
     // Get the ResultSet of tables
     String[] tableTypes = {TableType.TABLE.name()};
-    ResultSet rs = doGetTablesQuery(catalogSchema, tableTypes);
+    String searchStringEscape = m_metadataFactory.getMetadata().getSearchStringEscape();
+    Set<String> lookedUpNames = getLookedUpNames(filter);
 
     // Build a set of Tables
-    List<RelationalTable> tables = new ArrayList<RelationalTable>();
+    Table<CatalogSchema, String, RelationalTable> tables = HashBasedTable.create();
+    List<RelationalTable> tableList = new ArrayList<RelationalTable>();
+
+    if (lookedUpNames == null) {
+      readTables(doGetTablesQuery(catalogSchema, filter.getTableNamePattern(searchStringEscape), tableTypes), filter,
+                 interner, tables, tableList);
+    } else {
+      for (String name : new TreeSet<>(lookedUpNames)) {
+        readTables(doGetTablesQuery(catalogSchema, TableFilter.escape(name, searchStringEscape), tableTypes), filter,
+                   interner, tables, tableList);
+      }
+    }
+
+    return tableList;
+  }
 
+  /**
+   * Add the tables of a getTables() result that the filter accepts and that haven't been seen yet (a name pattern may match
+   * another looked up name if the driver has no escape character).
+   * @param rs the result of a getTables() call.
+   * @param filter selects the tables.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @param tables the tables seen so far, by catalog/schema and name.
+   * @param tableList receives the new tables.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private void readTables(ResultSet rs, TableFilter filter, SchemaInterner interner,
+                          Table<CatalogSchema, String, RelationalTable> tables, List<RelationalTable> tableList)
+      throws SQLException {
     while (rs.next()) {
-      RelationalTable table = new RelationalTable(new CatalogSchema(rs.getString(1), rs.getString(2)), rs.getString(3));
+      if (!filter.accept(rs.getString(3))) {
+        continue;
+      }
+      RelationalTable table = new RelationalTable(interner.catalogSchema(rs.getString(1), rs.getString(2)),
+                                                  interner.name(rs.getString(3)));
+      if (tables.contains(table.getCatalogSchema(), table.getName())) {
+        continue;
+      }
 
-      table.setType(rs.getString(4));
-      table.setTypeName(rs.getString(5));
+      table.setType(interner.name(rs.getString(4)));
+      table.setTypeName(interner.name(rs.getString(5)));
 
-      tables.add(table);
+      tables.put(table.getCatalogSchema(), table.getName(), table);
+      tableList.add(table);
     }
+  }
 
-    return tables;
+  /**
+   * @param filter selects the tables.
+   * @return the names of the tables to look up one by one, or null if the tables of the schema should be listed with a
+   * single call.
+   */
+  private Set<String> getLookedUpNames(TableFilter filter) {
+    if (!m_tableNameLookup) {
+      return null;
+    }
+    Set<String> names = filter.getIncludedNames();
+    return names == null || names.size() > MAX_TABLE_NAME_LOOKUPS ? null : names;
   }
 
   /**
@@ -137,73 +414,158 @@ public class RelationalDatabaseBuilderImpl implements RelationalDatabaseBuilder
     return m_metadataFactory.getMetadata().getTables(catalogSchema.getCatalog(), catalogSchema.getSchema(), null, tableTypes);
   }
 
+  /**
+   * Performs a metaData.getTables() query restricted to a table name pattern. Without a pattern, this delegates to
+   * {@link #doGetTablesQuery(CatalogSchema, String[])}, so that subclasses overriding it still see every unfiltered read.
+   * @param catalogSchema the desired catalog and schema names.
+   * @param tableNamePattern table name pattern or null to list all tables.
+   * @param tableTypes the desired table types, specific for the particular implementation.
+   * @return The ResultSet of the getTables() call.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  protected ResultSet doGetTablesQuery(CatalogSchema catalogSchema, String tableNamePattern, String[] tableTypes)
+      throws SQLException {
+    if (tableNamePattern == null) {
+      return doGetTablesQuery(catalogSchema, tableTypes);
+    }
+    return m_metadataFactory.getMetadata().getTables(catalogSchema.getCatalog(), catalogSchema.getSchema(),
+                                                     tableNamePattern, tableTypes);
+  }
+
   /**
    * Retrieve column information for a table.
    * @param table the table.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
    * @return ordered list of columns.
    * @throws SQLException if thrown by the jdbc driver.
    */
-  private List<Column> getColumns(RelationalTable table) throws SQLException {
+  private List<Column> getColumns(RelationalTable table, SchemaInterner interner) throws SQLException {
     ResultSet columnResultSet = m_metadataFactory.getMetadata().getColumns(table.getCatalogSchema().getCatalog(), table.getCatalogSchema().getSchema(), table.getName(), null);
 
     List<Column> columns = new LinkedList<Column>();
     while (columnResultSet.next()) {
-      Column column = new Column(columnResultSet.getString(1), columnResultSet.getString(2),
-                                 columnResultSet.getString(4), columnResultSet.getString(3));
-
-      column.setColumnType(new ColumnType(columnResultSet.getInt(5), columnResultSet.getString(6)));
-      column.setColumnSize(columnResultSet.getInt(7));
+      columns.add(readColumn(columnResultSet, interner));
+    }
+    return columns;
+  }
 
-      //Nullability
-      int nullable = columnResultSet.getInt(11);
-      column.setIsNullable((DatabaseMetaData.columnNullable == nullable ? true
-          : (DatabaseMetaData.columnNoNulls == nullable ? false : null)));
+  /**
+   * Retrieve column information for all tables of a schema with a single metadata call.
+   * @param catalogSchema catalog/schema.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return ordered columns by table.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private ListMultimap<RelationalTable, Column> getColumns(CatalogSchema catalogSchema, Table<CatalogSchema, String, RelationalTable> tables,
+                                                           SchemaInterner interner) throws SQLException {
+    ResultSet columnResultSet = m_metadataFactory.getMetadata().getColumns(catalogSchema.getCatalog(), catalogSchema.getSchema(), null, null);
 
-      column.setDefault(columnResultSet.getString(13));
-      column.setOrdinal(columnResultSet.getInt(17));
-      columns.add(column);
+    ListMultimap<RelationalTable, Column> columns = ArrayListMultimap.create();
+    while (columnResultSet.next()) {
+      RelationalTable table = findTable(tables, columnResultSet.getString(1), columnResultSet.getString(2), columnResultSet.getString(3));
+      if (table != null) {
+        columns.put(table, readColumn(columnResultSet, interner));
+      }
     }
     return columns;
   }
 
+  /**
+   * Convert the current row of a getColumns() result set to a {@link Column}.
+   * @param columnResultSet result set positioned at a column row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the column.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private Column readColumn(ResultSet columnResultSet, SchemaInterner interner) throws SQLException {
+    Column column = new Column(interner.catalogSchema(columnResultSet.getString(1), columnResultSet.getString(2)),
+                               interner.name(columnResultSet.getString(4)), interner.name(columnResultSet.getString(3)));
+
+    column.setColumnType(interner.columnType(columnResultSet.getInt(5), columnResultSet.getString(6)));
+    column.setColumnSize(columnResultSet.getInt(7));
+
+    //Nullability
+    int nullable = columnResultSet.getInt(11);
+    column.setIsNullable((DatabaseMetaData.columnNullable == nullable ? true
+        : (DatabaseMetaData.columnNoNulls == nullable ? false : null)));
+
+    column.setDefault(interner.name(columnResultSet.getString(13)));
+    column.setOrdinal(columnResultSet.getInt(17));
+    return column;
+  }
+
   /**
    * Retrieve foreign keys for a table.
    * @param table table.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
    * @return ordered list of foreign keys.
    * @throws SQLException if thrown by the jdbc driver.
    */
-  private List<ForeignKey> getForeignKeys(RelationalTable table) throws SQLException {
+  private List<ForeignKey> getForeignKeys(RelationalTable table, SchemaInterner interner) throws SQLException {
     ResultSet fkResultSet = m_metadataFactory.getMetadata().getImportedKeys(table.getCatalogSchema().getCatalog(), table.getCatalogSchema().getSchema(), table.getName());
     List<ForeignKey> fks = new LinkedList<ForeignKey>();
     while (fkResultSet.next()) {
-      ForeignKey fk = new ForeignKey();
-      fk.setFkName(fkResultSet.getString(12));
-
-      fk.setFkCatalogSchema(new CatalogSchema(fkResultSet.getString(5), fkResultSet.getString(6)));
-      fk.setFkTable(fkResultSet.getString(7));
-      fk.setFkColumn(fkResultSet.getString(8));
+      fks.add(readForeignKey(fkResultSet, interner));
+    }
+    return fks;
+  }
 
-      fk.setPkCatalogSchema(new CatalogSchema(fkResultSet.getString(1), fkResultSet.getString(2)));
-      fk.setPkTable(fkResultSet.getString(3));
-      fk.setPkColumn(fkResultSet.getString(4));
+  /**
+   * Retrieve foreign keys for all tables of a schema with a single metadata call.
+   * @param catalogSchema catalog/schema.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return foreign keys by table.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private ListMultimap<RelationalTable, ForeignKey> getForeignKeys(CatalogSchema catalogSchema, Table<CatalogSchema, String, RelationalTable> tables,
+                                                                   SchemaInterner interner) throws SQLException {
+    ResultSet fkResultSet = m_metadataFactory.getMetadata().getImportedKeys(catalogSchema.getCatalog(), catalogSchema.getSchema(), null);
 
-      fk.setKeySeq(fkResultSet.getString(9));
-      fks.add(fk);
+    ListMultimap<RelationalTable, ForeignKey> fks = ArrayListMultimap.create();
+    while (fkResultSet.next()) {
+      RelationalTable table = findTable(tables, fkResultSet.getString(5), fkResultSet.getString(6), fkResultSet.getString(7));
+      if (table != null) {
+        fks.put(table, readForeignKey(fkResultSet, interner));
+      }
     }
     return fks;
   }
 
+  /**
+   * Convert the current row of a getImportedKeys() result set to a {@link ForeignKey}.
+   * @param fkResultSet result set positioned at a foreign key row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the foreign key.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private ForeignKey readForeignKey(ResultSet fkResultSet, SchemaInterner interner) throws SQLException {
+    ForeignKey fk = new ForeignKey();
+    fk.setFkName(interner.name(fkResultSet.getString(12)));
+
+    fk.setFkCatalogSchema(interner.catalogSchema(fkResultSet.getString(5), fkResultSet.getString(6)));
+    fk.setFkTable(interner.name(fkResultSet.getString(7)));
+    fk.setFkColumn(interner.name(fkResultSet.getString(8)));
+
+    fk.setPkCatalogSchema(interner.catalogSchema(fkResultSet.getString(1), fkResultSet.getString(2)));
+    fk.setPkTable(interner.name(fkResultSet.getString(3)));
+    fk.setPkColumn(interner.name(fkResultSet.getString(4)));
+
+    fk.setKeySeq(interner.name(fkResultSet.getString(9)));
+    return fk;
+  }
+
   /**
    * Retrieve index information for a table.
    * @param table the table.
-   * @return list of indices.
+   * @param interner canonicalizes the names of the read.
+   * @return column names by index name, in the order the indices were reported.
    * @throws SQLException if thrown by the jdbc driver.
    */
-  private List<RelationalIndex> getIndices(RelationalTable table) throws SQLException {
-    List<RelationalIndex> indices = new ArrayList<>();
-
+  private ListMultimap<String, String> getIndexColumns(RelationalTable table, SchemaInterner interner) throws SQLException {
     // maps index name to column names
-    Multimap<String, String> idxColumns = ArrayListMultimap.create();
+    ListMultimap<String, String> idxColumns = LinkedListMultimap.create();
 
     // one row per index-column pair
     ResultSet rs = m_metadataFactory.getMetadata().getIndexInfo(table.getCatalogSchema().getCatalog(),
@@ -211,20 +573,59 @@ public class RelationalDatabaseBuilderImpl implements RelationalDatabaseBuilder
                                                                 table.getName(), false, false);
 
     while (rs.next()) {
-      String idxName = rs.getString(6);
-      Collection<String> columns = idxColumns.get(idxName);
-      if (columns.isEmpty()) {
-        // build a new index
-        RelationalIndex index = new RelationalIndex(table.getCatalogSchema(), rs.getString(6));
-        indices.add(index);
-      }
+      idxColumns.put(interner.name(rs.getString(6)), interner.name(rs.getString(9)));
+    }
+
+    return idxColumns;
+  }
+
+  /**
+   * Retrieve index information for all tables of a schema with a single metadata call.
+   * @param catalogSchema catalog/schema.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param interner canonicalizes the names of the read.
+   * @return column names by index name by table.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private Map<RelationalTable, ListMultimap<String, String>> getIndexColumns(CatalogSchema catalogSchema,
+                                                                             Table<CatalogSchema, String, RelationalTable> tables,
+                                                                             SchemaInterner interner)
+                                                                                 throws SQLException {
+    Map<RelationalTable, ListMultimap<String, String>> idxColumnsByTable = new HashMap<>();
+
+    ResultSet rs = m_metadataFactory.getMetadata().getIndexInfo(catalogSchema.getCatalog(), catalogSchema.getSchema(),
+                                                                null, false, false);
 
-      columns.add(rs.getString(9));
+    while (rs.next()) {
+      RelationalTable table = findTable(tables, rs.getString(1), rs.getString(2), rs.getString(3));
+      if (table != null) {
+        ListMultimap<String, String> idxColumns = idxColumnsByTable.get(table);
+        if (idxColumns == null) {
+          idxColumns = LinkedListMultimap.create();
+          idxColumnsByTable.put(table, idxColumns);
+        }
+        idxColumns.put(interner.name(rs.getString(6)), interner.name(rs.getString(9)));
+      }
     }
 
-    for (RelationalIndex index : indices) {
-      List<Column> columns = new ArrayList<>(idxColumns.size());
-      for (String idxColumnName : idxColumns.get(index.getName())) {
+    return idxColumnsByTable;
+  }
+
+  /**
+   * Build the indices of a table. The table's columns must already be set.
+   * @param table the table.
+   * @param idxColumns column names by index name.
+   * @return list of indices.
+   * @throws InconsistentSchemaException if an index refers to a column that's not in the table.
+   */
+  static List<RelationalIndex> buildIndices(RelationalTable table, ListMultimap<String, String> idxColumns)
+      throws InconsistentSchemaException {
+    List<RelationalIndex> indices = new ArrayList<>();
+
+    for (String idxName : idxColumns.keySet()) {
+      RelationalIndex index = new RelationalIndex(table.getCatalogSchema(), idxName);
+      List<Column> columns = new ArrayList<>();
+      for (String idxColumnName : idxColumns.get(idxName)) {
         // Some db preserved names are double-quoted
         String columnName = idxColumnName.replaceAll("^\"|\"$", "");
         Column column = table.getColumnByName(columnName);
@@ -237,6 +638,7 @@ public class RelationalDatabaseBuilderImpl implements RelationalDatabaseBuilder
       }
 
       index.setColumns(columns);
+      indices.add(index);
     }
 
     return indices;
@@ -245,45 +647,510 @@ public class RelationalDatabaseBuilderImpl implements RelationalDatabaseBuilder
   /**
    * Retrieve primary key information for a table.
    * @param table the table.
+   * @param interner canonicalizes the names of the read.
    * @return ordered list of primary key column names.
    * @throws SQLException if thrown by the jdbc driver.
    */
-  private List<String> getPrimaryKeyColumns(RelationalTable table) throws SQLException {
+  private List<String> getPrimaryKeyColumns(RelationalTable table, SchemaInterner interner) throws SQLException {
     Map<Short, String> primaryKeys = new TreeMap<>();
     ResultSet rs = m_metadataFactory.getMetadata().getPrimaryKeys(table.getCatalogSchema().getCatalog(), table.getCatalogSchema().getSchema(), table.getName());
     while (rs.next()) {
-      primaryKeys.put(rs.getShort(5), rs.getString(4));
+      primaryKeys.put(rs.getShort(5), interner.name(rs.getString(4)));
     }
     return Lists.newArrayList(primaryKeys.values());
   }
 
+  /**
+   * Retrieve primary key information for all tables of a schema with a single metadata call.
+   * @param catalogSchema catalog/schema.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param interner canonicalizes the names of the read.
+   * @return ordered lists of primary key column names by table.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  private Map<RelationalTable, List<String>> getPrimaryKeyColumns(CatalogSchema catalogSchema, Table<CatalogSchema, String, RelationalTable> tables,
+                                                                  SchemaInterner interner) throws SQLException {
+    Map<RelationalTable, Map<Short, String>> primaryKeysByTable = new HashMap<>();
+    ResultSet rs = m_metadataFactory.getMetadata().getPrimaryKeys(catalogSchema.getCatalog(), catalogSchema.getSchema(), null);
+    while (rs.next()) {
+      RelationalTable table = findTable(tables, rs.getString(1), rs.getString(2), rs.getString(3));
+      if (table != null) {
+        Map<Short, String> primaryKeys = primaryKeysByTable.get(table);
+        if (primaryKeys == null) {
+          primaryKeys = new TreeMap<>();
+          primaryKeysByTable.put(table, primaryKeys);
+        }
+        primaryKeys.put(rs.getShort(5), interner.name(rs.getString(4)));
+      }
+    }
+
+    Map<RelationalTable, List<String>> pkColumnsByTable = new HashMap<>();
+    for (Map.Entry<RelationalTable, Map<Short, String>> entry : primaryKeysByTable.entrySet()) {
+      pkColumnsByTable.put(entry.getKey(), Lists.newArrayList(entry.getValue().values()));
+    }
+    return pkColumnsByTable;
+  }
+
+  /**
+   * Find the table a metadata row belongs to.
+   * @param tables the tables being read by catalog/schema and name.
+   * @param catalog catalog reported in the row.
+   * @param schema schema reported in the row.
+   * @param name table name reported in the row.
+   * @return the table or null if the row belongs to a table that's not being read (e.g. a view or a table in another schema
+   * that matched the schema pattern).
+   */
+  private RelationalTable findTable(Table<CatalogSchema, String, RelationalTable> tables, String catalog, String schema,
+                                    String name) {
+    return tables.get(new CatalogSchema(catalog, schema), name);
+  }
+
+  /**
+   * Bulk read of a single metadata call.
+   * @param <T> type of the bulk read result.
+   */
+  private interface BulkRead<T> {
+    /**
+     * Perform the bulk read.
+     * @return the result.
+     * @throws SQLException if thrown by the jdbc driver.
+     */
+    T read() throws SQLException;
+  }
+
+  /**
+   * Tell whether a failed metadata call was rejected because the driver doesn't support its arguments (here, a null table
+   * name), as opposed to failing for any other reason, such as a timeout or a broken connection. Drivers report the former
+   * as {@link SQLFeatureNotSupportedException}, with SQL state class 0A (feature not supported) or with the CLI/ODBC state
+   * HYC00/S1C00 (optional feature not implemented); the rest of the HY and S1 classes are generic errors.
+   * @param e the failure.
+   * @return whether per-table calls should be made instead.
+   */
+  protected boolean isUnsupported(SQLException e) {
+    String sqlState = e.getSQLState();
+    return e instanceof SQLFeatureNotSupportedException
+        || sqlState != null && (sqlState.startsWith("0A") || "HYC00".equals(sqlState) || "S1C00".equals(sqlState));
+  }
+
+  /**
+   * Perform a bulk read.
+   * @param <T> type of the bulk read result.
+   * @param what the kind of metadata being read, for logging.
+   * @param bulkRead the bulk read.
+   * @return the result or null if the driver doesn't support the bulk read, so per-table calls have to be made instead.
+   * @throws RelationalDatabaseReadException if the bulk read failed for any other reason.
+   */
+  private <T> T readInBulk(String what, BulkRead<T> bulkRead) throws RelationalDatabaseReadException {
+    try {
+      return bulkRead.read();
+    } catch (SQLException e) {
+      if (isUnsupported(e)) {
+        LOG.warn("the driver doesn't support reading " + what + " in bulk, falling back to per-table reads", e);
+        return null;
+      }
+      throw new RelationalDatabaseReadException("could not read " + what, e);
+    }
+  }
+
   @Override
   public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) {
+    return createRelationalDatabase(catalogSchema, new TableFilter());
+  }
+
+  @Override
+  public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter) {
+    return new RelationalDatabase(readTables(Collections.singletonList(catalogSchema), filter, null).get(catalogSchema));
+  }
+
+  @Override
+  public void readRelationalTables(CatalogSchema catalogSchema, RelationalTableListener listener) {
+    readRelationalTables(catalogSchema, new TableFilter(), listener);
+  }
+
+  @Override
+  public void readRelationalTables(CatalogSchema catalogSchema, TableFilter filter, RelationalTableListener listener) {
+    readTables(Collections.singletonList(catalogSchema), filter, listener);
+  }
+
+  @Override
+  public Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas) {
+    return createRelationalDatabases(catalogSchemas, new TableFilter());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * If the requested schemas make up at least half of the schemas of a catalog, the tables of the whole catalog are listed
+   * with a single getTables() call (and, in bulk mode, their metadata is retrieved with a single call per kind of metadata)
+   * and the tables of the schemas that weren't requested are dropped. Otherwise each schema is listed (and bulk read) on its
+   * own, so that a few schemas of a large catalog don't cost a read of the whole catalog. The remaining per-table reads of
+   * all schemas share the executor and the connections of the builder.
+   */
+  @Override
+  public Map<CatalogSchema, RelationalDatabase> createRelationalDatabases(Collection<CatalogSchema> catalogSchemas,
+                                                                         TableFilter filter) {
+    Map<CatalogSchema, RelationalDatabase> databases = new LinkedHashMap<>();
+    for (Map.Entry<CatalogSchema, List<RelationalTable>> entry
+        : readTables(new ArrayList<>(catalogSchemas), filter, null).entrySet()) {
+      databases.put(entry.getKey(), new RelationalDatabase(entry.getValue()));
+    }
+    return databases;
+  }
+
+  /**
+   * Read the tables of one or more schemas.
+   * @param catalogSchemas the schemas.
+   * @param filter selects the tables to read.
+   * @param listener receives the tables as they're completed; may be null.
+   * @return the tables of each schema in the order they were returned by {@link DatabaseMetaData#getTables}, by schema.
+   */
+  private Map<CatalogSchema, List<RelationalTable>> readTables(List<CatalogSchema> catalogSchemas, TableFilter filter,
+                                                               RelationalTableListener listener) {
+    Map<CatalogSchema, List<RelationalTable>> tablesBySchema = new LinkedHashMap<>();
+    ListMultimap<String, CatalogSchema> schemasByCatalog = LinkedListMultimap.create();
+    for (CatalogSchema catalogSchema : catalogSchemas) {
+      if (!tablesBySchema.containsKey(catalogSchema)) {
+        tablesBySchema.put(catalogSchema, new ArrayList<RelationalTable>());
+        schemasByCatalog.put(catalogSchema.getCatalog(), catalogSchema);
+      }
+    }
+
+    SchemaInterner interner = new SchemaInterner();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    try {
+      for (String catalog : schemasByCatalog.keySet()) {
+        List<CatalogSchema> requestedSchemas = schemasByCatalog.get(catalog);
+        if (requestedSchemas.size() == 1 || coversMostOfCatalog(catalog, requestedSchemas.size())) {
+          tasks.addAll(readCatalogTables(catalog, requestedSchemas, filter, listener, tablesBySchema, interner));
+        } else {
+          for (CatalogSchema catalogSchema : requestedSchemas) {
+            tasks.addAll(readCatalogTables(catalog, Collections.singletonList(catalogSchema), filter, listener,
+                                           tablesBySchema, interner));
+          }
+        }
+      }
+    } finally {
+      MetadataFactories.releaseMetadata(m_metadataFactory);
+    }
+
+    // only the metadata that couldn't be read in bulk is read here
+    runInParallel(tasks);
+
+    return tablesBySchema;
+  }
+
+  /**
+   * @param catalog a catalog.
+   * @param schemaCount number of requested schemas of the catalog.
+   * @return whether the requested schemas make up at least half of the schemas of the catalog, so that reading the whole
+   * catalog at once doesn't read much more than was asked for.
+   */
+  private boolean coversMostOfCatalog(String catalog, int schemaCount) {
+    int totalCount = 0;
+    try (ResultSet rs = m_metadataFactory.getMetadata().getSchemas(catalog, null)) {
+      while (rs.next()) {
+        totalCount++;
+      }
+    } catch (SQLException e) {
+      LOG.warn("could not list the schemas of catalog " + catalog + ", reading the requested schemas one by one", e);
+      return false;
+    }
+    return schemaCount * 2 >= totalCount;
+  }
+
+  /**
+   * List the tables of the requested schemas of a catalog, read whatever can be read in bulk and create tasks for the rest.
+   * @param catalog the catalog.
+   * @param catalogSchemas the requested schemas of the catalog.
+   * @param filter selects the tables to read.
+   * @param listener receives the tables as they're completed; may be null.
+   * @param tablesBySchema receives the tables of each requested schema.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the tasks that read the metadata of the tables.
+   */
+  private List<Callable<Void>> readCatalogTables(String catalog, List<CatalogSchema> catalogSchemas, TableFilter filter,
+                                                 RelationalTableListener listener,
+                                                 Map<CatalogSchema, List<RelationalTable>> tablesBySchema,
+                                                 final SchemaInterner interner) {
+    // a single schema is passed to the driver as is, several schemas that cover most of the catalog are read by listing
+    // the whole catalog
+    final CatalogSchema scope = catalogSchemas.size() == 1 ? catalogSchemas.get(0) : new CatalogSchema(catalog, null);
+
     //Grab all the tables
     List<RelationalTable> tables;
     try {
-      tables = getTables(catalogSchema);
+      tables = getTables(scope, filter, interner);
     } catch (SQLException e) {
       throw new RelationalDatabaseReadException("could not read table information", e);
     }
 
-    // build columns, foreign and primary keys in parallel
-    runInParallel(Collections2.transform(tables, new Function<RelationalTable, Callable<Void>>() {
-      @Override
-      public Callable<Void> apply(final RelationalTable table) {
-        return new Callable<Void>() {
+    if (catalogSchemas.size() == 1) {
+      tablesBySchema.get(scope).addAll(tables);
+    } else {
+      Map<String, CatalogSchema> requestedSchemas = new HashMap<>();
+      for (CatalogSchema catalogSchema : catalogSchemas) {
+        requestedSchemas.put(catalogSchema.getSchema(), catalogSchema);
+      }
+      List<RelationalTable> requestedTables = new ArrayList<>();
+      for (RelationalTable table : tables) {
+        CatalogSchema catalogSchema = requestedSchemas.get(table.getCatalogSchema().getSchema());
+        if (catalogSchema != null) {
+          tablesBySchema.get(catalogSchema).add(table);
+          requestedTables.add(table);
+        }
+      }
+      tables = requestedTables;
+    }
+
+    ListMultimap<RelationalTable, Column> bulkColumns = null;
+    ListMultimap<RelationalTable, ForeignKey> bulkFks = null;
+    Map<RelationalTable, List<String>> bulkPkColumns = null;
+    Map<RelationalTable, ListMultimap<String, String>> bulkIdxColumns = null;
+
+    // bulk calls can't be narrowed down to a few tables, so tables that were looked up by name are read one by one
+    if (m_bulkRead && !tables.isEmpty() && getLookedUpNames(filter) == null) {
+      final Table<CatalogSchema, String, RelationalTable> tableIndex = HashBasedTable.create();
+      for (RelationalTable table : tables) {
+        tableIndex.put(table.getCatalogSchema(), table.getName(), table);
+      }
+
+      boolean bulkSupported = true;
+      if (m_readProfile.includes(MetadataCategory.COLUMNS)) {
+        bulkColumns = readInBulk("columns", new BulkRead<ListMultimap<RelationalTable, Column>>() {
+          @Override
+          public ListMultimap<RelationalTable, Column> read() throws SQLException {
+            return getColumns(scope, tableIndex, interner);
+          }
+        });
+        if (bulkColumns != null && bulkColumns.isEmpty()) {
+          // every table has columns, so the driver silently ignored the null table name
+          LOG.warn("the driver returned no columns for a null table name, falling back to per-table reads");
+          bulkColumns = null;
+          bulkSupported = false;
+        }
+      }
+      if (bulkSupported && m_readProfile.includes(MetadataCategory.FOREIGN_KEYS)) {
+        bulkFks = readInBulk("foreign keys", new BulkRead<ListMultimap<RelationalTable, ForeignKey>>() {
           @Override
-          public Void call() throws Exception {
-            table.setColumns(getColumns(table));
-            table.setFks(new HashSet<>(getForeignKeys(table)));
-            table.setPkColumns(getPrimaryKeyColumns(table));
-            table.setIndices(getIndices(table));
-            return null;
+          public ListMultimap<RelationalTable, ForeignKey> read() throws SQLException {
+            return getForeignKeys(scope, tableIndex, interner);
           }
-        };
+        });
       }
-    }));
+      if (bulkSupported && m_readProfile.includes(MetadataCategory.PRIMARY_KEYS)) {
+        bulkPkColumns = readInBulk("primary keys", new BulkRead<Map<RelationalTable, List<String>>>() {
+          @Override
+          public Map<RelationalTable, List<String>> read() throws SQLException {
+            return getPrimaryKeyColumns(scope, tableIndex, interner);
+          }
+        });
+      }
+      if (bulkSupported && m_readProfile.includes(MetadataCategory.INDICES)) {
+        bulkIdxColumns = readInBulk("indices", new BulkRead<Map<RelationalTable, ListMultimap<String, String>>>() {
+          @Override
+          public Map<RelationalTable, ListMultimap<String, String>> read() throws SQLException {
+            return getIndexColumns(scope, tableIndex, interner);
+          }
+        });
+      }
+    }
+
+    // categories outside of the read profile are left empty, as if they had been read in bulk
+    if (!m_readProfile.includes(MetadataCategory.COLUMNS)) {
+      bulkColumns = ArrayListMultimap.create();
+    }
+    if (!m_readProfile.includes(MetadataCategory.FOREIGN_KEYS)) {
+      bulkFks = ArrayListMultimap.create();
+    }
+    if (!m_readProfile.includes(MetadataCategory.PRIMARY_KEYS)) {
+      bulkPkColumns = Collections.emptyMap();
+    }
+    if (!m_readProfile.includes(MetadataCategory.INDICES)) {
+      bulkIdxColumns = Collections.emptyMap();
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (RelationalTable table : sortBySize(tables)) {
+      tasks.addAll(createTableTasks(table, listener, bulkColumns, bulkFks, bulkPkColumns, bulkIdxColumns, interner));
+    }
+    return tasks;
+  }
+
+  /**
+   * Order tables largest first according to the size hints, so that the reads of big tables don't end up trailing behind
+   * everything else. Tables without a hint keep their relative order and go last.
+   * @param tables tables.
+   * @return sorted copy of the tables.
+   */
+  private List<RelationalTable> sortBySize(List<RelationalTable> tables) {
+    List<RelationalTable> sorted = new ArrayList<>(tables);
+    if (!m_tableSizeHints.isEmpty()) {
+      Collections.sort(sorted, new Comparator<RelationalTable>() {
+        @Override
+        public int compare(RelationalTable t1, RelationalTable t2) {
+          return Long.compare(getSizeHint(t2), getSizeHint(t1));
+        }
+      });
+    }
+    return sorted;
+  }
+
+  /**
+   * @param table a table.
+   * @return the size hint for the table or -1 if there's none.
+   */
+  private long getSizeHint(RelationalTable table) {
+    Long size = m_tableSizeHints.get(table.getCatalogSchema(), table.getName());
+    return size == null ? -1 : size;
+  }
+
+  /**
+   * Tracks the reads of a single table. Columns, foreign keys, primary keys and index columns are read by independent
+   * tasks; the only dependency is that indices refer to columns by name, so they're built by whichever task finishes last,
+   * which then hands the completed table to the listener.
+   */
+  private static class TableRead {
+    private final RelationalTable m_table;
+    private final RelationalTableListener m_listener;
+    private final AtomicInteger m_pending = new AtomicInteger();
+    private volatile ListMultimap<String, String> m_idxColumns;
+
+    /**
+     * @param table the table being read.
+     * @param listener receives the table once it's complete; may be null.
+     */
+    TableRead(RelationalTable table, RelationalTableListener listener) {
+      m_table = table;
+      m_listener = listener;
+    }
 
-    return new RelationalDatabase(tables);
+    /**
+     * Record that a read has finished; complete the table if it was the last one.
+     * @throws InconsistentSchemaException if an index refers to a column the table doesn't have.
+     */
+    void readFinished() throws InconsistentSchemaException {
+      if (m_pending.decrementAndGet() == 0) {
+        m_table.setIndices(buildIndices(m_table, m_idxColumns));
+        if (m_listener != null) {
+          m_listener.tableRead(m_table);
+        }
+      }
+    }
+  }
+
+  /**
+   * A task that reads one kind of metadata of a table.
+   */
+  private abstract class TableTask implements Callable<Void> {
+    protected final TableRead m_read;
+
+    /**
+     * @param read the table read this task belongs to.
+     */
+    TableTask(TableRead read) {
+      m_read = read;
+      m_read.m_pending.incrementAndGet();
+    }
+
+    /**
+     * Read the metadata and set it on the table.
+     * @throws SQLException if thrown by the jdbc driver.
+     */
+    protected abstract void read() throws SQLException;
+
+    @Override
+    public Void call() throws Exception {
+      try {
+        read();
+      } finally {
+        MetadataFactories.releaseMetadata(m_metadataFactory);
+      }
+      m_read.readFinished();
+      return null;
+    }
+  }
+
+  /**
+   * Set the metadata that was read in bulk on a table and create tasks for the rest.
+   * @param table the table.
+   * @param listener receives the table once it's complete; may be null.
+   * @param columns columns read in bulk or null.
+   * @param fks foreign keys read in bulk or null.
+   * @param pkColumns primary key columns read in bulk or null.
+   * @param idxColumns index columns read in bulk or null.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return tasks that read the rest of the metadata.
+   * @throws InconsistentSchemaException if the bulk metadata doesn't match the table.
+   */
+  private List<Callable<Void>> createTableTasks(final RelationalTable table, RelationalTableListener listener,
+                                                ListMultimap<RelationalTable, Column> columns,
+                                                ListMultimap<RelationalTable, ForeignKey> fks,
+                                                Map<RelationalTable, List<String>> pkColumns,
+                                                Map<RelationalTable, ListMultimap<String, String>> idxColumns,
+                                                final SchemaInterner interner) throws InconsistentSchemaException {
+    final TableRead read = new TableRead(table, listener);
+    List<Callable<Void>> tasks = new ArrayList<>();
+
+    // keep one pending count until all tasks are created, so that a table read entirely in bulk gets its indices here
+    read.m_pending.incrementAndGet();
+
+    if (columns == null) {
+      tasks.add(new TableTask(read) {
+        @Override
+        protected void read() throws SQLException {
+          table.setColumns(getColumns(table, interner));
+        }
+      });
+    } else {
+      table.setColumns(columns.get(table));
+    }
+
+    if (idxColumns == null) {
+      tasks.add(new TableTask(read) {
+        @Override
+        protected void read() throws SQLException {
+          m_read.m_idxColumns = getIndexColumns(table, interner);
+        }
+      });
+    } else {
+      ListMultimap<String, String> tableIdxColumns = idxColumns.get(table);
+      read.m_idxColumns = tableIdxColumns == null ? LinkedListMultimap.<String, String>create() : tableIdxColumns;
+    }
+
+    if (fks == null) {
+      tasks.add(new TableTask(read) {
+        @Override
+        protected void read() throws SQLException {
+          table.setFks(new HashSet<>(getForeignKeys(table, interner)));
+        }
+      });
+    } else {
+      table.setFks(new HashSet<>(fks.get(table)));
+    }
+
+    if (pkColumns == null) {
+      tasks.add(new TableTask(read) {
+        @Override
+        protected void read() throws SQLException {
+          table.setPkColumns(getPrimaryKeyColumns(table, interner));
+        }
+      });
+    } else {
+      List<String> tablePkColumns = pkColumns.get(table);
+      table.setPkColumns(tablePkColumns == null ? new ArrayList<String>() : tablePkColumns);
+    }
+
+    read.readFinished();
+    return tasks;
+  }
+
+  /**
+   * Shuts down the executor if it was created by this builder. Executors passed in by the caller are left alone.
+   */
+  @Override
+  public void close() {
+    if (m_ownsExecutor) {
+      m_executor.shutdown();
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Receives tables from a {@link StreamingRelationalDatabaseBuilder} as soon as they're fully read.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface RelationalTableListener {
+  /**
+   * Called once per table when all of its metadata has been read. May be called concurrently from multiple threads and in
+   * any order. An exception thrown by the listener aborts the read.
+   * @param table the table.
+   */
+  void tableRead(RelationalTable table);
+}
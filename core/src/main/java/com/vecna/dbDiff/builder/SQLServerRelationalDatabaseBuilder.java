@@ -0,0 +1,189 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.model.SchemaInterner;
+import com.vecna.dbDiff.model.db.Column;
+
+/**
+ * Reads a SQL Server schema from the sys.* catalog views of the current database instead of jTDS's per-table
+ * sp_columns/sp_fkeys/sp_statistics calls. The schema of the requested catalog/schema is the SQL Server schema
+ * (e.g. dbo); tables are reported with the current database name as their catalog, the same way jTDS reports them.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SQLServerRelationalDatabaseBuilder extends CatalogQueryRelationalDatabaseBuilder {
+  private static final Map<String, Integer> SQL_TYPES = ImmutableMap.<String, Integer>builder()
+      .put("bigint", Types.BIGINT)
+      .put("int", Types.INTEGER)
+      .put("smallint", Types.SMALLINT)
+      .put("tinyint", Types.TINYINT)
+      .put("bit", Types.BIT)
+      .put("decimal", Types.DECIMAL)
+      .put("numeric", Types.NUMERIC)
+      .put("money", Types.DECIMAL)
+      .put("smallmoney", Types.DECIMAL)
+      .put("float", Types.DOUBLE)
+      .put("real", Types.REAL)
+      .put("date", Types.DATE)
+      .put("time", Types.TIME)
+      .put("datetime", Types.TIMESTAMP)
+      .put("datetime2", Types.TIMESTAMP)
+      .put("smalldatetime", Types.TIMESTAMP)
+      .put("char", Types.CHAR)
+      .put("nchar", Types.CHAR)
+      .put("varchar", Types.VARCHAR)
+      .put("nvarchar", Types.VARCHAR)
+      .put("text", Types.LONGVARCHAR)
+      .put("ntext", Types.LONGVARCHAR)
+      .put("xml", Types.LONGVARCHAR)
+      .put("binary", Types.BINARY)
+      .put("varbinary", Types.VARBINARY)
+      .put("image", Types.LONGVARBINARY)
+      .put("timestamp", Types.BINARY)
+      .put("uniqueidentifier", Types.CHAR)
+      .build();
+
+  private static final String TABLES_SQL =
+      "SELECT DB_NAME(), s.name, t.name, 'TABLE', NULL "
+      + "FROM sys.tables t "
+      + "JOIN sys.schemas s ON s.schema_id = t.schema_id "
+      + "WHERE s.name IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY t.name";
+
+  // ty is the declared type (an alias or CLR type, e.g. geography, if there is one), bt the system type it's based on;
+  // CLR types have no base system type
+  private static final String COLUMNS_SQL =
+      "SELECT DB_NAME(), s.name, t.name, c.name, COALESCE(ty.name, bt.name), c.is_identity, "
+      + "CASE WHEN c.max_length = -1 THEN 2147483647 "
+      + "WHEN bt.name IN ('nchar', 'nvarchar') THEN c.max_length / 2 "
+      + "WHEN bt.name IN ('char', 'varchar', 'binary', 'varbinary') THEN c.max_length "
+      + "ELSE c.precision END, "
+      + "c.is_nullable, dc.definition, c.column_id, bt.name "
+      + "FROM sys.columns c "
+      + "JOIN sys.tables t ON t.object_id = c.object_id "
+      + "JOIN sys.schemas s ON s.schema_id = t.schema_id "
+      + "LEFT JOIN sys.types ty ON ty.user_type_id = c.user_type_id "
+      + "LEFT JOIN sys.types bt ON bt.user_type_id = c.system_type_id "
+      + "LEFT JOIN sys.default_constraints dc ON dc.object_id = c.default_object_id "
+      + "WHERE s.name IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY t.name, c.column_id";
+
+  private static final String PRIMARY_KEYS_SQL =
+      "SELECT DB_NAME(), s.name, t.name, c.name, ic.key_ordinal "
+      + "FROM sys.indexes i "
+      + "JOIN sys.tables t ON t.object_id = i.object_id "
+      + "JOIN sys.schemas s ON s.schema_id = t.schema_id "
+      + "JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id "
+      + "JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id "
+      + "WHERE i.is_primary_key = 1 AND s.name IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY t.name, ic.key_ordinal";
+
+  private static final String FOREIGN_KEYS_SQL =
+      "SELECT DB_NAME(), ps.name, pt.name, pc.name, DB_NAME(), fs.name, ft.name, fc.name, "
+      + "fkc.constraint_column_id, fk.name "
+      + "FROM sys.foreign_key_columns fkc "
+      + "JOIN sys.foreign_keys fk ON fk.object_id = fkc.constraint_object_id "
+      + "JOIN sys.tables ft ON ft.object_id = fkc.parent_object_id "
+      + "JOIN sys.schemas fs ON fs.schema_id = ft.schema_id "
+      + "JOIN sys.columns fc ON fc.object_id = fkc.parent_object_id AND fc.column_id = fkc.parent_column_id "
+      + "JOIN sys.tables pt ON pt.object_id = fkc.referenced_object_id "
+      + "JOIN sys.schemas ps ON ps.schema_id = pt.schema_id "
+      + "JOIN sys.columns pc ON pc.object_id = fkc.referenced_object_id AND pc.column_id = fkc.referenced_column_id "
+      + "WHERE fs.name IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " ORDER BY ft.name, fk.name, fkc.constraint_column_id";
+
+  // heaps (type 0) aren't indices and included columns aren't reported by sp_statistics either
+  private static final String INDICES_SQL =
+      "SELECT DB_NAME(), s.name, t.name, i.name, c.name "
+      + "FROM sys.indexes i "
+      + "JOIN sys.tables t ON t.object_id = i.object_id "
+      + "JOIN sys.schemas s ON s.schema_id = t.schema_id "
+      + "JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id "
+      + "JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id "
+      + "WHERE s.name IN " + SCHEMA_NAMES + TABLE_NAMES_FILTER
+      + " AND i.type > 0 AND ic.is_included_column = 0 "
+      + "ORDER BY t.name, i.is_unique DESC, i.name, ic.key_ordinal";
+
+  /**
+   * Create a new builder.
+   * @param metadataFactory a {@link MetadataFactory} that provides the connection to query.
+   */
+  public SQLServerRelationalDatabaseBuilder(MetadataFactory metadataFactory) {
+    super(metadataFactory);
+  }
+
+  @Override
+  protected String getSql(CatalogQuery query) {
+    switch (query) {
+      case TABLES:
+        return TABLES_SQL;
+      case COLUMNS:
+        return COLUMNS_SQL;
+      case PRIMARY_KEYS:
+        return PRIMARY_KEYS_SQL;
+      case FOREIGN_KEYS:
+        return FOREIGN_KEYS_SQL;
+      case INDICES:
+        return INDICES_SQL;
+      default:
+        throw new IllegalArgumentException("unknown query " + query);
+    }
+  }
+
+  @Override
+  protected String getTableNameExpression(CatalogQuery query) {
+    return query == CatalogQuery.FOREIGN_KEYS ? "ft.name" : "t.name";
+  }
+
+  /**
+   * Convert a sys.columns row to a column. The row contains table catalog, table schema, table name, column name,
+   * declared type name, identity flag, column size, nullable flag, default definition, column id and the name of the
+   * system type the declared type is based on (null for CLR types). The sql type is derived from the system type, so
+   * alias types get the sql type of their base type, and CLR types such as geography or hierarchyid are reported as
+   * {@link Types#OTHER}.
+   * @param rs result set positioned at a column row.
+   * @param interner canonicalizes the names and catalogs/schemas of the read.
+   * @return the column.
+   * @throws SQLException if thrown by the jdbc driver.
+   */
+  @Override
+  protected Column readColumn(ResultSet rs, SchemaInterner interner) throws SQLException {
+    Column column = new Column(interner.catalogSchema(rs.getString(1), rs.getString(2)), interner.name(rs.getString(4)),
+                               interner.name(rs.getString(3)));
+
+    String typeName = rs.getString(5);
+    String systemTypeName = rs.getString(11);
+    Integer sqlType = systemTypeName == null ? null : SQL_TYPES.get(systemTypeName);
+
+    // jTDS reports identity columns as e.g. "int identity"
+    column.setColumnType(interner.columnType(sqlType == null ? Types.OTHER : sqlType,
+                                             rs.getBoolean(6) ? typeName + " identity" : typeName));
+    column.setColumnSize(rs.getInt(7));
+    column.setIsNullable(rs.getBoolean(8));
+    column.setDefault(interner.name(rs.getString(9)));
+    column.setOrdinal(rs.getInt(10));
+    return column;
+  }
+}
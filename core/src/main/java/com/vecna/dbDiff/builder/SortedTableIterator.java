@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.google.common.collect.AbstractIterator;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Reads the tables of a live schema in name order, a batch at a time, e.g. for
+ * {@link com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine#compareSortedTables(Iterator, Iterator)}. Each batch is
+ * read with a single {@link TableFilter} of exact names, so only one batch of tables is held at a time and the catalog
+ * queries are still set-based within a batch.
+ *
+ * The cost of a batch depends on how the builder applies the names. {@link CatalogQueryRelationalDatabaseBuilder}s push
+ * them into their catalog queries, so a batch only reads its own tables. {@link RelationalDatabaseBuilderImpl} lists (and
+ * in bulk mode bulk reads) the whole schema for every batch, which costs O(tables * tables / batchSize) rows over a whole
+ * iteration; pick a batch size close to the number of tables with it, or enable
+ * {@link RelationalDatabaseBuilderImpl#setTableNameLookup(boolean) table name lookups} to have each batch of up to 100
+ * names look up and read only its own tables, at a few metadata calls per table.
+ *
+ * The names of the tables to read have to be known up front; the keys returned by a {@link ChangeMarkerReader} are a
+ * cheap way to list them. Tables that are dropped after they're listed are skipped. Read failures are thrown from
+ * {@link #hasNext()} and {@link #next()} as {@link RelationalDatabaseReadException} or
+ * {@link com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SortedTableIterator extends AbstractIterator<RelationalTable> {
+  private final FilteringRelationalDatabaseBuilder m_builder;
+  private final CatalogSchema m_catalogSchema;
+  private final Iterator<String> m_names;
+  private final int m_batchSize;
+  private Iterator<RelationalTable> m_batch = Collections.emptyIterator();
+
+  /**
+   * Create a new iterator.
+   * @param builder the builder that reads the tables; not closed by the iterator.
+   * @param catalogSchema the schema to read.
+   * @param tableNames names of the tables to read, in any order.
+   * @param batchSize maximum number of tables to read at a time.
+   */
+  public SortedTableIterator(FilteringRelationalDatabaseBuilder builder, CatalogSchema catalogSchema,
+                             Collection<String> tableNames, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batch size must be positive");
+    }
+    m_builder = builder;
+    m_catalogSchema = catalogSchema;
+    m_names = new TreeSet<>(tableNames).iterator();
+    m_batchSize = batchSize;
+  }
+
+  @Override
+  protected RelationalTable computeNext() {
+    while (!m_batch.hasNext()) {
+      if (!m_names.hasNext()) {
+        return endOfData();
+      }
+      m_batch = readBatch().iterator();
+    }
+    return m_batch.next();
+  }
+
+  /**
+   * Read the next batch of tables.
+   * @return the tables of the batch that still exist, in name order.
+   */
+  private List<RelationalTable> readBatch() {
+    List<String> names = new ArrayList<>(m_batchSize);
+    TableFilter filter = new TableFilter();
+    while (names.size() < m_batchSize && m_names.hasNext()) {
+      String name = m_names.next();
+      names.add(name);
+      filter.addIncludedName(name);
+    }
+
+    RelationalDatabase database = m_builder.createRelationalDatabase(m_catalogSchema, filter);
+    List<RelationalTable> tables = new ArrayList<>(names.size());
+    for (String name : names) {
+      RelationalTable table = database.getTableByName(name);
+      if (table != null) {
+        tables.add(table);
+      }
+    }
+    return tables;
+  }
+}
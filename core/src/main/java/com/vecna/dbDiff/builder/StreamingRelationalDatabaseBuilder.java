@@ -0,0 +1,60 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.io.Closeable;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+
+/**
+ * A {@link FilteringRelationalDatabaseBuilder} that can hand out tables one by one as they're read, so that the caller
+ * can start processing them while the rest of the schema is still being read. Close the builder to release the threads
+ * it holds.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface StreamingRelationalDatabaseBuilder extends FilteringRelationalDatabaseBuilder, Closeable {
+  /**
+   * Read the tables of a schema, passing each one to a listener as soon as it's complete. Returns after all tables have
+   * been passed to the listener.
+   * @param catalogSchema the schema to read. Note: must have either catalog or schema defined
+   * @param listener receives the tables.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent (see {@link InconsistentSchemaException}).
+   */
+  void readRelationalTables(CatalogSchema catalogSchema, RelationalTableListener listener)
+      throws RelationalDatabaseReadException, InconsistentSchemaException;
+
+  /**
+   * Read the selected tables of a schema, passing each one to a listener as soon as it's complete. Returns after all
+   * tables have been passed to the listener.
+   * @param catalogSchema the schema to read. Note: must have either catalog or schema defined
+   * @param filter selects the tables to read.
+   * @param listener receives the tables.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent (see {@link InconsistentSchemaException}).
+   */
+  void readRelationalTables(CatalogSchema catalogSchema, TableFilter filter, RelationalTableListener listener)
+      throws RelationalDatabaseReadException, InconsistentSchemaException;
+
+  /**
+   * Release the threads held by the builder. The metadata factory isn't closed.
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the tables a {@link FilteringRelationalDatabaseBuilder} reads. A table is read if it matches at least one of the
+ * includes (or no includes were added) and none of the excludes. Tables can be matched by exact name, by a glob ('*'
+ * matches any sequence of characters, '?' matches a single character) or by a regular expression. Matching is
+ * case-sensitive.
+ *
+ * Excluded tables are dropped before any of their metadata is read. If the includes consist of a single glob, it's also
+ * passed to the database as the table name pattern, so that the other tables aren't even listed. Includes that consist of
+ * a few exact names can be looked up one name at a time (see
+ * {@link RelationalDatabaseBuilderImpl#setTableNameLookup(boolean)}), and builders that query the system catalog directly
+ * push them down into their queries.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class TableFilter {
+  private final Set<String> m_includedNames = new HashSet<>();
+  private final List<Pattern> m_includedPatterns = new ArrayList<>();
+  private final List<String> m_includedGlobs = new ArrayList<>();
+
+  private final Set<String> m_excludedNames = new HashSet<>();
+  private final List<Pattern> m_excludedPatterns = new ArrayList<>();
+
+  /**
+   * Convert a glob to a regular expression.
+   * @param glob glob.
+   * @return equivalent regular expression.
+   */
+  private static Pattern globToRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * @param name name of a table to read.
+   */
+  public void addIncludedName(String name) {
+    m_includedNames.add(name);
+  }
+
+  /**
+   * @param glob glob matching the names of the tables to read.
+   */
+  public void addIncludedGlob(String glob) {
+    m_includedPatterns.add(globToRegex(glob));
+    m_includedGlobs.add(glob);
+  }
+
+  /**
+   * @param regex regular expression matching the names of the tables to read.
+   */
+  public void addIncludedRegex(String regex) {
+    m_includedPatterns.add(Pattern.compile(regex));
+  }
+
+  /**
+   * @param name name of a table to skip.
+   */
+  public void addExcludedName(String name) {
+    m_excludedNames.add(name);
+  }
+
+  /**
+   * @param glob glob matching the names of the tables to skip.
+   */
+  public void addExcludedGlob(String glob) {
+    m_excludedPatterns.add(globToRegex(glob));
+  }
+
+  /**
+   * @param regex regular expression matching the names of the tables to skip.
+   */
+  public void addExcludedRegex(String regex) {
+    m_excludedPatterns.add(Pattern.compile(regex));
+  }
+
+  /**
+   * @param tableName table name.
+   * @return whether the table should be read.
+   */
+  public boolean accept(String tableName) {
+    if (m_excludedNames.contains(tableName) || matchesAny(m_excludedPatterns, tableName)) {
+      return false;
+    }
+    if (m_includedNames.isEmpty() && m_includedPatterns.isEmpty()) {
+      return true;
+    }
+    return m_includedNames.contains(tableName) || matchesAny(m_includedPatterns, tableName);
+  }
+
+  /**
+   * @param patterns patterns.
+   * @param tableName table name.
+   * @return whether any of the patterns matches the table name.
+   */
+  private static boolean matchesAny(List<Pattern> patterns, String tableName) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(tableName).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the names of the tables to read if the includes consist of exact names only, or null if they don't (the filter
+   * may still exclude some of the names).
+   */
+  public Set<String> getIncludedNames() {
+    if (m_includedNames.isEmpty() || !m_includedPatterns.isEmpty()) {
+      return null;
+    }
+    return Collections.unmodifiableSet(m_includedNames);
+  }
+
+  /**
+   * Convert the includes to a {@link java.sql.DatabaseMetaData} table name pattern if possible. The pattern may match more
+   * tables than the filter (e.g. if the driver has no escape character), so {@link #accept(String)} still has to be applied
+   * to the tables it returns.
+   * @param searchStringEscape the string used to escape '_' and '%' (see
+   * {@link java.sql.DatabaseMetaData#getSearchStringEscape()}); may be null or empty if there's none.
+   * @return the pattern or null if the includes can't be expressed as a single pattern.
+   */
+  public String getTableNamePattern(String searchStringEscape) {
+    if (m_includedNames.size() == 1 && m_includedPatterns.isEmpty()) {
+      return escape(m_includedNames.iterator().next(), searchStringEscape);
+    } else if (m_includedNames.isEmpty() && m_includedPatterns.size() == 1 && m_includedGlobs.size() == 1) {
+      StringBuilder pattern = new StringBuilder();
+      for (char c : m_includedGlobs.get(0).toCharArray()) {
+        if (c == '*') {
+          pattern.append('%');
+        } else if (c == '?') {
+          pattern.append('_');
+        } else {
+          pattern.append(escape(String.valueOf(c), searchStringEscape));
+        }
+      }
+      return pattern.toString();
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Escape the LIKE wildcards in a literal.
+   * @param literal literal.
+   * @param searchStringEscape escape string, may be null or empty.
+   * @return the escaped literal.
+   */
+  static String escape(String literal, String searchStringEscape) {
+    if (searchStringEscape == null || searchStringEscape.isEmpty()) {
+      return literal;
+    }
+    StringBuilder escaped = new StringBuilder();
+    for (char c : literal.toCharArray()) {
+      if (c == '_' || c == '%' || searchStringEscape.indexOf(c) >= 0) {
+        escaped.append(searchStringEscape);
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+}
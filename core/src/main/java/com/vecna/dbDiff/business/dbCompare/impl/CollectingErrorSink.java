@@ -0,0 +1,47 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects all differences into a list.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class CollectingErrorSink implements RdbCompareErrorSink {
+  private final List<RdbCompareError> m_errors = new ArrayList<>();
+
+  @Override
+  public void accept(RdbCompareError error) {
+    m_errors.add(error);
+  }
+
+  @Override
+  public boolean shouldContinue() {
+    return true;
+  }
+
+  /**
+   * @return the differences in the order they were received.
+   */
+  public List<RdbCompareError> getErrors() {
+    return m_errors;
+  }
+}
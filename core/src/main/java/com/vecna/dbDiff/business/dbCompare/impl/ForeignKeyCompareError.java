@@ -37,6 +37,22 @@ public class ForeignKeyCompareError extends RdbCompareError {
     this.similarFk = similarFk;
   }
 
+  /**
+   * Create a structured foreign key error.
+   * @param errorType error type.
+   * @param messageKind renders the message.
+   * @param table name of the test table.
+   * @param testFk the test foreign key.
+   * @param expected the reference value the test foreign key was compared with.
+   * @param actual the test value; the test foreign key itself unless a single property of it was compared.
+   * @param similarFk existing foreign key similar to the foreign key being tested.
+   */
+  ForeignKeyCompareError(RdbCompareErrorType errorType, RdbCompareMessage messageKind, String table, ForeignKey testFk,
+                         Object expected, Object actual, ForeignKey similarFk) {
+    super(errorType, RdbFoundOnSide.UNSPECIFIED, messageKind, table, testFk.getFkName(), expected, actual);
+    this.similarFk = similarFk;
+  }
+
   /**
    * @return an existing foreign key similar to the foreign key being tested
    */
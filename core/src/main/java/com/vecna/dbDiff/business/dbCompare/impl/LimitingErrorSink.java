@@ -0,0 +1,75 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+/**
+ * Passes up to a given number of differences to another sink and then stops the comparison, e.g. to check whether two
+ * schemas differ at all.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class LimitingErrorSink implements RdbCompareErrorSink {
+  private final RdbCompareErrorSink m_delegate;
+  private final int m_maxErrors;
+  private int m_count;
+
+  /**
+   * Create a sink that collects up to a given number of differences.
+   * @param maxErrors the maximum number of differences.
+   */
+  public LimitingErrorSink(int maxErrors) {
+    this(new CollectingErrorSink(), maxErrors);
+  }
+
+  /**
+   * Create a sink that passes up to a given number of differences to another sink.
+   * @param delegate the sink to pass the differences to.
+   * @param maxErrors the maximum number of differences.
+   */
+  public LimitingErrorSink(RdbCompareErrorSink delegate, int maxErrors) {
+    m_delegate = delegate;
+    m_maxErrors = maxErrors;
+  }
+
+  @Override
+  public void accept(RdbCompareError error) {
+    if (m_count < m_maxErrors) {
+      m_count++;
+      m_delegate.accept(error);
+    }
+  }
+
+  @Override
+  public boolean shouldContinue() {
+    return m_count < m_maxErrors && m_delegate.shouldContinue();
+  }
+
+  /**
+   * @return the number of differences passed on.
+   */
+  public int getCount() {
+    return m_count;
+  }
+
+  /**
+   * @return the sink the differences are passed to.
+   */
+  public RdbCompareErrorSink getDelegate() {
+    return m_delegate;
+  }
+}
@@ -16,16 +16,36 @@
 
 package com.vecna.dbDiff.business.dbCompare.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Ordering;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
 
 /**
  * Represents a difference between two relational DB schemas.
  *
+ * Differences found by {@link RdbDiffEngine} are structured: they carry the name of the table, the name of the column,
+ * key or index, and the expected (reference) and actual (test) values where they apply. Their messages are rendered
+ * from these fields the first time they're asked for. The values are copied when the difference is created, so they
+ * don't change or keep the compared schemas alive if the schemas are updated or reused later.
+ *
  * @author dlopuch@vecna.com
  */
 public class RdbCompareError {
   private final RdbCompareErrorType errorType;
-  private final String message;
   private final RdbFoundOnSide foundOn;
+  private final RdbCompareMessage messageKind;
+  private final String table;
+  private final String name;
+  private final Object expected;
+  private final Object actual;
+  private String message;
 
   /**
    * Create a new instance.
@@ -35,9 +55,55 @@ public class RdbCompareError {
    * @param foundOn indicates whether an extra thing was found on the Ref or Test side.
    */
   public RdbCompareError(RdbCompareErrorType errorType, String message, RdbFoundOnSide foundOn) {
-    this.errorType = errorType;
+    this(errorType, foundOn, null, null, null, null, null);
     this.message = message;
+  }
+
+  /**
+   * Create a structured instance whose message is rendered on demand.
+   *
+   * @param errorType type of schema difference.
+   * @param foundOn indicates whether an extra thing was found on the Ref or Test side.
+   * @param messageKind renders the message.
+   * @param table name of the table.
+   * @param name name of the column, key or index or null.
+   * @param expected the reference value or null; copied with {@link #snapshot(Object)}.
+   * @param actual the test value or null; copied with {@link #snapshot(Object)}.
+   */
+  RdbCompareError(RdbCompareErrorType errorType, RdbFoundOnSide foundOn, RdbCompareMessage messageKind, String table,
+                  String name, Object expected, Object actual) {
+    this.errorType = errorType;
     this.foundOn = foundOn;
+    this.messageKind = messageKind;
+    this.table = table;
+    this.name = name;
+    this.expected = snapshot(expected);
+    this.actual = snapshot(actual);
+  }
+
+  /**
+   * Copy a value of a difference so that it doesn't refer to the schema model. Foreign keys are replaced by their
+   * descriptions and indices by their column names; sets are copied in the order of their string representations and
+   * other collections in their own order. Other values (strings, numbers, column types) are immutable and kept as is.
+   * @param value a reference or test value.
+   * @return an unmodifiable copy of the value.
+   */
+  private static Object snapshot(Object value) {
+    if (value instanceof ForeignKey) {
+      return value.toString();
+    } else if (value instanceof RelationalIndex) {
+      return Collections.unmodifiableList(new ArrayList<>(((RelationalIndex) value).getColumnNames()));
+    } else if (value instanceof Collection) {
+      List<Object> values = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        values.add(snapshot(element));
+      }
+      if (value instanceof Set) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Ordering.usingToString().sortedCopy(values)));
+      }
+      return Collections.unmodifiableList(values);
+    }
+    return value;
   }
 
   /**
@@ -51,6 +117,9 @@ public class RdbCompareError {
    * @return descriptive message.
    */
   public String getMessage() {
+    if (message == null && messageKind != null) {
+      message = messageKind.render(this);
+    }
     return message;
   }
 
@@ -60,4 +129,35 @@ public class RdbCompareError {
   public RdbFoundOnSide getFoundOn() {
     return foundOn;
   }
+
+  /**
+   * @return name of the table the difference was found in; null if the difference isn't structured.
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * @return name of the column, foreign key or index the difference was found in; null if the difference concerns the
+   * table as a whole or isn't structured.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the reference value (e.g. a column type, default or size, a primary key column list or the description of a
+   * foreign key); null if there's none.
+   */
+  public Object getExpected() {
+    return expected;
+  }
+
+  /**
+   * @return the test value (e.g. a column type, default or size, a primary key column list or the description of a
+   * foreign key); null if there's none.
+   */
+  public Object getActual() {
+    return actual;
+  }
 }
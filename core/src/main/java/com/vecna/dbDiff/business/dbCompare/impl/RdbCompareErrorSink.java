@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+/**
+ * Receives schema differences from {@link RdbDiffEngine} as they're found, so that they don't have to be collected into a
+ * list first. The engine stops comparing as soon as the sink doesn't want any more differences.
+ *
+ * Sinks passed to an engine with an executor (see {@link RdbDiffEngine#setExecutor}) are still called from the thread
+ * that runs the comparison only.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface RdbCompareErrorSink {
+  /**
+   * Receive a difference.
+   * @param error the difference.
+   */
+  void accept(RdbCompareError error);
+
+  /**
+   * @return whether the engine should keep looking for differences.
+   */
+  boolean shouldContinue();
+}
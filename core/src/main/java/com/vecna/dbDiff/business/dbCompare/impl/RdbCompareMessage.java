@@ -0,0 +1,238 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.vecna.dbDiff.model.ColumnType;
+
+/**
+ * Renders the message of a structured {@link RdbCompareError} from its table, name, expected and actual values. Messages
+ * are only rendered when they're asked for, so that differences that are only counted or filtered don't pay for them.
+ *
+ * @author ogolberg@vecna.com
+ */
+enum RdbCompareMessage {
+  UNEXPECTED_TABLE {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test table '" + e.getTable() + "' is not in expected db";
+    }
+  },
+  MISSING_TABLE {
+    @Override
+    String render(RdbCompareError e) {
+      return "Reference Table '" + e.getTable() + "' is missing";
+    }
+  },
+  UNEXPECTED_PRIMARY_KEY {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test primary key " + e.getTable() + e.getActual() + " is unexpected!";
+    }
+  },
+  MISSING_PRIMARY_KEY {
+    @Override
+    String render(RdbCompareError e) {
+      return "Reference primary key " + e.getTable() + e.getExpected() + " is missing!";
+    }
+  },
+  MISCONFIGURED_PRIMARY_KEY {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test primary key " + e.getTable() + e.getActual() + " differs from reference primary key " + e.getTable()
+          + e.getExpected();
+    }
+  },
+  UNEXPECTED_COLUMN {
+    @Override
+    String render(RdbCompareError e) {
+      return "Column '" + e.getTable() + "." + e.getName() + "' is unexpected";
+    }
+  },
+  MISSING_COLUMN {
+    @Override
+    String render(RdbCompareError e) {
+      return "Table '" + e.getTable() + "' is missing column '" + e.getName() + "'";
+    }
+  },
+  COLUMN_TYPE {
+    @Override
+    String render(RdbCompareError e) {
+      ColumnType expected = (ColumnType) e.getExpected();
+      ColumnType actual = (ColumnType) e.getActual();
+      return "Test column '" + e.getTable() + "." + e.getName() + "' has wrong type.  "
+          + "Expected '" + expected.getType() + "/" + expected.getTypeCode()
+          + "' but got '" + actual.getType() + "/" + actual.getTypeCode() + "'";
+    }
+  },
+  COLUMN_DEFAULT {
+    @Override
+    String render(RdbCompareError e) {
+      return columnMismatch(e, "Default");
+    }
+  },
+  COLUMN_NULLABILITY {
+    @Override
+    String render(RdbCompareError e) {
+      return columnMismatch(e, "nullability");
+    }
+  },
+  COLUMN_SIZE {
+    @Override
+    String render(RdbCompareError e) {
+      return columnMismatch(e, "size");
+    }
+  },
+  COLUMN_ORDINAL {
+    @Override
+    String render(RdbCompareError e) {
+      return columnMismatch(e, "ordinal");
+    }
+  },
+  UNKNOWN_FK_DIFF {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test fk \"" + e.getActual() + "\" has unknown difference with fk \""
+          + e.getExpected() + "\".  Check the fk .equals() method and its hash-generation.";
+    }
+  },
+  FK_SEQUENCE_MISMATCH {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test fk '" + e.getName() + "' in table '" + e.getTable() + "' has"
+          + " wrong key sequence. Expected '" + e.getExpected() + "' but got '" + e.getActual() + "'";
+    }
+  },
+  FK_SAME_NAME {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test fk \"" + e.getActual() + "\" has the same name as the following reference FK "
+          + "constraint(s) but different signature: " + Joiner.on(", ").join((Iterable<?>) e.getExpected());
+    }
+  },
+  FK_SAME_REFERENCE {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test fk \"" + e.getActual() + "\" references the same columns as the following reference FK "
+          + "constraint(s) but applies to a different column: " + Joiner.on(", ").join((Iterable<?>) e.getExpected());
+    }
+  },
+  MISNAMED_FK {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test fk \"" + e.getActual() + "\" looks the same as the following fk but wrong"
+          + " name: \"" + e.getExpected() + "\".";
+    }
+  },
+  UNEXPECTED_FK {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test foreign key \"" + e.getActual() + "\" is unexpected!";
+    }
+  },
+  MISSING_FK {
+    @Override
+    String render(RdbCompareError e) {
+      return "Reference foreign key \"" + e.getExpected() + "\" is missing!";
+    }
+  },
+  UNEXPECTED_INDEX {
+    @Override
+    String render(RdbCompareError e) {
+      return "Test index \"" + getIndexDesc(e.getName(), (Collection<?>) e.getActual(), e.getTable()) + "\" is unexpected!";
+    }
+  },
+  MISSING_INDEX {
+    @Override
+    String render(RdbCompareError e) {
+      return "Reference index \"" + getIndexDesc(e.getName(), (Collection<?>) e.getExpected(), e.getTable())
+          + "\" is missing!";
+    }
+  },
+  /**
+   * expected: the columns of each unnamed reference index on the columns, actual: names of the test indices on the same
+   * columns.
+   */
+  UNEXPECTED_INDICES {
+    @Override
+    String render(RdbCompareError e) {
+      return "At least " + getIndexDescs((Collection<?>) e.getActual(), (Collection<?>) e.getExpected(), e.getTable(),
+                                         "test") + " are unexpected!";
+    }
+  },
+  /**
+   * expected: names of the reference indices on the columns, actual: the columns of each unnamed test index on the same
+   * columns.
+   */
+  MISSING_INDICES {
+    @Override
+    String render(RdbCompareError e) {
+      return "At least " + getIndexDescs((Collection<?>) e.getExpected(), (Collection<?>) e.getActual(), e.getTable(),
+                                         "reference") + " are missing!";
+    }
+  };
+
+  /**
+   * @param e a structured difference.
+   * @return the message of the difference.
+   */
+  abstract String render(RdbCompareError e);
+
+  /**
+   * @param e a column property difference.
+   * @param property the name of the property in the message.
+   * @return the message of the difference.
+   */
+  private static String columnMismatch(RdbCompareError e, String property) {
+    return "Test column '" + e.getTable() + "." + e.getName() + "' has wrong " + property + ".  "
+        + "Expected '" + e.getExpected() + "' but got '" + e.getActual() + "'";
+  }
+
+  /**
+   * Create a human-readable description of a table index.
+   * @param indexName index name.
+   * @param columnNames names of the columns.
+   * @param table the name of the table that the index belongs to.
+   * @return a human-readable description of the index.
+   */
+  static String getIndexDesc(String indexName, Collection<?> columnNames, String table) {
+    return (indexName == null ? "<UNKNOWN>" : indexName) + "=" + table + "(" + Joiner.on(',').join(columnNames) + ")";
+  }
+
+  /**
+   * Describe the named indices on one side that the unnamed indices on the other side can't all account for.
+   * @param indexNames names of the indices on one side.
+   * @param unnamedIndices the column names of the indices with unknown names on the other side, all the same.
+   * @param table the name of the table that the indices belong to.
+   * @param side "test" or "reference".
+   * @return e.g. '1 of test indices "a=t(x)", "b=t(x)"'.
+   */
+  private static String getIndexDescs(Collection<?> indexNames, Collection<?> unnamedIndices, String table,
+                                      String side) {
+    Collection<?> columnNames = (Collection<?>) unnamedIndices.iterator().next();
+    List<String> descs = new ArrayList<>();
+    for (Object indexName : indexNames) {
+      descs.add("\"" + getIndexDesc((String) indexName, columnNames, table) + "\"");
+    }
+    return (indexNames.size() - unnamedIndices.size()) + " of " + side + " indices " + Joiner.on(", ").join(descs);
+  }
+}
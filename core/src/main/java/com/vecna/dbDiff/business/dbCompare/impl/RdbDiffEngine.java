@@ -18,22 +18,32 @@ package com.vecna.dbDiff.business.dbCompare.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.vecna.dbDiff.business.fingerprint.SchemaFingerprinter;
+import com.vecna.dbDiff.model.MetadataCategory;
+import com.vecna.dbDiff.model.ReadProfile;
 import com.vecna.dbDiff.model.db.Column;
 import com.vecna.dbDiff.model.db.ForeignKey;
 import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
@@ -45,6 +55,46 @@ import com.vecna.dbDiff.model.relationalDb.RelationalTable;
  * @author dlopuch@vecna.com
  */
 public class RdbDiffEngine {
+  private final ReadProfile m_readProfile;
+  private SchemaFingerprinter m_fingerprinter;
+  private ExecutorService m_executor;
+
+  /**
+   * Create an engine that compares all table metadata.
+   */
+  public RdbDiffEngine() {
+    this(ReadProfile.ALL);
+  }
+
+  /**
+   * Create an engine that only compares the table metadata included in a profile. Use the profile the schemas were read
+   * with, so that metadata that wasn't read isn't reported as missing.
+   * @param readProfile the profile.
+   */
+  public RdbDiffEngine(ReadProfile readProfile) {
+    m_readProfile = readProfile;
+  }
+
+  /**
+   * Use fingerprints to skip the comparison of identical tables. If the fingerprints of two databases match, they're
+   * reported as identical without comparing any tables. Fingerprints are cached by the fingerprinter, so sharing one
+   * fingerprinter between comparisons avoids re-hashing tables that take part in several of them.
+   * @param fingerprinter the fingerprinter or null to compare all tables.
+   */
+  public void setFingerprinter(SchemaFingerprinter fingerprinter) {
+    m_fingerprinter = fingerprinter;
+  }
+
+  /**
+   * Compare the tables of two databases in parallel. The differences are still reported in the same order as by a serial
+   * comparison.
+   * @param executor executor to compare tables on (e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}) or null
+   * to compare them on the calling thread; not shut down by the engine.
+   */
+  public void setExecutor(ExecutorService executor) {
+    m_executor = executor;
+  }
+
   /**
    * Compare two relational DB schemas.
    * @param refDb reference database.
@@ -52,33 +102,268 @@ public class RdbDiffEngine {
    * @return the list of DB schema differences.
    */
   public List<RdbCompareError> compareRelationalDatabase(RelationalDatabase refDb, RelationalDatabase testDb) {
-    List<RdbCompareError> errors = new LinkedList<RdbCompareError>();
+    CollectingErrorSink sink = new CollectingErrorSink();
+    compareRelationalDatabase(refDb, testDb, sink);
+    return sink.getErrors();
+  }
+
+  /**
+   * Compare two relational DB schemas, passing the differences to a sink as they're found. The comparison stops as soon as
+   * the sink doesn't want any more differences.
+   * @param refDb reference database.
+   * @param testDb test database.
+   * @param sink receives the differences in the same order as they're returned by
+   * {@link #compareRelationalDatabase(RelationalDatabase, RelationalDatabase)}.
+   */
+  public void compareRelationalDatabase(RelationalDatabase refDb, RelationalDatabase testDb, RdbCompareErrorSink sink) {
+    SortedMap<String, HashCode> refFingerprints = null;
+    SortedMap<String, HashCode> testFingerprints = null;
+    if (m_fingerprinter != null) {
+      refFingerprints = m_fingerprinter.getTableFingerprints(refDb);
+      testFingerprints = m_fingerprinter.getTableFingerprints(testDb);
+      if (m_fingerprinter.getDatabaseFingerprint(refFingerprints)
+          .equals(m_fingerprinter.getDatabaseFingerprint(testFingerprints))) {
+        return;
+      }
+    }
 
     // First check every test table exists in the reference db
+    if (m_executor == null || testDb.getTables().size() < 2) {
+      for (RelationalTable testT : testDb.getTables()) {
+        if (!sink.shouldContinue()) {
+          return;
+        }
+        compareTestTable(refDb, testT, refFingerprints, testFingerprints, sink);
+      }
+    } else {
+      compareTestTablesInParallel(refDb, testDb, refFingerprints, testFingerprints, sink);
+    }
+
+    // Check every reference table exists in the test db
+    for (RelationalTable refT : refDb.getTables()) {
+      if (!sink.shouldContinue()) {
+        return;
+      }
+      if (testDb.getTableByName(refT.getName()) == null) {
+        sink.accept(getMissingTableError(refT));
+      }
+    }
+  }
+
+  /**
+   * Compare two schemas whose tables are supplied in name order, as by
+   * {@link com.vecna.dbDiff.snapshot.SnapshotReader#iterateTables()} or {@link com.vecna.dbDiff.builder.SortedTableIterator}.
+   * @param refTables reference tables in name order.
+   * @param testTables test tables in name order.
+   * @return the list of DB schema differences, ordered by table name.
+   * @see #compareSortedTables(Iterator, Iterator, RdbCompareErrorSink)
+   */
+  public List<RdbCompareError> compareSortedTables(Iterator<RelationalTable> refTables, Iterator<RelationalTable> testTables) {
+    CollectingErrorSink sink = new CollectingErrorSink();
+    compareSortedTables(refTables, testTables, sink);
+    return sink.getErrors();
+  }
+
+  /**
+   * Compare two schemas whose tables are supplied in name order, merging the two sequences in a single pass. Only the
+   * current pair of tables is held, so schemas that don't fit in memory can be compared straight from snapshots or live
+   * databases. The differences are the same as the ones found by
+   * {@link #compareRelationalDatabase(RelationalDatabase, RelationalDatabase, RdbCompareErrorSink)}, but they're ordered
+   * by table name, with missing and unexpected tables reported in place. Tables are compared on the calling thread; if a
+   * fingerprinter is set, tables with matching fingerprints are skipped.
+   * @param refTables reference tables in name order.
+   * @param testTables test tables in name order.
+   * @param sink receives the differences. The comparison stops as soon as the sink doesn't want any more differences.
+   * @throws IllegalArgumentException if the tables aren't in strictly ascending name order.
+   */
+  public void compareSortedTables(Iterator<RelationalTable> refTables, Iterator<RelationalTable> testTables,
+                                  RdbCompareErrorSink sink) {
+    RelationalTable refT = nextSorted(refTables, null);
+    RelationalTable testT = nextSorted(testTables, null);
+
+    while ((refT != null || testT != null) && sink.shouldContinue()) {
+      int order = refT == null ? 1 : testT == null ? -1 : refT.getName().compareTo(testT.getName());
+      if (order < 0) {
+        sink.accept(getMissingTableError(refT));
+        refT = nextSorted(refTables, refT);
+      } else if (order > 0) {
+        sink.accept(getUnexpectedTableError(testT));
+        testT = nextSorted(testTables, testT);
+      } else {
+        if (m_fingerprinter == null
+            || !m_fingerprinter.getTableFingerprint(refT).equals(m_fingerprinter.getTableFingerprint(testT))) {
+          compareRelationalTables(refT, testT, sink);
+        }
+        refT = nextSorted(refTables, refT);
+        testT = nextSorted(testTables, testT);
+      }
+    }
+  }
+
+  /**
+   * @param tables tables in name order.
+   * @param previous the previous table or null.
+   * @return the next table or null if there are no more.
+   * @throws IllegalArgumentException if the next table doesn't come after the previous one.
+   */
+  private static RelationalTable nextSorted(Iterator<RelationalTable> tables, RelationalTable previous) {
+    if (!tables.hasNext()) {
+      return null;
+    }
+    RelationalTable next = tables.next();
+    if (previous != null && previous.getName().compareTo(next.getName()) >= 0) {
+      throw new IllegalArgumentException("tables are not sorted by name: '" + next.getName() + "' comes after '"
+          + previous.getName() + "'");
+    }
+    return next;
+  }
+
+  /**
+   * Compare two relational DB schemas, reusing the differences of the tables that haven't changed since a previous
+   * comparison. A pair of tables is only compared again if its name is among the changed tables, if it wasn't compared
+   * last time or if its fingerprints differ from the ones recorded then (when a fingerprinter is set; without one, the
+   * changed table names are trusted). The differences are the same as the ones returned by
+   * {@link #compareRelationalDatabase(RelationalDatabase, RelationalDatabase)}. Tables are compared on the calling thread.
+   * @param refDb reference database.
+   * @param testDb test database.
+   * @param previous the result of the previous comparison of the same schemas or null to compare all tables.
+   * @param changedTableNames names of the tables that changed on either side since the previous comparison (e.g. as
+   * reported by {@link com.vecna.dbDiff.builder.IncrementalRelationalDatabaseBuilder#getChangedTableNames()}), or null
+   * if they're unknown, in which case all tables are compared again. Names are matched case-insensitively, since
+   * databases differ in how they case unquoted names.
+   * @return the differences, together with what's needed to reuse them next time.
+   */
+  public RdbDiffResult compareRelationalDatabase(RelationalDatabase refDb, RelationalDatabase testDb,
+                                                 RdbDiffResult previous, Set<String> changedTableNames) {
+    boolean reuse = previous != null && changedTableNames != null && previous.getReadProfile().equals(m_readProfile);
+    Set<String> changed = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    if (reuse) {
+      changed.addAll(changedTableNames);
+    }
+    List<RdbCompareError> errors = new ArrayList<>();
+    Map<String, RdbDiffResult.TableResult> tableResults = new HashMap<>();
+    int comparedTableCount = 0;
+
     for (RelationalTable testT : testDb.getTables()) {
       RelationalTable refT = refDb.getTableByName(testT.getName());
       if (refT == null) {
-        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.UNEXPECTED_TABLE,
-                                                "Test table '" + testT.getName() + "' is not in expected db",
-                                                RdbFoundOnSide.TEST);
-        errors.add(e);
+        errors.add(getUnexpectedTableError(testT));
+        continue;
+      }
+
+      HashCode refFingerprint = m_fingerprinter == null ? null : m_fingerprinter.getTableFingerprint(refT);
+      HashCode testFingerprint = m_fingerprinter == null ? null : m_fingerprinter.getTableFingerprint(testT);
+      RdbDiffResult.TableResult previousResult = reuse && !changed.contains(testT.getName())
+          ? previous.getTableResult(testT.getName()) : null;
+
+      List<RdbCompareError> tableErrors;
+      if (previousResult != null && previousResult.matches(refFingerprint, testFingerprint)) {
+        tableErrors = previousResult.getErrors();
+      } else if (refFingerprint != null && refFingerprint.equals(testFingerprint)) {
+        tableErrors = Collections.emptyList();
       } else {
-        // If the table exists in ref db, compare the two
-        errors.addAll(compareRelationalTables(refT, testT));
+        tableErrors = compareRelationalTables(refT, testT);
+        comparedTableCount++;
       }
+      tableResults.put(testT.getName(), new RdbDiffResult.TableResult(refFingerprint, testFingerprint, tableErrors));
+      errors.addAll(tableErrors);
     }
 
-    // Check every reference table exists in the test db
     for (RelationalTable refT : refDb.getTables()) {
       if (testDb.getTableByName(refT.getName()) == null) {
-        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.MISSING_TABLE,
-                                                "Reference Table '" + refT.getName() + "' is missing",
-                                                 RdbFoundOnSide.REF);
-        errors.add(e);
+        errors.add(getMissingTableError(refT));
       }
     }
 
-    return errors;
+    return new RdbDiffResult(m_readProfile, errors, tableResults, comparedTableCount);
+  }
+
+  /**
+   * Compare a test table with the reference table of the same name.
+   * @param refDb reference database.
+   * @param testT test table.
+   * @param refFingerprints reference table fingerprints or null if fingerprints aren't used.
+   * @param testFingerprints test table fingerprints or null if fingerprints aren't used.
+   * @param sink receives the table differences.
+   */
+  private void compareTestTable(RelationalDatabase refDb, RelationalTable testT,
+                                SortedMap<String, HashCode> refFingerprints, SortedMap<String, HashCode> testFingerprints,
+                                RdbCompareErrorSink sink) {
+    RelationalTable refT = refDb.getTableByName(testT.getName());
+    if (refT == null) {
+      sink.accept(getUnexpectedTableError(testT));
+    } else if (refFingerprints == null
+        || !refFingerprints.get(refT.getName()).equals(testFingerprints.get(testT.getName()))) {
+      // If the table exists in ref db and isn't known to be identical, compare the two
+      compareRelationalTables(refT, testT, sink);
+    }
+  }
+
+  /**
+   * Compare every test table with the reference table of the same name on the executor. Each table gets its own list of
+   * differences; the lists are passed to the sink in test table order. Once the sink is satisfied, the comparisons that
+   * haven't finished yet are cancelled.
+   * @param refDb reference database.
+   * @param testDb test database.
+   * @param refFingerprints reference table fingerprints or null if fingerprints aren't used.
+   * @param testFingerprints test table fingerprints or null if fingerprints aren't used.
+   * @param sink receives the table differences.
+   */
+  private void compareTestTablesInParallel(final RelationalDatabase refDb, RelationalDatabase testDb,
+                                           final SortedMap<String, HashCode> refFingerprints,
+                                           final SortedMap<String, HashCode> testFingerprints, RdbCompareErrorSink sink) {
+    List<Future<List<RdbCompareError>>> futures = new ArrayList<>(testDb.getTables().size());
+    try {
+      for (final RelationalTable testT : testDb.getTables()) {
+        futures.add(m_executor.submit(new Callable<List<RdbCompareError>>() {
+          @Override
+          public List<RdbCompareError> call() {
+            CollectingErrorSink tableSink = new CollectingErrorSink();
+            compareTestTable(refDb, testT, refFingerprints, testFingerprints, tableSink);
+            return tableSink.getErrors();
+          }
+        }));
+      }
+
+      for (Future<List<RdbCompareError>> future : futures) {
+        for (RdbCompareError error : future.get()) {
+          if (!sink.shouldContinue()) {
+            return;
+          }
+          sink.accept(error);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      for (Future<List<RdbCompareError>> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * @param testT a test table that's not in the reference database.
+   * @return the corresponding difference.
+   */
+  RdbCompareError getUnexpectedTableError(RelationalTable testT) {
+    return new RdbCompareError(RdbCompareErrorType.UNEXPECTED_TABLE, RdbFoundOnSide.TEST,
+                               RdbCompareMessage.UNEXPECTED_TABLE, testT.getName(), null, null, null);
+  }
+
+  /**
+   * @param refT a reference table that's not in the test database.
+   * @return the corresponding difference.
+   */
+  RdbCompareError getMissingTableError(RelationalTable refT) {
+    return new RdbCompareError(RdbCompareErrorType.MISSING_TABLE, RdbFoundOnSide.REF,
+                               RdbCompareMessage.MISSING_TABLE, refT.getName(), null, null, null);
   }
 
   /**
@@ -88,52 +373,64 @@ public class RdbDiffEngine {
    * @return list of table differences.
    */
   public List<RdbCompareError> compareRelationalTables(RelationalTable refT, RelationalTable testT) {
-    List<RdbCompareError> errors = new ArrayList<>();
+    CollectingErrorSink sink = new CollectingErrorSink();
+    compareRelationalTables(refT, testT, sink);
+    return sink.getErrors();
+  }
 
+  /**
+   * Compare two relational tables, passing the differences to a sink as they're found. The comparison stops as soon as
+   * the sink doesn't want any more differences.
+   * @param refT a reference RelationalTable
+   * @param testT a test RelationalTable
+   * @param sink receives the table differences.
+   */
+  public void compareRelationalTables(RelationalTable refT, RelationalTable testT, RdbCompareErrorSink sink) {
     // Compare primary key
-    errors.addAll(comparePrimaryKeys(refT, testT));
+    if (m_readProfile.includes(MetadataCategory.PRIMARY_KEYS) && sink.shouldContinue()) {
+      comparePrimaryKeys(refT, testT, sink);
+    }
 
     //Compare Columns
-    errors.addAll(compareColumns(refT, testT));
+    if (m_readProfile.includes(MetadataCategory.COLUMNS) && sink.shouldContinue()) {
+      compareColumns(refT, testT, sink);
+    }
 
     //Compare foreign keys
-    errors.addAll(compareForeignKeys(refT, testT));
+    if (m_readProfile.includes(MetadataCategory.FOREIGN_KEYS) && sink.shouldContinue()) {
+      compareForeignKeys(refT, testT, sink);
+    }
 
     // Compare indices
-    errors.addAll(compareIndices(refT, testT));
-
-    return errors;
+    if (m_readProfile.includes(MetadataCategory.INDICES) && sink.shouldContinue()) {
+      compareIndices(refT, testT, sink);
+    }
   }
 
   /**
    * Compare primary keys.
    * @param refT reference table.
    * @param testT test table.
-   * @return primary key differences.
+   * @param sink receives the primary key differences.
    */
-  private List<RdbCompareError> comparePrimaryKeys(RelationalTable refT, RelationalTable testT) {
-    List<RdbCompareError> errors = new ArrayList<>();
+  private void comparePrimaryKeys(RelationalTable refT, RelationalTable testT, RdbCompareErrorSink sink) {
     if (CollectionUtils.isEmpty(refT.getPkColumns())) {
       if (CollectionUtils.isNotEmpty(testT.getPkColumns())) {
-        errors.add(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_PRIMARY_KEY,
-                                       "Test primary key " + testT.getName()
-                                       + testT.getPkColumns() + " is unexpected!",
-                                       RdbFoundOnSide.TEST));
+        sink.accept(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_PRIMARY_KEY, RdbFoundOnSide.TEST,
+                                        RdbCompareMessage.UNEXPECTED_PRIMARY_KEY, testT.getName(), null,
+                                        null, testT.getPkColumns()));
       }
     } else if (CollectionUtils.isEmpty(testT.getPkColumns())) {
       if (CollectionUtils.isNotEmpty(refT.getPkColumns())) {
-        errors.add(new RdbCompareError(RdbCompareErrorType.MISSING_PRIMARY_KEY,
-                                       "Reference primary key " + refT.getName()
-                                       + refT.getPkColumns() + " is missing!",
-                                       RdbFoundOnSide.REF));
+        sink.accept(new RdbCompareError(RdbCompareErrorType.MISSING_PRIMARY_KEY, RdbFoundOnSide.REF,
+                                        RdbCompareMessage.MISSING_PRIMARY_KEY, refT.getName(), null,
+                                        refT.getPkColumns(), null));
       }
     } else if (!refT.getPkColumns().equals(testT.getPkColumns())) {
-      errors.add(new RdbCompareError(RdbCompareErrorType.MISCONFIGURED_PRIMARY_KEY,
-                                     "Test primary key " + testT.getName() + testT.getPkColumns()
-                                     + " differs from reference primary key " + refT.getName() + refT.getPkColumns(),
-                                     RdbFoundOnSide.UNSPECIFIED));
+      sink.accept(new RdbCompareError(RdbCompareErrorType.MISCONFIGURED_PRIMARY_KEY, RdbFoundOnSide.UNSPECIFIED,
+                                      RdbCompareMessage.MISCONFIGURED_PRIMARY_KEY, testT.getName(), null,
+                                      refT.getPkColumns(), testT.getPkColumns()));
     }
-    return errors;
   }
 
   /**
@@ -141,18 +438,25 @@ public class RdbDiffEngine {
    * Any errors get added to the errors param list.
    * @param refT A reference table
    * @param testT A test table
-   * @return the list of column differences.
+   * @param sink receives the column differences.
    */
-  private List<RdbCompareError> compareColumns(RelationalTable refT, RelationalTable testT) {
-    List<RdbCompareError> errors = new ArrayList<>();
+  private void compareColumns(RelationalTable refT, RelationalTable testT, RdbCompareErrorSink sink) {
+    // compact tables with identical columns are recognized from their arrays, without materializing any columns
+    if (refT.hasSameColumns(testT)) {
+      return;
+    }
+
     //First check every test column exists in the reference table
     for (Column testC : testT.getColumns()) {
+      if (!sink.shouldContinue()) {
+        return;
+      }
       Column refC = refT.getColumnByName(testC.getName());
       if (refC == null) {
-        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.UNEXPECTED_COLUMN,
-                                  "Column '" + testT.getName() + "." + testC.getName() + "' is unexpected",
-                                   RdbFoundOnSide.TEST);
-        errors.add(e);
+        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.UNEXPECTED_COLUMN, RdbFoundOnSide.TEST,
+                                                RdbCompareMessage.UNEXPECTED_COLUMN, testT.getName(), testC.getName(),
+                                                null, null);
+        sink.accept(e);
       } else {
         //Column is expected.  Check the column properties
         if (!Objects.equal(refC.getType(), testC.getType())) {
@@ -163,57 +467,51 @@ public class RdbDiffEngine {
           } else {
             errorType = RdbCompareErrorType.COL_TYPE_MISMATCH;
           }
-          RdbCompareError e = new RdbCompareError(errorType,
-                                  "Test column '" + testT.getName() + "." + testC.getName() + "' has wrong type.  "
-                                  + "Expected '" + refC.getType() + "/" + refC.getTypeName()
-                                  + "' but got '" + testC.getType() + "/" + testC.getTypeName() + "'",
-                                  RdbFoundOnSide.UNSPECIFIED);
-          errors.add(e);
+          RdbCompareError e = new RdbCompareError(errorType, RdbFoundOnSide.UNSPECIFIED,
+                                                  RdbCompareMessage.COLUMN_TYPE, testT.getName(), testC.getName(),
+                                                  refC.getColumnType(), testC.getColumnType());
+          sink.accept(e);
         }
         if (!Objects.equal(refC.getDefault(), testC.getDefault())) {
-          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_DEFAULT_MISMATCH,
-                                    "Test column '" + testT.getName() + "." + testC.getName() + "' has wrong Default.  "
-                                    + "Expected '" + refC.getDefault() + "' but got '" + testC.getDefault() + "'",
-                                    RdbFoundOnSide.UNSPECIFIED);
-          errors.add(e);
+          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_DEFAULT_MISMATCH, RdbFoundOnSide.UNSPECIFIED,
+                                                  RdbCompareMessage.COLUMN_DEFAULT, testT.getName(), testC.getName(),
+                                                  refC.getDefault(), testC.getDefault());
+          sink.accept(e);
         }
         if (!Objects.equal(refC.getIsNullable(), testC.getIsNullable())) {
-          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_NULLABLE_MISMATCH,
-                                    "Test column '" + testT.getName() + "." + testC.getName() + "' has wrong "
-                                    + "nullability.  Expected '" + refC.getIsNullable() + "' but got '"
-                                    + testC.getIsNullable() + "'",
-                                    RdbFoundOnSide.UNSPECIFIED);
-          errors.add(e);
+          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_NULLABLE_MISMATCH, RdbFoundOnSide.UNSPECIFIED,
+                                                  RdbCompareMessage.COLUMN_NULLABILITY, testT.getName(), testC.getName(),
+                                                  refC.getIsNullable(), testC.getIsNullable());
+          sink.accept(e);
         }
         if (refC.getColumnSize() != null && testC.getColumnSize() != null && !refC.getColumnSize().equals(testC.getColumnSize())) {
-          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_SIZE_MISMATCH,
-                                    "Test column '" + testT.getName() + "." + testC.getName() + "' has wrong size.  "
-                                    + "Expected '" + refC.getColumnSize() + "' but got '" + testC.getColumnSize() + "'",
-                                    RdbFoundOnSide.UNSPECIFIED);
-          errors.add(e);
+          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_SIZE_MISMATCH, RdbFoundOnSide.UNSPECIFIED,
+                                                  RdbCompareMessage.COLUMN_SIZE, testT.getName(), testC.getName(),
+                                                  refC.getColumnSize(), testC.getColumnSize());
+          sink.accept(e);
         }
         if (!Objects.equal(refC.getOrdinal(), refC.getOrdinal())) {
           //TODO: Turn this into a warning?
-          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_ORDINAL_MISMATCH,
-                                    "Test column '" + testT.getName() + "." + testC.getName() + "' has wrong ordinal.  "
-                                    + "Expected '" + refC.getOrdinal() + "' but got '" + testC.getOrdinal() + "'",
-                                    RdbFoundOnSide.UNSPECIFIED);
-          errors.add(e);
+          RdbCompareError e = new RdbCompareError(RdbCompareErrorType.COL_ORDINAL_MISMATCH, RdbFoundOnSide.UNSPECIFIED,
+                                                  RdbCompareMessage.COLUMN_ORDINAL, testT.getName(), testC.getName(),
+                                                  refC.getOrdinal(), testC.getOrdinal());
+          sink.accept(e);
         }
       }
     }
 
     //Missing Columns: Check every ref col exists in test table
     for (Column refC : refT.getColumns()) {
+      if (!sink.shouldContinue()) {
+        return;
+      }
       if (testT.getColumnByName(refC.getName()) == null) {
-        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.MISSING_COLUMN,
-                                  "Table '" + testT.getName() + "' is missing column '" + refC.getName() + "'",
-                                   RdbFoundOnSide.REF);
-        errors.add(e);
+        RdbCompareError e = new RdbCompareError(RdbCompareErrorType.MISSING_COLUMN, RdbFoundOnSide.REF,
+                                                RdbCompareMessage.MISSING_COLUMN, testT.getName(), refC.getName(),
+                                                null, null);
+        sink.accept(e);
       }
     }
-
-    return errors;
   }
 
   /**
@@ -231,24 +529,19 @@ public class RdbDiffEngine {
         if (refFk.equalsFrom(testFk) && refFk.equalsReference(testFk)) {
           if (refFk.getKeySeq().equals(testFk.getKeySeq())) {
             //FK with the same signature, name, and sequence number... something else is wrong
-            return new ForeignKeyCompareError(RdbCompareErrorType.UNKNOWN_FK_DIFF,
-                                              "Test fk \"" + testFk + "\" has unknown difference with fk \""
-                                                  + refFk + "\".  Check the fk .equals() method and its hash-generation.", refFk);
+            return new ForeignKeyCompareError(RdbCompareErrorType.UNKNOWN_FK_DIFF, RdbCompareMessage.UNKNOWN_FK_DIFF,
+                                              testT.getName(), testFk, refFk, testFk, refFk);
           } else {
             //FK with the same signature and name, but wrong key sequence
-            return new ForeignKeyCompareError(RdbCompareErrorType.FK_SEQUENCE_MISMATCH,
-                                              "Test fk '" + testFk.getFkName() + "' in table '" + testT.getName() + "' has"
-                                                  + " wrong key sequence. Expected '" + refFk.getKeySeq() + "' but got '"
-                                                  + testFk.getKeySeq() + "'", refFk);
+            return new ForeignKeyCompareError(RdbCompareErrorType.FK_SEQUENCE_MISMATCH, RdbCompareMessage.FK_SEQUENCE_MISMATCH,
+                                              testT.getName(), testFk, refFk.getKeySeq(), testFk.getKeySeq(),
+                                              refFk);
           }
         }
       }
       // No reference key by this name has the same to and from.  Misconfigured key.
-      String matchingFkNames = Joiner.on(", ").join(refFksByName);
-
-      return new ForeignKeyCompareError(RdbCompareErrorType.MISCONFIGURED_FK,
-                                        "Test fk \"" + testFk + "\" has the same name as the following reference FK "
-                                            + "constraint(s) but different signature: " + matchingFkNames, null);
+      return new ForeignKeyCompareError(RdbCompareErrorType.MISCONFIGURED_FK, RdbCompareMessage.FK_SAME_NAME,
+                                        testT.getName(), testFk, refFksByName, testFk, null);
     } else {
       //Try to find a match based on reference
       Set<ForeignKey> refFksByRefCol = refT.getFksByReferencedCol(testFk.getPkCatalogSchema().getCatalog(), testFk.getPkCatalogSchema().getSchema(),
@@ -259,28 +552,23 @@ public class RdbDiffEngine {
             // We have a fk with same signature
             if (refFk.getFkName().equals(testFk.getFkName())) {
               //Same signature and name, unknown difference
-              return new ForeignKeyCompareError(RdbCompareErrorType.UNKNOWN_FK_DIFF,
-                                                "Test fk \"" + testFk + "\" has unknown difference with fk \""
-                                                    + refFk + "\".  Check the fk .equals() method and its hash-generation.", refFk);
+              return new ForeignKeyCompareError(RdbCompareErrorType.UNKNOWN_FK_DIFF, RdbCompareMessage.UNKNOWN_FK_DIFF,
+                                                testT.getName(), testFk, refFk, testFk, refFk);
             } else {
               //Same signature but different name: misnamed FK
-              return new ForeignKeyCompareError(RdbCompareErrorType.MISNAMED_FK,
-                                                "Test fk \"" + testFk + "\" looks the same as the following fk but wrong"
-                                                    + " name: \"" + refFk + "\".", refFk);
+              return new ForeignKeyCompareError(RdbCompareErrorType.MISNAMED_FK, RdbCompareMessage.MISNAMED_FK,
+                                                testT.getName(), testFk, refFk, testFk, refFk);
             }
           }
         }
 
-        String matchingFks = Joiner.on(", ").join(refFksByRefCol);
-
-        return new ForeignKeyCompareError(RdbCompareErrorType.MISCONFIGURED_FK,
-                                          "Test fk \"" + testFk + "\" references the same columns as the following reference FK "
-                                              + "constraint(s) but applies to a different column: " + matchingFks, null);
+        return new ForeignKeyCompareError(RdbCompareErrorType.MISCONFIGURED_FK, RdbCompareMessage.FK_SAME_REFERENCE,
+                                          testT.getName(), testFk, refFksByRefCol, testFk, null);
 
       } else {
         //Unexpected FK
-        return new ForeignKeyCompareError(RdbCompareErrorType.UNEXPECTED_FK,
-                                          "Test foreign key \"" + testFk + "\" is unexpected!", null);
+        return new ForeignKeyCompareError(RdbCompareErrorType.UNEXPECTED_FK, RdbCompareMessage.UNEXPECTED_FK,
+                                          testT.getName(), testFk, null, testFk, null);
       }
     }
   }
@@ -290,58 +578,64 @@ public class RdbDiffEngine {
    * Any errors get added to the errors param list.
    * @param refT A reference table
    * @param testT A test table
-   * @return foreign key differences.
+   * @param sink receives the foreign key differences.
    */
-  private List<RdbCompareError> compareForeignKeys(RelationalTable refT, RelationalTable testT) {
-    List<RdbCompareError> errors = new ArrayList<>();
+  private void compareForeignKeys(RelationalTable refT, RelationalTable testT, RdbCompareErrorSink sink) {
     Set<ForeignKey> refFks = new HashSet<>(refT.getFks());
 
       for (ForeignKey testFk : testT.getFks()) {
+        if (!sink.shouldContinue()) {
+          return;
+        }
         if (!refFks.remove(testFk)) {
           ForeignKeyCompareError error = getUnexpectedFkError(testFk, testT, refT);
           if (error.getSimilarFk() != null) {
             refFks.remove(error.getSimilarFk());
           }
-          errors.add(error);
+          sink.accept(error);
         }
       }
 
     //Missing FK's: Any test fk that had some partial match against a reference fk would have had the reference fk removed.
     //Any remaining reference fk's are missing ones.
     for (ForeignKey fk : refFks) {
-      errors.add(new RdbCompareError(RdbCompareErrorType.MISSING_FK, "Reference foreign key \"" + fk + "\" is missing!",
-                         RdbFoundOnSide.REF));
+      if (!sink.shouldContinue()) {
+        return;
+      }
+      sink.accept(new RdbCompareError(RdbCompareErrorType.MISSING_FK, RdbFoundOnSide.REF, RdbCompareMessage.MISSING_FK,
+                                      refT.getName(), fk.getFkName(), fk, null));
     }
-    return errors;
   }
 
   /**
    * Compare the indices of two tables.
    * @param refT reference table.
    * @param testT test table.
-   * @return the list of index differences.
+   * @param sink receives the index differences.
    */
-  private List<RdbCompareError> compareIndices(final RelationalTable refT, final RelationalTable testT) {
+  private void compareIndices(final RelationalTable refT, final RelationalTable testT, RdbCompareErrorSink sink) {
     Multimap<List<String>, RelationalIndex> refIndices = ArrayListMultimap.create(refT.getIndicesByColumns());
-    List<RdbCompareError> errors = new ArrayList<>();
 
-    for (final Entry<List<String>, Collection<RelationalIndex>> entry : testT.getIndicesByColumns().asMap().entrySet()) {
+    for (Entry<List<String>, Collection<RelationalIndex>> entry : testT.getIndicesByColumns().asMap().entrySet()) {
+      if (!sink.shouldContinue()) {
+        return;
+      }
       Collection<RelationalIndex> matchingRefIndices = refIndices.removeAll(entry.getKey());
       if (CollectionUtils.isEmpty(matchingRefIndices)) {
         for (RelationalIndex testIndex : entry.getValue()) {
-          errors.add(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX,
-                                         "Test index \"" + getIndexDesc(testIndex, testT) + "\" is unexpected!",
-                                          RdbFoundOnSide.TEST));
+          sink.accept(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX, RdbFoundOnSide.TEST,
+                                          RdbCompareMessage.UNEXPECTED_INDEX, testT.getName(), testIndex.getName(),
+                                          null, testIndex.getColumnNames()));
         }
       } else {
-        int testIndicesWithUnknownNames = 0;
-        int refIndicesWithUnknownNames = 0;
+        List<RelationalIndex> testIndicesWithUnknownNames = new ArrayList<>();
+        List<RelationalIndex> refIndicesWithUnknownNames = new ArrayList<>();
         Set<String> testIndexNames = Sets.newHashSet();
         Set<String> refIndexNames = Sets.newHashSet();
 
         for (RelationalIndex refIndex : matchingRefIndices) {
           if (refIndex.getName() == null) {
-            refIndicesWithUnknownNames++;
+            refIndicesWithUnknownNames.add(refIndex);
           } else {
             refIndexNames.add(refIndex.getName());
           }
@@ -349,7 +643,7 @@ public class RdbDiffEngine {
 
         for (RelationalIndex testIndex : entry.getValue()) {
           if (testIndex.getName() == null) {
-            testIndicesWithUnknownNames++;
+            testIndicesWithUnknownNames.add(testIndex);
           } else {
             if (!refIndexNames.remove(testIndex.getName())) {
               testIndexNames.add(testIndex.getName());
@@ -357,73 +651,31 @@ public class RdbDiffEngine {
           }
         }
 
-        if (refIndicesWithUnknownNames == 0 && !testIndexNames.isEmpty()) {
+        if (refIndicesWithUnknownNames.isEmpty() && !testIndexNames.isEmpty()) {
           for (String testIndexName : testIndexNames) {
-            errors.add(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX, "Test index \""
-                                           + getIndexDesc(testIndexName, entry.getKey(), testT) + "\" is unexpected!",
-                                            RdbFoundOnSide.TEST));
+            sink.accept(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX, RdbFoundOnSide.TEST,
+                                            RdbCompareMessage.UNEXPECTED_INDEX, testT.getName(), testIndexName,
+                                            null, entry.getKey()));
           }
-        } else if (testIndexNames.size() > refIndicesWithUnknownNames) {
-          errors.add(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX,
-                                         "At least " + (testIndexNames.size() - refIndicesWithUnknownNames)
-                                         + " of test indices "
-                                         + Joiner.on(", ").join(Collections2.transform(testIndexNames,
-                                                                                      new Function<String, String>() {
-            @Override
-            public String apply(String from) {
-              return "\"" + getIndexDesc(from, entry.getKey(), testT) + "\"";
-            }
-          })) + " are unexpected!", RdbFoundOnSide.TEST));
+        } else if (testIndexNames.size() > refIndicesWithUnknownNames.size()) {
+          sink.accept(new RdbCompareError(RdbCompareErrorType.UNEXPECTED_INDEX, RdbFoundOnSide.TEST,
+                                          RdbCompareMessage.UNEXPECTED_INDICES, testT.getName(), null,
+                                          refIndicesWithUnknownNames, testIndexNames));
         }
 
 
-        if (testIndicesWithUnknownNames == 0 && !refIndexNames.isEmpty()) {
+        if (testIndicesWithUnknownNames.isEmpty() && !refIndexNames.isEmpty()) {
           for (String refIndexName : refIndexNames) {
-            errors.add(new RdbCompareError(RdbCompareErrorType.MISSING_INDEX, "Reference index \""
-                                           + getIndexDesc(refIndexName, entry.getKey(), refT) + "\" is missing!",
-                    RdbFoundOnSide.REF));
+            sink.accept(new RdbCompareError(RdbCompareErrorType.MISSING_INDEX, RdbFoundOnSide.REF,
+                                            RdbCompareMessage.MISSING_INDEX, refT.getName(), refIndexName,
+                                            entry.getKey(), null));
           }
-        } else if (refIndexNames.size() > testIndicesWithUnknownNames) {
-          errors.add(new RdbCompareError(RdbCompareErrorType.MISSING_INDEX,
-                                         "At least " + (refIndexNames.size() - testIndicesWithUnknownNames)
-                                         + " of reference indices "
-                                         + Joiner.on(", ").join(Collections2.transform(refIndexNames,
-                                                                                      new Function<String, String>() {
-            @Override
-            public String apply(String from) {
-              return "\"" + getIndexDesc(from, entry.getKey(), refT) + "\"";
-            }
-          })) + " are missing!", RdbFoundOnSide.REF));
+        } else if (refIndexNames.size() > testIndicesWithUnknownNames.size()) {
+          sink.accept(new RdbCompareError(RdbCompareErrorType.MISSING_INDEX, RdbFoundOnSide.REF,
+                                          RdbCompareMessage.MISSING_INDICES, refT.getName(), null,
+                                          refIndexNames, testIndicesWithUnknownNames));
         }
       }
     }
-    return errors;
-  }
-
-  /**
-   * Create a human-readable description of a table index.
-   * @param indexName index name.
-   * @param columnNames names of the columns.
-   * @param owner the table that the index belongs to.
-   * @return a human-readable description of the index.
-   */
-  private String getIndexDesc(String indexName, Collection<String> columnNames, RelationalTable owner) {
-    return (indexName == null ? "<UNKNOWN>" : indexName) + "="
-    + owner.getName() + "(" + Joiner.on(',').join(columnNames) + ")";
-  }
-
-  /**
-   * Create a human-readable description of a table index.
-   * @param idx index model.
-   * @param owner the table that owns the index.
-   * @return a human-readable description of the index.
-   */
-  private String getIndexDesc(RelationalIndex idx, RelationalTable owner) {
-    return getIndexDesc(idx.getName(), Collections2.transform(idx.getColumns(), new Function<Column, String>() {
-      @Override
-      public String apply(Column from) {
-        return from.getName();
-      }
-    }), owner);
   }
 }
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.vecna.dbDiff.builder.RelationalDatabaseReadException;
+import com.vecna.dbDiff.builder.RelationalTableListener;
+import com.vecna.dbDiff.builder.StreamingRelationalDatabaseBuilder;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Reads the reference and the test schemas concurrently and compares each pair of matching tables as soon as both of them
+ * have been read, so that reading and comparing overlap. Only the missing/unexpected table checks are left until both
+ * schemas have been read.
+ *
+ * The differences are the same as the ones reported by {@link RdbDiffEngine#compareRelationalDatabase}, but since tables
+ * are compared in the order they finish reading, they're reordered afterwards: the differences of each test table
+ * (including unexpected tables) by test table name, followed by the missing reference tables by name. The engine reports
+ * them in the order the schemas list their tables instead, so the two orders are the same when both schemas list their
+ * tables by name, as {@link java.sql.DatabaseMetaData#getTables} does.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class RdbDiffPipeline {
+  private final RdbDiffEngine m_engine;
+
+  /**
+   * Create a pipeline that compares tables with a default {@link RdbDiffEngine}.
+   */
+  public RdbDiffPipeline() {
+    this(new RdbDiffEngine());
+  }
+
+  /**
+   * Create a pipeline.
+   * @param engine compares the tables.
+   */
+  public RdbDiffPipeline(RdbDiffEngine engine) {
+    m_engine = engine;
+  }
+
+  /**
+   * Matches up the tables of the two schemas as they arrive and compares the pairs.
+   */
+  private class TableMatcher {
+    private final Map<String, RelationalTable> m_unmatchedRef = new HashMap<>();
+    private final Map<String, RelationalTable> m_unmatchedTest = new HashMap<>();
+    private final SortedMap<String, List<RdbCompareError>> m_errorsByTestTable = new TreeMap<>();
+
+    private final RelationalTableListener m_refListener = new RelationalTableListener() {
+      @Override
+      public void tableRead(RelationalTable table) {
+        RelationalTable testT;
+        synchronized (TableMatcher.this) {
+          testT = m_unmatchedTest.remove(table.getName());
+          if (testT == null) {
+            m_unmatchedRef.put(table.getName(), table);
+            return;
+          }
+        }
+        compare(table, testT);
+      }
+    };
+
+    private final RelationalTableListener m_testListener = new RelationalTableListener() {
+      @Override
+      public void tableRead(RelationalTable table) {
+        RelationalTable refT;
+        synchronized (TableMatcher.this) {
+          refT = m_unmatchedRef.remove(table.getName());
+          if (refT == null) {
+            m_unmatchedTest.put(table.getName(), table);
+            return;
+          }
+        }
+        compare(refT, table);
+      }
+    };
+
+    /**
+     * Compare a pair of matching tables (outside of the lock, so that other pairs can be compared at the same time).
+     * @param refT reference table.
+     * @param testT test table.
+     */
+    private void compare(RelationalTable refT, RelationalTable testT) {
+      List<RdbCompareError> errors = m_engine.compareRelationalTables(refT, testT);
+      synchronized (this) {
+        m_errorsByTestTable.put(testT.getName(), errors);
+      }
+    }
+
+    /**
+     * Report the tables left unmatched once both schemas have been read.
+     * @return all differences.
+     */
+    private synchronized List<RdbCompareError> finish() {
+      for (RelationalTable testT : m_unmatchedTest.values()) {
+        List<RdbCompareError> errors = new ArrayList<>(1);
+        errors.add(m_engine.getUnexpectedTableError(testT));
+        m_errorsByTestTable.put(testT.getName(), errors);
+      }
+
+      List<RdbCompareError> errors = new ArrayList<>();
+      for (List<RdbCompareError> tableErrors : m_errorsByTestTable.values()) {
+        errors.addAll(tableErrors);
+      }
+      for (RelationalTable refT : new TreeMap<>(m_unmatchedRef).values()) {
+        errors.add(m_engine.getMissingTableError(refT));
+      }
+      return errors;
+    }
+  }
+
+  /**
+   * Read and compare two schemas.
+   * @param refBuilder reads the reference schema.
+   * @param refCatalogSchema reference catalog/schema.
+   * @param testBuilder reads the test schema.
+   * @param testCatalogSchema test catalog/schema.
+   * @return the list of schema differences.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent.
+   */
+  public List<RdbCompareError> compare(final StreamingRelationalDatabaseBuilder refBuilder,
+                                       final CatalogSchema refCatalogSchema,
+                                       StreamingRelationalDatabaseBuilder testBuilder,
+                                       CatalogSchema testCatalogSchema)
+                                           throws RelationalDatabaseReadException, InconsistentSchemaException {
+    final TableMatcher matcher = new TableMatcher();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Void> refRead = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          refBuilder.readRelationalTables(refCatalogSchema, matcher.m_refListener);
+          return null;
+        }
+      });
+
+      try {
+        testBuilder.readRelationalTables(testCatalogSchema, matcher.m_testListener);
+      } catch (RuntimeException e) {
+        refRead.cancel(true);
+        throw e;
+      }
+
+      try {
+        refRead.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return matcher.finish();
+  }
+
+  /**
+   * Compare a schema that's already in memory (e.g. one converted from Hibernate mappings) with a schema that's being
+   * read. Tables are compared as the test schema is read.
+   * @param refDb reference database.
+   * @param testBuilder reads the test schema.
+   * @param testCatalogSchema test catalog/schema.
+   * @return the list of schema differences.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent.
+   */
+  public List<RdbCompareError> compare(RelationalDatabase refDb, StreamingRelationalDatabaseBuilder testBuilder,
+                                       CatalogSchema testCatalogSchema)
+                                           throws RelationalDatabaseReadException, InconsistentSchemaException {
+    TableMatcher matcher = new TableMatcher();
+    for (RelationalTable refT : refDb.getTables()) {
+      matcher.m_refListener.tableRead(refT);
+    }
+    testBuilder.readRelationalTables(testCatalogSchema, matcher.m_testListener);
+    return matcher.finish();
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.hash.HashCode;
+import com.vecna.dbDiff.model.ReadProfile;
+
+/**
+ * The result of an incremental comparison (see
+ * {@link RdbDiffEngine#compareRelationalDatabase(com.vecna.dbDiff.model.relationalDb.RelationalDatabase,
+ * com.vecna.dbDiff.model.relationalDb.RelationalDatabase, RdbDiffResult, java.util.Set)}). Besides the differences, it
+ * keeps the differences of every pair of tables found in both databases, keyed by table name together with the
+ * fingerprints of the two tables, so that the next comparison can reuse them.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class RdbDiffResult {
+  private final ReadProfile m_readProfile;
+  private final List<RdbCompareError> m_errors;
+  private final Map<String, TableResult> m_tableResults;
+  private final int m_comparedTableCount;
+
+  /**
+   * Create a new instance.
+   * @param readProfile the profile the tables were compared with.
+   * @param errors all differences.
+   * @param tableResults differences of the table pairs by table name.
+   * @param comparedTableCount number of table pairs that were actually compared.
+   */
+  RdbDiffResult(ReadProfile readProfile, List<RdbCompareError> errors, Map<String, TableResult> tableResults,
+                int comparedTableCount) {
+    m_readProfile = readProfile;
+    m_errors = Collections.unmodifiableList(errors);
+    m_tableResults = tableResults;
+    m_comparedTableCount = comparedTableCount;
+  }
+
+  /**
+   * @return the differences, in the same order as returned by
+   * {@link RdbDiffEngine#compareRelationalDatabase(com.vecna.dbDiff.model.relationalDb.RelationalDatabase,
+   * com.vecna.dbDiff.model.relationalDb.RelationalDatabase)}.
+   */
+  public List<RdbCompareError> getErrors() {
+    return m_errors;
+  }
+
+  /**
+   * @return number of table pairs that were compared rather than reused from the previous result.
+   */
+  public int getComparedTableCount() {
+    return m_comparedTableCount;
+  }
+
+  /**
+   * @return the profile the tables were compared with.
+   */
+  ReadProfile getReadProfile() {
+    return m_readProfile;
+  }
+
+  /**
+   * @param tableName table name.
+   * @return the differences of the reference and test tables with this name or null if they weren't both present.
+   */
+  TableResult getTableResult(String tableName) {
+    return m_tableResults.get(tableName);
+  }
+
+  /**
+   * Differences of a pair of tables with the same name.
+   */
+  static final class TableResult {
+    private final HashCode m_refFingerprint;
+    private final HashCode m_testFingerprint;
+    private final List<RdbCompareError> m_errors;
+
+    /**
+     * Create a new instance.
+     * @param refFingerprint fingerprint of the reference table or null if fingerprints aren't used.
+     * @param testFingerprint fingerprint of the test table or null if fingerprints aren't used.
+     * @param errors the differences.
+     */
+    TableResult(HashCode refFingerprint, HashCode testFingerprint, List<RdbCompareError> errors) {
+      m_refFingerprint = refFingerprint;
+      m_testFingerprint = testFingerprint;
+      m_errors = errors;
+    }
+
+    /**
+     * @param refFingerprint fingerprint of the current reference table or null.
+     * @param testFingerprint fingerprint of the current test table or null.
+     * @return whether the differences were computed for tables with these fingerprints.
+     */
+    boolean matches(HashCode refFingerprint, HashCode testFingerprint) {
+      return Objects.equal(m_refFingerprint, refFingerprint) && Objects.equal(m_testFingerprint, testFingerprint);
+    }
+
+    /**
+     * @return the differences.
+     */
+    List<RdbCompareError> getErrors() {
+      return m_errors;
+    }
+  }
+}
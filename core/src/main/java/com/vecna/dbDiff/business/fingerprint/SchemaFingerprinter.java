@@ -0,0 +1,326 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Computes SHA-256 content hashes of tables and databases. Two tables with the same fingerprint have no differences as far
+ * as {@link com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine} is concerned: the fingerprint covers the table name,
+ * columns (name, type, default, nullability, size, ordinal), primary key, foreign keys and indices. Columns, foreign keys
+ * and indices are hashed regardless of their order. The catalog/schema of the table itself is left out, since comparisons
+ * are usually made across catalogs.
+ *
+ * A schema-relative fingerprinter also leaves out the catalog/schema of foreign keys that point to the schema of their
+ * own table, so that copies of the same schema in different namespaces (e.g. one schema per tenant) get the same
+ * fingerprints. Such fingerprints can't be used to skip comparisons of schemas in different namespaces, since
+ * {@link com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine} compares foreign key catalogs/schemas.
+ *
+ * The fingerprint of a database is computed from the fingerprints of its tables ordered by name, so re-fingerprinting a
+ * database that shares table objects with one fingerprinted before only hashes the new tables. Table fingerprints are
+ * cached by table identity, so tables must not be modified after they're fingerprinted.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SchemaFingerprinter {
+  private static final HashFunction SHA256 = Hashing.sha256();
+
+  private final Map<RelationalTable, HashCode> m_tableFingerprints = new WeakHashMap<>();
+  private final ExecutorService m_executor;
+  private final boolean m_schemaRelative;
+
+  /**
+   * Create a fingerprinter that hashes tables on the calling thread.
+   */
+  public SchemaFingerprinter() {
+    this(null);
+  }
+
+  /**
+   * Create a fingerprinter that hashes the tables of a database in parallel.
+   * @param executor executor to hash tables on; not shut down by the fingerprinter.
+   */
+  public SchemaFingerprinter(ExecutorService executor) {
+    this(executor, false);
+  }
+
+  /**
+   * Create a fingerprinter.
+   * @param executor executor to hash tables on or null to hash them on the calling thread; not shut down by the
+   * fingerprinter.
+   * @param schemaRelative whether to leave out the catalog/schema of foreign keys within the schema of their table.
+   */
+  public SchemaFingerprinter(ExecutorService executor, boolean schemaRelative) {
+    m_executor = executor;
+    m_schemaRelative = schemaRelative;
+  }
+
+  /**
+   * @param hasher hasher.
+   * @param s a string (may be null).
+   */
+  private static void putString(Hasher hasher, String s) {
+    if (s == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(s.length()).putString(s, Charsets.UTF_8);
+    }
+  }
+
+  /**
+   * @param hasher hasher.
+   * @param i an integer (may be null).
+   */
+  private static void putInteger(Hasher hasher, Integer i) {
+    if (i == null) {
+      hasher.putBoolean(false);
+    } else {
+      hasher.putBoolean(true).putInt(i);
+    }
+  }
+
+  /**
+   * @param hasher hasher.
+   * @param catalogSchema a catalog/schema (may be null).
+   */
+  private static void putCatalogSchema(Hasher hasher, CatalogSchema catalogSchema) {
+    putString(hasher, catalogSchema == null ? null : catalogSchema.getCatalog());
+    putString(hasher, catalogSchema == null ? null : catalogSchema.getSchema());
+  }
+
+  /**
+   * Feed the hashes of the elements of an unordered collection to a hasher.
+   * @param hasher hasher.
+   * @param hashes element hashes.
+   */
+  private static void putUnordered(Hasher hasher, List<HashCode> hashes) {
+    hasher.putInt(hashes.size());
+    if (!hashes.isEmpty()) {
+      hasher.putBytes(Hashing.combineUnordered(hashes).asBytes());
+    }
+  }
+
+  /**
+   * @param column a column.
+   * @return hash of the column.
+   */
+  private static HashCode hashColumn(Column column) {
+    Hasher hasher = SHA256.newHasher();
+    putString(hasher, column.getName());
+    hasher.putInt(column.getType());
+    putString(hasher, column.getTypeName());
+    putString(hasher, column.getDefault());
+    hasher.putInt(column.getIsNullable() == null ? -1 : (column.getIsNullable() ? 1 : 0));
+    putInteger(hasher, column.getColumnSize());
+    putInteger(hasher, column.getOrdinal());
+    return hasher.hash();
+  }
+
+  /**
+   * @param hasher hasher.
+   * @param catalogSchema catalog/schema referenced by a foreign key.
+   * @param tableCatalogSchema catalog/schema of the table the foreign key belongs to.
+   */
+  private void putForeignKeyCatalogSchema(Hasher hasher, CatalogSchema catalogSchema, CatalogSchema tableCatalogSchema) {
+    if (m_schemaRelative && catalogSchema != null && catalogSchema.equals(tableCatalogSchema)) {
+      hasher.putBoolean(true);
+    } else {
+      hasher.putBoolean(false);
+      putCatalogSchema(hasher, catalogSchema);
+    }
+  }
+
+  /**
+   * @param fk a foreign key.
+   * @param tableCatalogSchema catalog/schema of the table the foreign key belongs to.
+   * @return hash of the foreign key.
+   */
+  private HashCode hashForeignKey(ForeignKey fk, CatalogSchema tableCatalogSchema) {
+    Hasher hasher = SHA256.newHasher();
+    putString(hasher, fk.getFkName());
+    putString(hasher, fk.getKeySeq());
+    putForeignKeyCatalogSchema(hasher, fk.getFkCatalogSchema(), tableCatalogSchema);
+    putString(hasher, fk.getFkTable());
+    putString(hasher, fk.getFkColumn());
+    putForeignKeyCatalogSchema(hasher, fk.getPkCatalogSchema(), tableCatalogSchema);
+    putString(hasher, fk.getPkTable());
+    putString(hasher, fk.getPkColumn());
+    return hasher.hash();
+  }
+
+  /**
+   * @param index an index.
+   * @return hash of the index.
+   */
+  private static HashCode hashIndex(RelationalIndex index) {
+    Hasher hasher = SHA256.newHasher();
+    putString(hasher, index.getName());
+    List<String> columnNames = index.getColumnNames();
+    hasher.putInt(columnNames.size());
+    for (String columnName : columnNames) {
+      putString(hasher, columnName);
+    }
+    return hasher.hash();
+  }
+
+  /**
+   * Hash a table without consulting the cache.
+   * @param table the table.
+   * @return the fingerprint.
+   */
+  private HashCode hashTable(RelationalTable table) {
+    Hasher hasher = SHA256.newHasher();
+    putString(hasher, table.getName());
+
+    List<HashCode> columnHashes = new ArrayList<>();
+    for (Column column : table.getColumns()) {
+      columnHashes.add(hashColumn(column));
+    }
+    putUnordered(hasher, columnHashes);
+
+    List<String> pkColumns = table.getPkColumns();
+    if (pkColumns == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(pkColumns.size());
+      for (String pkColumn : pkColumns) {
+        putString(hasher, pkColumn);
+      }
+    }
+
+    List<HashCode> fkHashes = new ArrayList<>();
+    for (ForeignKey fk : table.getFks()) {
+      fkHashes.add(hashForeignKey(fk, table.getCatalogSchema()));
+    }
+    putUnordered(hasher, fkHashes);
+
+    List<HashCode> indexHashes = new ArrayList<>();
+    for (RelationalIndex index : table.getIndices()) {
+      indexHashes.add(hashIndex(index));
+    }
+    putUnordered(hasher, indexHashes);
+
+    return hasher.hash();
+  }
+
+  /**
+   * @param table a fully built table.
+   * @return the fingerprint of the table.
+   */
+  public HashCode getTableFingerprint(RelationalTable table) {
+    HashCode fingerprint;
+    synchronized (m_tableFingerprints) {
+      fingerprint = m_tableFingerprints.get(table);
+    }
+    if (fingerprint == null) {
+      fingerprint = hashTable(table);
+      synchronized (m_tableFingerprints) {
+        m_tableFingerprints.put(table, fingerprint);
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Fingerprint all tables of a database, in parallel if the fingerprinter has an executor.
+   * @param database a database.
+   * @return table fingerprints by table name, ordered by name.
+   */
+  public SortedMap<String, HashCode> getTableFingerprints(RelationalDatabase database) {
+    SortedMap<String, HashCode> fingerprints = new TreeMap<>();
+    Collection<RelationalTable> tables = database.getTables();
+
+    if (m_executor == null || tables.size() < 2) {
+      for (RelationalTable table : tables) {
+        fingerprints.put(table.getName(), getTableFingerprint(table));
+      }
+      return fingerprints;
+    }
+
+    List<Callable<HashCode>> tasks = new ArrayList<>(tables.size());
+    for (final RelationalTable table : tables) {
+      tasks.add(new Callable<HashCode>() {
+        @Override
+        public HashCode call() {
+          return getTableFingerprint(table);
+        }
+      });
+    }
+
+    try {
+      List<Future<HashCode>> futures = m_executor.invokeAll(tasks);
+      int i = 0;
+      for (RelationalTable table : tables) {
+        fingerprints.put(table.getName(), futures.get(i++).get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    return fingerprints;
+  }
+
+  /**
+   * @param database a database.
+   * @return the root fingerprint of the database, computed from its table fingerprints ordered by table name.
+   */
+  public HashCode getDatabaseFingerprint(RelationalDatabase database) {
+    return getDatabaseFingerprint(getTableFingerprints(database));
+  }
+
+  /**
+   * @param tableFingerprints table fingerprints by table name, as returned by
+   * {@link #getTableFingerprints(RelationalDatabase)}.
+   * @return the root fingerprint of the database.
+   */
+  public HashCode getDatabaseFingerprint(SortedMap<String, HashCode> tableFingerprints) {
+    Hasher hasher = SHA256.newHasher();
+    hasher.putInt(tableFingerprints.size());
+    for (Map.Entry<String, HashCode> entry : tableFingerprints.entrySet()) {
+      putString(hasher, entry.getKey());
+      hasher.putBytes(entry.getValue().asBytes());
+    }
+    return hasher.hash();
+  }
+}
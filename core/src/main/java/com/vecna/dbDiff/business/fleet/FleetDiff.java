@@ -0,0 +1,272 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fleet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.vecna.dbDiff.builder.DefaultRelationalDatabaseBuilderFactory;
+import com.vecna.dbDiff.builder.RelationalDatabaseReadException;
+import com.vecna.dbDiff.builder.StreamingRelationalDatabaseBuilder;
+import com.vecna.dbDiff.business.catalogSchema.impl.DefaultCatalogSchemaResolverFactory;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffPipeline;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.jdbc.PooledMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+
+/**
+ * Compares a single reference schema with the schemas of many databases in parallel. The reference is built once by the
+ * caller and shared by all comparisons, which only read it.
+ *
+ * The total number of open connections is capped: every target gets its own pool of
+ * {@link #setConnectionsPerTarget(int) connectionsPerTarget} connections, and only
+ * maxConnections / connectionsPerTarget targets are compared at a time. A target that isn't compared within the
+ * {@link #setTimeout(long, TimeUnit) timeout} has its connections closed and is reported as failed; the other targets
+ * are not affected.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class FleetDiff {
+  private final int m_maxConnections;
+  private final RdbDiffPipeline m_pipeline;
+  private int m_connectionsPerTarget = 1;
+  private long m_timeoutNanos;
+
+  /**
+   * Create a fleet diff that compares schemas with a default {@link RdbDiffPipeline}.
+   * @param maxConnections maximum number of connections open at the same time across all targets.
+   */
+  public FleetDiff(int maxConnections) {
+    this(maxConnections, new RdbDiffPipeline());
+  }
+
+  /**
+   * Create a fleet diff.
+   * @param maxConnections maximum number of connections open at the same time across all targets.
+   * @param pipeline compares the reference schema with each target as it's read.
+   * @throws IllegalArgumentException if maxConnections is less than 1.
+   */
+  public FleetDiff(int maxConnections, RdbDiffPipeline pipeline) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("need at least one connection");
+    }
+    m_maxConnections = maxConnections;
+    m_pipeline = pipeline;
+  }
+
+  /**
+   * @param connectionsPerTarget number of connections used to read a single target; 1 by default.
+   * @throws IllegalArgumentException if connectionsPerTarget is less than 1 or more than the maximum number of connections.
+   */
+  public void setConnectionsPerTarget(int connectionsPerTarget) {
+    if (connectionsPerTarget < 1 || connectionsPerTarget > m_maxConnections) {
+      throw new IllegalArgumentException("connections per target must be between 1 and " + m_maxConnections + ", got "
+          + connectionsPerTarget);
+    }
+    m_connectionsPerTarget = connectionsPerTarget;
+  }
+
+  /**
+   * @param timeout how long a single target may take to read and compare (0 means no timeout, which is the default).
+   * @param unit unit of the timeout.
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    m_timeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Create the metadata factory for a target. The factory must not open more than
+   * {@link #setConnectionsPerTarget(int) connectionsPerTarget} connections.
+   * @param target the target.
+   * @param connections maximum number of connections.
+   * @return the factory; closed once the target has been compared.
+   */
+  protected MetadataFactory createMetadataFactory(FleetTarget target, int connections) {
+    return new PooledMetadataFactory(target.getJdbcUrl(), target.getUsername(), target.getPassword(), connections);
+  }
+
+  /**
+   * Create the builder that reads a target.
+   * @param target the target.
+   * @param metadataFactory metadata factory for the target.
+   * @param parallelism number of threads to read with.
+   * @return the builder; closed once the target has been compared.
+   */
+  protected StreamingRelationalDatabaseBuilder createBuilder(FleetTarget target, MetadataFactory metadataFactory,
+                                                             int parallelism) {
+    return DefaultRelationalDatabaseBuilderFactory.getRelationalDatabaseBuilder(target.getJdbcDriver(), metadataFactory,
+                                                                               parallelism);
+  }
+
+  /**
+   * Close a metadata factory, ignoring errors.
+   * @param metadataFactory the factory.
+   */
+  private static void closeQuietly(MetadataFactory metadataFactory) {
+    try {
+      metadataFactory.close();
+    } catch (IOException e) {
+      // the target is done with either way
+    }
+  }
+
+  /**
+   * Interrupts a target that takes too long and closes its connections.
+   */
+  private static class Timeout implements Runnable {
+    private final Thread m_worker;
+    private final MetadataFactory m_metadataFactory;
+    private boolean m_done;
+    private boolean m_expired;
+
+    /**
+     * @param worker the thread comparing the target.
+     * @param metadataFactory metadata factory of the target.
+     */
+    Timeout(Thread worker, MetadataFactory metadataFactory) {
+      m_worker = worker;
+      m_metadataFactory = metadataFactory;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (m_done) {
+          return;
+        }
+        m_expired = true;
+        m_worker.interrupt();
+      }
+      closeQuietly(m_metadataFactory);
+    }
+
+    /**
+     * @return whether the timeout expired before the target was done.
+     */
+    synchronized boolean isExpired() {
+      return m_expired;
+    }
+
+    /**
+     * Mark the target as done, so that the worker isn't interrupted anymore.
+     */
+    synchronized void done() {
+      m_done = true;
+      // don't leave the pool thread interrupted
+      Thread.interrupted();
+    }
+  }
+
+  /**
+   * Read and compare a single target.
+   * @param refDb the reference schema.
+   * @param target the target.
+   * @param scheduler schedules the timeout of the target.
+   * @return the differences.
+   */
+  private List<RdbCompareError> compare(RelationalDatabase refDb, FleetTarget target, ScheduledExecutorService scheduler) {
+    CatalogSchema catalogSchema = target.getCatalogSchema();
+    if (catalogSchema == null) {
+      catalogSchema = DefaultCatalogSchemaResolverFactory.getCatalogSchemaResolver()
+          .resolveCatalogSchema(target.getJdbcDriver(), target.getJdbcUrl());
+    }
+
+    MetadataFactory metadataFactory = createMetadataFactory(target, m_connectionsPerTarget);
+    Timeout timeout = new Timeout(Thread.currentThread(), metadataFactory);
+    ScheduledFuture<?> scheduledTimeout = null;
+    if (m_timeoutNanos > 0) {
+      scheduledTimeout = scheduler.schedule(timeout, m_timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    try (StreamingRelationalDatabaseBuilder builder = createBuilder(target, metadataFactory, m_connectionsPerTarget)) {
+      return m_pipeline.compare(refDb, builder, catalogSchema);
+    } catch (RuntimeException e) {
+      if (timeout.isExpired()) {
+        throw new RelationalDatabaseReadException("schema was not compared within "
+            + TimeUnit.NANOSECONDS.toMillis(m_timeoutNanos) + " ms", e);
+      }
+      throw e;
+    } finally {
+      if (scheduledTimeout != null) {
+        scheduledTimeout.cancel(false);
+      }
+      timeout.done();
+      closeQuietly(metadataFactory);
+    }
+  }
+
+  /**
+   * Compare a reference schema with a list of databases.
+   * @param refDb the reference schema.
+   * @param targets the databases.
+   * @return the differences of each database, grouped by database, and the databases that couldn't be compared.
+   */
+  public FleetReport compare(final RelationalDatabase refDb, List<FleetTarget> targets) {
+    // at least one target fits, since connectionsPerTarget never exceeds maxConnections
+    int threads = Math.max(1, Math.min(targets.size(), m_maxConnections / m_connectionsPerTarget));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    Map<FleetTarget, List<RdbCompareError>> results = new LinkedHashMap<>();
+    Map<FleetTarget, RuntimeException> failures = new LinkedHashMap<>();
+
+    try {
+      List<Future<List<RdbCompareError>>> futures = new ArrayList<>(targets.size());
+      for (final FleetTarget target : targets) {
+        futures.add(executor.submit(new Callable<List<RdbCompareError>>() {
+          @Override
+          public List<RdbCompareError> call() {
+            return compare(refDb, target, scheduler);
+          }
+        }));
+      }
+
+      for (int i = 0; i < targets.size(); i++) {
+        try {
+          results.put(targets.get(i), futures.get(i).get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            failures.put(targets.get(i), (RuntimeException) e.getCause());
+          } else {
+            failures.put(targets.get(i), new RuntimeException(e.getCause()));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } finally {
+      executor.shutdownNow();
+      scheduler.shutdownNow();
+    }
+
+    return new FleetReport(results, failures);
+  }
+}
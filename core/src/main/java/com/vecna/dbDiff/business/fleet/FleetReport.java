@@ -0,0 +1,153 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fleet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+
+/**
+ * Results of a {@link FleetDiff}. Targets with the same list of differences are grouped together.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class FleetReport {
+  /**
+   * Targets that share the same list of differences.
+   */
+  public static class Group {
+    private final List<RdbCompareError> m_errors;
+    private final List<FleetTarget> m_targets = new ArrayList<>();
+
+    /**
+     * Create a group.
+     * @param errors differences shared by the targets.
+     */
+    private Group(List<RdbCompareError> errors) {
+      m_errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the differences shared by the targets; empty if the targets match the reference.
+     */
+    public List<RdbCompareError> getErrors() {
+      return m_errors;
+    }
+
+    /**
+     * @return the targets, in the order they were passed to {@link FleetDiff}.
+     */
+    public List<FleetTarget> getTargets() {
+      return Collections.unmodifiableList(m_targets);
+    }
+  }
+
+  private final List<Group> m_groups;
+  private final Map<FleetTarget, RuntimeException> m_failures;
+
+  /**
+   * Create a report.
+   * @param results differences by target, in target order.
+   * @param failures reasons the remaining targets couldn't be compared, in target order.
+   */
+  FleetReport(Map<FleetTarget, List<RdbCompareError>> results, Map<FleetTarget, RuntimeException> failures) {
+    Map<List<List<Object>>, Group> groups = new LinkedHashMap<>();
+    for (Map.Entry<FleetTarget, List<RdbCompareError>> entry : results.entrySet()) {
+      List<List<Object>> key = new ArrayList<>(entry.getValue().size());
+      for (RdbCompareError error : entry.getValue()) {
+        key.add(Arrays.<Object>asList(error.getErrorType(), error.getFoundOn(), error.getMessage()));
+      }
+      Group group = groups.get(key);
+      if (group == null) {
+        group = new Group(entry.getValue());
+        groups.put(key, group);
+      }
+      group.m_targets.add(entry.getKey());
+    }
+
+    m_groups = new ArrayList<>(groups.values());
+    // largest groups first; the sort is stable, so groups of the same size keep the target order
+    Collections.sort(m_groups, new Comparator<Group>() {
+      @Override
+      public int compare(Group g1, Group g2) {
+        return g2.m_targets.size() - g1.m_targets.size();
+      }
+    });
+    m_failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * @return groups of targets with identical differences, largest first.
+   */
+  public List<Group> getGroups() {
+    return Collections.unmodifiableList(m_groups);
+  }
+
+  /**
+   * @return the targets that match the reference.
+   */
+  public List<FleetTarget> getMatchingTargets() {
+    for (Group group : m_groups) {
+      if (group.getErrors().isEmpty()) {
+        return group.getTargets();
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @return the reasons the targets that couldn't be read (including the ones that timed out) failed, by target.
+   */
+  public Map<FleetTarget, RuntimeException> getFailures() {
+    return m_failures;
+  }
+
+  /**
+   * @return a human-readable summary, one line per group followed by the differences of the group.
+   */
+  public String getSummary() {
+    StringBuilder summary = new StringBuilder();
+    for (Group group : m_groups) {
+      int size = group.getTargets().size();
+      summary.append(size).append(size == 1 ? " database " : " databases ");
+      if (group.getErrors().isEmpty()) {
+        summary.append(size == 1 ? "matches" : "match").append(" the reference\n");
+      } else {
+        summary.append(size == 1 ? "has " : "share ").append(group.getErrors().size())
+        .append(group.getErrors().size() == 1 ? " difference" : " differences").append(": ")
+        .append(group.getTargets()).append('\n');
+        for (RdbCompareError error : group.getErrors()) {
+          summary.append("  ").append(error.getMessage()).append('\n');
+        }
+      }
+    }
+    if (!m_failures.isEmpty()) {
+      summary.append(m_failures.size()).append(m_failures.size() == 1 ? " database" : " databases")
+      .append(" could not be compared\n");
+      for (Map.Entry<FleetTarget, RuntimeException> entry : m_failures.entrySet()) {
+        summary.append("  ").append(entry.getKey()).append(": ").append(entry.getValue().getMessage()).append('\n');
+      }
+    }
+    return summary.toString();
+  }
+}
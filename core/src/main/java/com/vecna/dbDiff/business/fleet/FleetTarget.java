@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fleet;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+
+/**
+ * A database compared by {@link FleetDiff}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class FleetTarget {
+  private final String m_name;
+  private final String m_jdbcDriver;
+  private final String m_jdbcUrl;
+  private final String m_username;
+  private final String m_password;
+  private final CatalogSchema m_catalogSchema;
+
+  /**
+   * Create a target whose catalog/schema is resolved from the driver and the url.
+   * @param name name that identifies the target in the report.
+   * @param jdbcDriver jdbc driver class name.
+   * @param jdbcUrl jdbc url.
+   * @param username jdbc username.
+   * @param password jdbc password.
+   */
+  public FleetTarget(String name, String jdbcDriver, String jdbcUrl, String username, String password) {
+    this(name, jdbcDriver, jdbcUrl, username, password, null);
+  }
+
+  /**
+   * Create a target.
+   * @param name name that identifies the target in the report.
+   * @param jdbcDriver jdbc driver class name.
+   * @param jdbcUrl jdbc url.
+   * @param username jdbc username.
+   * @param password jdbc password.
+   * @param catalogSchema catalog/schema to read or null to resolve it from the driver and the url.
+   */
+  public FleetTarget(String name, String jdbcDriver, String jdbcUrl, String username, String password,
+                     CatalogSchema catalogSchema) {
+    m_name = name;
+    m_jdbcDriver = jdbcDriver;
+    m_jdbcUrl = jdbcUrl;
+    m_username = username;
+    m_password = password;
+    m_catalogSchema = catalogSchema;
+  }
+
+  /**
+   * @return name that identifies the target in the report.
+   */
+  public String getName() {
+    return m_name;
+  }
+
+  /**
+   * @return jdbc driver class name.
+   */
+  public String getJdbcDriver() {
+    return m_jdbcDriver;
+  }
+
+  /**
+   * @return jdbc url.
+   */
+  public String getJdbcUrl() {
+    return m_jdbcUrl;
+  }
+
+  /**
+   * @return jdbc username.
+   */
+  public String getUsername() {
+    return m_username;
+  }
+
+  /**
+   * @return jdbc password.
+   */
+  public String getPassword() {
+    return m_password;
+  }
+
+  /**
+   * @return catalog/schema to read or null to resolve it from the driver and the url.
+   */
+  public CatalogSchema getCatalogSchema() {
+    return m_catalogSchema;
+  }
+
+  @Override
+  public String toString() {
+    return m_name;
+  }
+}
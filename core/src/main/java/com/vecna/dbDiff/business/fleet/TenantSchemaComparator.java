@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.fleet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.vecna.dbDiff.builder.MultiSchemaRelationalDatabaseBuilder;
+import com.vecna.dbDiff.builder.RelationalDatabaseReadException;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.business.fingerprint.SchemaFingerprinter;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Compares many schemas of one database (e.g. one schema per tenant) with a template schema. Tenants are grouped by
+ * their schema-relative fingerprint (see {@link SchemaFingerprinter}), so each distinct shape is diffed against the
+ * template only once and only the differences of each shape are kept, no matter how many tenants share it.
+ *
+ * Foreign keys between tables of the same tenant are compared as if they pointed to the template schema.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class TenantSchemaComparator {
+  /**
+   * Tenants that share the same schema shape and therefore the same differences from the template.
+   */
+  public static class Group {
+    private final List<RdbCompareError> m_errors;
+    private final List<CatalogSchema> m_tenants = new ArrayList<>();
+
+    /**
+     * Create a group.
+     * @param errors differences shared by the tenants.
+     */
+    private Group(List<RdbCompareError> errors) {
+      m_errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the differences shared by the tenants; empty if the tenants match the template.
+     */
+    public List<RdbCompareError> getErrors() {
+      return m_errors;
+    }
+
+    /**
+     * @return the tenant schemas, in the order they were added.
+     */
+    public List<CatalogSchema> getTenants() {
+      return Collections.unmodifiableList(m_tenants);
+    }
+  }
+
+  private final RelationalDatabase m_template;
+  private final CatalogSchema m_templateSchema;
+  private final HashCode m_templateFingerprint;
+  private final RdbDiffEngine m_engine;
+  private final SchemaFingerprinter m_fingerprinter = new SchemaFingerprinter(null, true);
+  private final Map<HashCode, Group> m_groups = new LinkedHashMap<>();
+
+  /**
+   * Create a comparator that uses a default {@link RdbDiffEngine}.
+   * @param templateSchema the catalog/schema of the template.
+   * @param template the template schema.
+   */
+  public TenantSchemaComparator(CatalogSchema templateSchema, RelationalDatabase template) {
+    this(templateSchema, template, new RdbDiffEngine());
+  }
+
+  /**
+   * Create a comparator.
+   * @param templateSchema the catalog/schema of the template.
+   * @param template the template schema.
+   * @param engine diff engine to compare distinct tenant schemas with the template.
+   */
+  public TenantSchemaComparator(CatalogSchema templateSchema, RelationalDatabase template, RdbDiffEngine engine) {
+    m_templateSchema = templateSchema;
+    m_template = template;
+    m_engine = engine;
+    m_templateFingerprint = m_fingerprinter.getDatabaseFingerprint(template);
+  }
+
+  /**
+   * Compare a tenant schema with the template, unless a tenant with the same shape has already been compared. The
+   * tenant schema isn't retained, so it can be discarded as soon as this method returns.
+   * @param tenantSchema the catalog/schema of the tenant.
+   * @param tenant the tenant schema.
+   * @return the group the tenant was added to.
+   * @throws InconsistentSchemaException if the tenant schema is inconsistent.
+   */
+  public synchronized Group addTenant(CatalogSchema tenantSchema, RelationalDatabase tenant)
+      throws InconsistentSchemaException {
+    HashCode fingerprint = m_fingerprinter.getDatabaseFingerprint(tenant);
+    Group group = m_groups.get(fingerprint);
+    if (group == null) {
+      List<RdbCompareError> errors;
+      if (fingerprint.equals(m_templateFingerprint)) {
+        errors = Collections.emptyList();
+      } else {
+        errors = m_engine.compareRelationalDatabase(m_template, rebase(tenant, tenantSchema, m_templateSchema));
+      }
+      group = new Group(errors);
+      m_groups.put(fingerprint, group);
+    }
+    group.m_tenants.add(tenantSchema);
+    return group;
+  }
+
+  /**
+   * Read tenant schemas in batches and compare them with the template, so that no more than one batch of tenant
+   * schemas is held in memory at a time.
+   * @param builder reads the tenant schemas.
+   * @param tenantSchemas the catalogs/schemas of the tenants.
+   * @param batchSize the number of tenant schemas to read at once.
+   * @throws RelationalDatabaseReadException if database communication failed.
+   * @throws InconsistentSchemaException if schema information was inconsistent.
+   */
+  public void addTenants(MultiSchemaRelationalDatabaseBuilder builder, Collection<CatalogSchema> tenantSchemas,
+                         int batchSize) throws RelationalDatabaseReadException, InconsistentSchemaException {
+    for (List<CatalogSchema> batch : Lists.partition(new ArrayList<>(tenantSchemas), batchSize)) {
+      for (Map.Entry<CatalogSchema, RelationalDatabase> entry : builder.createRelationalDatabases(batch).entrySet()) {
+        addTenant(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return the groups of tenants with distinct shapes, in the order the first tenant of each group was added.
+   */
+  public synchronized List<Group> getGroups() {
+    return new ArrayList<>(m_groups.values());
+  }
+
+  /**
+   * @param catalogSchema a catalog/schema referenced by a foreign key.
+   * @param from the schema being moved.
+   * @param to the schema to move to.
+   * @return the catalog/schema the reference points to after the move.
+   */
+  private static CatalogSchema rebase(CatalogSchema catalogSchema, CatalogSchema from, CatalogSchema to) {
+    return from.equals(catalogSchema) ? to : catalogSchema;
+  }
+
+  /**
+   * Copy a schema into another catalog/schema. Foreign keys between the tables of the schema are moved along with the
+   * tables; columns are shared with the original.
+   * @param database the schema.
+   * @param from the catalog/schema of the schema.
+   * @param to the catalog/schema to move to.
+   * @return the copy.
+   * @throws InconsistentSchemaException if the schema is inconsistent.
+   */
+  static RelationalDatabase rebase(RelationalDatabase database, CatalogSchema from, CatalogSchema to)
+      throws InconsistentSchemaException {
+    List<RelationalTable> tables = new ArrayList<>(database.getTables().size());
+    for (RelationalTable table : database.getTables()) {
+      RelationalTable copy = new RelationalTable(to, table.getName());
+      copy.setType(table.getType());
+      copy.setTypeName(table.getTypeName());
+      copy.setColumns(new ArrayList<>(table.getColumns()));
+      copy.setPkColumns(table.getPkColumns());
+
+      Set<ForeignKey> fks = new HashSet<>();
+      for (ForeignKey fk : table.getFks()) {
+        ForeignKey fkCopy = new ForeignKey();
+        fkCopy.setFkName(fk.getFkName());
+        fkCopy.setKeySeq(fk.getKeySeq());
+        fkCopy.setFkCatalogSchema(rebase(fk.getFkCatalogSchema(), from, to));
+        fkCopy.setFkTable(fk.getFkTable());
+        fkCopy.setFkColumn(fk.getFkColumn());
+        fkCopy.setPkCatalogSchema(rebase(fk.getPkCatalogSchema(), from, to));
+        fkCopy.setPkTable(fk.getPkTable());
+        fkCopy.setPkColumn(fk.getPkColumn());
+        fks.add(fkCopy);
+      }
+      copy.setFks(fks);
+
+      List<RelationalIndex> indices = new ArrayList<>(table.getIndices().size());
+      for (RelationalIndex index : table.getIndices()) {
+        RelationalIndex indexCopy = new RelationalIndex(to, index.getName());
+        indexCopy.setColumns(new ArrayList<Column>(index.getColumns()));
+        indices.add(indexCopy);
+      }
+      copy.setIndices(indices);
+
+      tables.add(copy);
+    }
+    return new RelationalDatabase(tables);
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.jdbc;
+
+/**
+ * Utility methods for {@link MetadataFactory}s.
+ *
+ * @author ogolberg@vecna.com
+ */
+public final class MetadataFactories {
+  private MetadataFactories() {
+  }
+
+  /**
+   * Give back the metadata obtained by the current thread if the factory shares its connections between threads. Call
+   * this in a finally block once a read is done.
+   * @param metadataFactory a metadata factory.
+   */
+  public static void releaseMetadata(MetadataFactory metadataFactory) {
+    if (metadataFactory instanceof ReleasableMetadataFactory) {
+      ((ReleasableMetadataFactory) metadataFactory).releaseMetadata();
+    }
+  }
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of {@link MetadataFactory} backed by a bounded connection pool. A thread borrows a connection the
+ * first time it asks for metadata and keeps it until it calls {@link #releaseMetadata()}. Threads asking for metadata
+ * while all connections are borrowed wait for one to be released, up to the borrow timeout, and then fail with an
+ * {@link IllegalStateException}; a caller that never releases its metadata holds its connection until the factory is
+ * closed.
+ *
+ * Connections that have been idle for longer than the validation threshold are validated before they're handed out
+ * again, and idle connections are closed once they've been idle for longer than the idle timeout.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class PooledMetadataFactory implements ReleasableMetadataFactory {
+  /**
+   * A pooled connection.
+   */
+  private static class PooledConnection {
+    private final Connection m_connection;
+    private final DatabaseMetaData m_metadata;
+    private long m_lastUsed;
+
+    /**
+     * Wrap a connection.
+     * @param connection jdbc connection.
+     * @throws SQLException if the metadata cannot be retrieved.
+     */
+    PooledConnection(Connection connection) throws SQLException {
+      m_connection = connection;
+      m_metadata = connection.getMetaData();
+    }
+  }
+
+  private final String m_url;
+  private final String m_username;
+  private final String m_password;
+
+  private final int m_maxConnections;
+  private final long m_idleTimeoutNanos;
+  private final int m_validationTimeoutSeconds;
+  private volatile long m_validationThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+  private volatile long m_borrowTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+  private final Semaphore m_permits;
+  private final Deque<PooledConnection> m_idle = new ArrayDeque<>();
+  private final Set<PooledConnection> m_open = Collections.synchronizedSet(new HashSet<PooledConnection>());
+  private final ThreadLocal<PooledConnection> m_borrowed = new ThreadLocal<>();
+
+  private volatile boolean m_closed;
+
+  /**
+   * Create a new factory.
+   * @param url jdbc url.
+   * @param username jdbc username.
+   * @param password jdbc password.
+   * @param maxConnections maximum number of open connections.
+   * @param idleTimeout how long a connection may stay idle before it's closed.
+   * @param idleTimeoutUnit unit of the idle timeout.
+   * @param validationTimeoutSeconds timeout for validating an idle connection before it's reused (0 disables validation,
+   * which is required for drivers that don't implement {@link Connection#isValid(int)}).
+   */
+  public PooledMetadataFactory(String url, String username, String password, int maxConnections,
+                               long idleTimeout, TimeUnit idleTimeoutUnit, int validationTimeoutSeconds) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("need at least one connection");
+    }
+    m_url = url;
+    m_username = username;
+    m_password = password;
+    m_maxConnections = maxConnections;
+    m_idleTimeoutNanos = idleTimeoutUnit.toNanos(idleTimeout);
+    m_validationTimeoutSeconds = validationTimeoutSeconds;
+    m_permits = new Semaphore(maxConnections, true);
+  }
+
+  /**
+   * Create a new factory that closes connections idle for longer than a minute and validates them with a 5 second
+   * timeout.
+   * @param url jdbc url.
+   * @param username jdbc username.
+   * @param password jdbc password.
+   * @param maxConnections maximum number of open connections.
+   */
+  public PooledMetadataFactory(String url, String username, String password, int maxConnections) {
+    this(url, username, password, maxConnections, 1, TimeUnit.MINUTES, 5);
+  }
+
+  /**
+   * @return maximum number of open connections.
+   */
+  public int getMaxConnections() {
+    return m_maxConnections;
+  }
+
+  /**
+   * Set how long a connection may stay idle before it's validated again on reuse. Connections returned to the pool more
+   * recently are handed out without a round trip to the database. Defaults to one second; 0 validates on every reuse.
+   * @param validationThreshold idle time after which a connection is validated.
+   * @param unit unit of the threshold.
+   */
+  public void setValidationThreshold(long validationThreshold, TimeUnit unit) {
+    m_validationThresholdNanos = unit.toNanos(validationThreshold);
+  }
+
+  /**
+   * Set how long a thread waits for a connection to be released when all of them are borrowed. Defaults to 30 seconds.
+   * @param borrowTimeout maximum wait.
+   * @param unit unit of the timeout.
+   */
+  public void setBorrowTimeout(long borrowTimeout, TimeUnit unit) {
+    m_borrowTimeoutNanos = unit.toNanos(borrowTimeout);
+  }
+
+  /**
+   * @return number of currently open (borrowed or idle) connections.
+   */
+  public int getOpenConnections() {
+    return m_open.size();
+  }
+
+  @Override
+  public DatabaseMetaData getMetadata() {
+    PooledConnection connection = m_borrowed.get();
+    if (connection == null) {
+      connection = borrow();
+      m_borrowed.set(connection);
+    }
+    return connection.m_metadata;
+  }
+
+  @Override
+  public void releaseMetadata() {
+    PooledConnection connection = m_borrowed.get();
+    if (connection != null) {
+      m_borrowed.remove();
+      connection.m_lastUsed = System.nanoTime();
+
+      if (m_closed) {
+        closeQuietly(connection);
+      } else {
+        synchronized (m_idle) {
+          // most recently used first, so that rarely used connections age out
+          m_idle.addFirst(connection);
+        }
+      }
+      m_permits.release();
+      evictIdle();
+    }
+  }
+
+  /**
+   * Borrow a connection, waiting for one to be released if the pool is exhausted.
+   * @return the connection.
+   * @throws IllegalStateException if no connection was released within the borrow timeout.
+   */
+  private PooledConnection borrow() {
+    if (m_closed) {
+      throw new IllegalStateException("the metadata factory is closed");
+    }
+
+    try {
+      if (!m_permits.tryAcquire(m_borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+        throw new IllegalStateException("all " + m_maxConnections + " connections are still borrowed after "
+            + TimeUnit.NANOSECONDS.toMillis(m_borrowTimeoutNanos) + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+
+    try {
+      evictIdle();
+      while (true) {
+        PooledConnection connection;
+        synchronized (m_idle) {
+          connection = m_idle.pollFirst();
+        }
+        if (connection == null) {
+          return open();
+        } else if (isValid(connection)) {
+          return connection;
+        } else {
+          closeQuietly(connection);
+        }
+      }
+    } catch (RuntimeException e) {
+      m_permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Open a new connection.
+   * @return the connection.
+   */
+  private PooledConnection open() {
+    try {
+      PooledConnection connection = new PooledConnection(DriverManager.getConnection(m_url, m_username, m_password));
+      m_open.add(connection);
+      return connection;
+    } catch (SQLException e) {
+      throw new RuntimeException("could not retrieve jdbc metadata", e);
+    }
+  }
+
+  /**
+   * @param connection an idle connection.
+   * @return whether the connection can be reused.
+   */
+  private boolean isValid(PooledConnection connection) {
+    if (m_validationTimeoutSeconds <= 0 || System.nanoTime() - connection.m_lastUsed <= m_validationThresholdNanos) {
+      return true;
+    }
+    try {
+      return connection.m_connection.isValid(m_validationTimeoutSeconds);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Close the connections that have been idle for longer than the idle timeout.
+   */
+  public void evictIdle() {
+    long now = System.nanoTime();
+    synchronized (m_idle) {
+      Iterator<PooledConnection> it = m_idle.descendingIterator();
+      while (it.hasNext()) {
+        PooledConnection connection = it.next();
+        if (now - connection.m_lastUsed > m_idleTimeoutNanos) {
+          it.remove();
+          closeQuietly(connection);
+        } else {
+          // connections are ordered by last use
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Close a connection, ignoring errors.
+   * @param connection the connection.
+   */
+  private void closeQuietly(PooledConnection connection) {
+    m_open.remove(connection);
+    try {
+      connection.m_connection.close();
+    } catch (SQLException e) {
+      // the connection is discarded either way
+    }
+  }
+
+  /**
+   * Closes all jdbc connections opened by this factory. Connections that are still borrowed are closed as well.
+   * @throws IOException if a connection cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    m_closed = true;
+    synchronized (m_idle) {
+      m_idle.clear();
+    }
+
+    PooledConnection[] connections;
+    synchronized (m_open) {
+      connections = m_open.toArray(new PooledConnection[m_open.size()]);
+      m_open.clear();
+    }
+
+    for (PooledConnection connection : connections) {
+      try {
+        connection.m_connection.close();
+      } catch (SQLException e) {
+        throw new IOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.jdbc;
+
+/**
+ * A {@link MetadataFactory} that shares its connections between threads, so a thread has to give back the metadata it
+ * obtained once it's done with it. Use {@link MetadataFactories#releaseMetadata(MetadataFactory)} to release the metadata
+ * of a factory that may or may not be releasable.
+ *
+ * @author ogolberg@vecna.com
+ */
+public interface ReleasableMetadataFactory extends MetadataFactory {
+  /**
+   * Give back the metadata obtained by the current thread.
+   */
+  void releaseMetadata();
+}
@@ -25,7 +25,8 @@ import java.util.Collection;
 import java.util.Vector;
 
 /**
- * An implementation of {@link MetadataFactory} that creates a connection per thread.
+ * An implementation of {@link MetadataFactory} that creates a connection per thread. The number of connections is not
+ * bounded; use {@link PooledMetadataFactory} to cap it.
  *
  * @author ogolberg@vecna.com
  */
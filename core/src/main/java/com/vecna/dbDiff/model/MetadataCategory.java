@@ -0,0 +1,36 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+*/
+
+package com.vecna.dbDiff.model;
+
+/**
+ * Kinds of table metadata that can be read and compared.
+ *
+ * @author ogolberg@vecna.com
+ */
+public enum MetadataCategory {
+  /** Columns. */
+  COLUMNS,
+
+  /** Primary key columns. */
+  PRIMARY_KEYS,
+
+  /** Foreign keys. */
+  FOREIGN_KEYS,
+
+  /** Indices; requires {@link #COLUMNS}, since indices refer to columns. */
+  INDICES
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+*/
+
+package com.vecna.dbDiff.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Selects the kinds of table metadata to read and compare. Categories that are left out aren't read from the database
+ * (the corresponding table properties are left empty) and aren't compared.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class ReadProfile {
+  /** Read and compare everything. */
+  public static final ReadProfile ALL = new ReadProfile(EnumSet.allOf(MetadataCategory.class));
+
+  private final Set<MetadataCategory> m_categories;
+
+  /**
+   * Create a new profile.
+   * @param categories the categories to read; {@link MetadataCategory#COLUMNS} is added if
+   * {@link MetadataCategory#INDICES} is requested.
+   */
+  public ReadProfile(Set<MetadataCategory> categories) {
+    EnumSet<MetadataCategory> copy = EnumSet.noneOf(MetadataCategory.class);
+    copy.addAll(categories);
+    if (copy.contains(MetadataCategory.INDICES)) {
+      copy.add(MetadataCategory.COLUMNS);
+    }
+    m_categories = Collections.unmodifiableSet(copy);
+  }
+
+  /**
+   * Create a new profile.
+   * @param categories the categories to read.
+   * @return the profile.
+   * @see #ReadProfile(Set)
+   */
+  public static ReadProfile of(MetadataCategory... categories) {
+    EnumSet<MetadataCategory> set = EnumSet.noneOf(MetadataCategory.class);
+    Collections.addAll(set, categories);
+    return new ReadProfile(set);
+  }
+
+  /**
+   * @param category a category.
+   * @return whether the category is read and compared.
+   */
+  public boolean includes(MetadataCategory category) {
+    return m_categories.contains(category);
+  }
+
+  /**
+   * @return the categories that are read and compared.
+   */
+  public Set<MetadataCategory> getCategories() {
+    return m_categories;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ReadProfile && m_categories.equals(((ReadProfile) obj).m_categories);
+  }
+
+  @Override
+  public int hashCode() {
+    return m_categories.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ReadProfile" + m_categories;
+  }
+}
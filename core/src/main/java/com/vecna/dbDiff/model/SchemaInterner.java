@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.model;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Canonicalizes the values that repeat throughout a schema model: catalogs/schemas, table, column and other names, and
+ * column types. Schema readers create one interner per read, so that e.g. every column and foreign key of a schema
+ * refers to the same {@link CatalogSchema} instance instead of one built from its own result set row. The interner holds
+ * strong references and is meant to be discarded with the read.
+ *
+ * Interners are thread-safe.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SchemaInterner {
+  private final Interner<String> m_names = Interners.newStrongInterner();
+  private final Interner<CatalogSchema> m_catalogSchemas = Interners.newStrongInterner();
+  private final Interner<ColumnType> m_columnTypes = Interners.newStrongInterner();
+
+  /**
+   * @param name a name (may be null).
+   * @return the canonical instance of the name.
+   */
+  public String name(String name) {
+    return name == null ? null : m_names.intern(name);
+  }
+
+  /**
+   * @param catalog catalog.
+   * @param schema schema.
+   * @return the canonical catalog/schema.
+   */
+  public CatalogSchema catalogSchema(String catalog, String schema) {
+    return m_catalogSchemas.intern(new CatalogSchema(name(catalog), name(schema)));
+  }
+
+  /**
+   * @param type sql type.
+   * @param typeCode type name.
+   * @return the canonical column type.
+   */
+  public ColumnType columnType(int type, String typeCode) {
+    return m_columnTypes.intern(new ColumnType(type, name(typeCode)));
+  }
+}
@@ -51,28 +51,70 @@ public abstract class BaseColumnContainer extends NamedSchemaItem {
   }
 
   private Map<String, Column> m_columnsByName = new LinkedHashMap<>(); //An internal search index of cols by name.
+  private CompactColumnList m_compactColumns; // replaces m_columnsByName once the columns are compacted
 
   /**
    * Set the columns.
    * @param columns The columns to set
    */
   public void setColumns(List<Column> columns) {
+    if (m_compactColumns != null) {
+      m_columnsByName = new LinkedHashMap<>();
+      for (Column c : m_compactColumns) {
+        m_columnsByName.put(c.getName(), c);
+      }
+      m_compactColumns = null;
+    }
     for (Column c : columns) {
       m_columnsByName.put(c.getName(), c);
     }
   }
 
+  /**
+   * Switch to a compact, column-oriented storage of the columns. Afterwards, the columns are read-only: each access returns
+   * new {@link Column} copies, so changes to them are lost. Setting columns switches back to regular storage.
+   * @return whether the columns were compacted; columns that belong to different tables or lack types aren't.
+   */
+  public boolean compactColumns() {
+    if (m_compactColumns == null && CompactColumnList.canCompact(m_columnsByName.values())) {
+      m_compactColumns = new CompactColumnList(m_columnsByName.values());
+      m_columnsByName = null;
+    }
+    return m_compactColumns != null;
+  }
+
+  /**
+   * @return whether the columns are stored compactly (see {@link #compactColumns()}).
+   */
+  public boolean isCompact() {
+    return m_compactColumns != null;
+  }
+
   /**
    * @return ordered collection of columns.
    */
   public Collection<Column> getColumns() {
-    return m_columnsByName.values();
+    return m_compactColumns == null ? m_columnsByName.values() : m_compactColumns;
+  }
+
+  /**
+   * Compare the columns of two compact containers without materializing them.
+   * @param other another container.
+   * @return true if both containers are compact and have the same columns in the same order, with equal types, defaults,
+   * nullability, sizes and ordinals; false if they differ or either of them isn't compact.
+   */
+  public boolean hasSameColumns(BaseColumnContainer other) {
+    return m_compactColumns != null && other.m_compactColumns != null
+        && m_compactColumns.hasSameColumns(other.m_compactColumns);
   }
 
   /**
    * @return ordered collection of column names.
    */
   public List<String> getColumnNames() {
+    if (m_compactColumns != null) {
+      return m_compactColumns.getNames();
+    }
     List<String> names = Lists.newArrayList();
     for (Column col : m_columnsByName.values()) {
       names.add(col.getName());
@@ -86,6 +128,10 @@ public abstract class BaseColumnContainer extends NamedSchemaItem {
    * @return column with the given name (or null).
    */
   public Column getColumnByName(String name) {
+    if (m_compactColumns != null) {
+      int index = m_compactColumns.indexOfName(name);
+      return index < 0 ? null : m_compactColumns.get(index);
+    }
     return m_columnsByName.get(name);
   }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.model.relationalDb;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+
+/**
+ * Column-oriented storage for the columns of a table or an index. Every column property is kept in an array indexed by
+ * column position; names, column types and defaults are references to the (usually shared, see
+ * {@link com.vecna.dbDiff.model.SchemaInterner}) instances of the original columns. {@link Column} objects are
+ * materialized on every access and are detached copies: modifying them doesn't change the stored columns. Two lists can
+ * be compared without materializing any columns (see {@link #hasSameColumns(CompactColumnList)}).
+ *
+ * @author ogolberg@vecna.com
+ */
+final class CompactColumnList extends AbstractList<Column> implements RandomAccess {
+  private static final byte NULLABLE_KNOWN = 1;
+  private static final byte NULLABLE = 2;
+  private static final byte HAS_SIZE = 4;
+  private static final byte HAS_ORDINAL = 8;
+
+  private final CatalogSchema m_catalogSchema;
+  private final String m_table;
+
+  private final String[] m_names;
+  private final ColumnType[] m_columnTypes;
+  private final String[] m_defaults;
+  private final int[] m_sizes;
+  private final int[] m_ordinals;
+  private final byte[] m_flags;
+
+  // column positions ordered by column name, for lookups by name
+  private final int[] m_positionsByName;
+
+  /**
+   * @param columns columns.
+   * @return whether the columns can be stored compactly, i.e. they belong to the same table and have types.
+   */
+  static boolean canCompact(Collection<Column> columns) {
+    Column first = null;
+    for (Column column : columns) {
+      if (column.getColumnType() == null) {
+        return false;
+      }
+      if (first == null) {
+        first = column;
+      } else if (!first.getCatalogSchema().equals(column.getCatalogSchema())
+          || !first.getTable().equals(column.getTable())) {
+        return false;
+      }
+    }
+    return first != null;
+  }
+
+  /**
+   * Copy columns into compact storage.
+   * @param columns columns that pass {@link #canCompact(Collection)}, with unique names.
+   */
+  CompactColumnList(Collection<Column> columns) {
+    int size = columns.size();
+    m_names = new String[size];
+    m_columnTypes = new ColumnType[size];
+    m_defaults = new String[size];
+    m_sizes = new int[size];
+    m_ordinals = new int[size];
+    m_flags = new byte[size];
+
+    CatalogSchema catalogSchema = null;
+    String table = null;
+    int i = 0;
+    for (Column column : columns) {
+      catalogSchema = column.getCatalogSchema();
+      table = column.getTable();
+
+      m_names[i] = column.getName();
+      m_columnTypes[i] = column.getColumnType();
+      m_defaults[i] = column.getDefault();
+
+      byte flags = 0;
+      if (column.getIsNullable() != null) {
+        flags |= NULLABLE_KNOWN;
+        if (column.getIsNullable()) {
+          flags |= NULLABLE;
+        }
+      }
+      if (column.getColumnSize() != null) {
+        flags |= HAS_SIZE;
+        m_sizes[i] = column.getColumnSize();
+      }
+      if (column.getOrdinal() != null) {
+        flags |= HAS_ORDINAL;
+        m_ordinals[i] = column.getOrdinal();
+      }
+      m_flags[i] = flags;
+      i++;
+    }
+    m_catalogSchema = catalogSchema;
+    m_table = table;
+
+    Integer[] positions = new Integer[size];
+    for (int j = 0; j < size; j++) {
+      positions[j] = j;
+    }
+    Arrays.sort(positions, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer p1, Integer p2) {
+        return m_names[p1].compareTo(m_names[p2]);
+      }
+    });
+    m_positionsByName = new int[size];
+    for (int j = 0; j < size; j++) {
+      m_positionsByName[j] = positions[j];
+    }
+  }
+
+  /**
+   * @param name column name.
+   * @return position of the column with the given name or -1 if there's none.
+   */
+  int indexOfName(String name) {
+    int low = 0;
+    int high = m_positionsByName.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = m_names[m_positionsByName[mid]].compareTo(name);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return m_positionsByName[mid];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the column names in column order.
+   */
+  List<String> getNames() {
+    return new ArrayList<>(Arrays.asList(m_names));
+  }
+
+  /**
+   * @param other another list.
+   * @return whether both lists have the same columns in the same order, with equal types, defaults, nullability, sizes and
+   * ordinals (the tables they belong to may differ).
+   */
+  boolean hasSameColumns(CompactColumnList other) {
+    return Arrays.equals(m_names, other.m_names) && Arrays.equals(m_columnTypes, other.m_columnTypes)
+        && Arrays.equals(m_defaults, other.m_defaults) && Arrays.equals(m_flags, other.m_flags)
+        && Arrays.equals(m_sizes, other.m_sizes) && Arrays.equals(m_ordinals, other.m_ordinals);
+  }
+
+  @Override
+  public Column get(int index) {
+    Column column = new Column(m_catalogSchema, m_names[index], m_table);
+    column.setColumnType(m_columnTypes[index]);
+    column.setDefault(m_defaults[index]);
+
+    byte flags = m_flags[index];
+    if ((flags & NULLABLE_KNOWN) != 0) {
+      column.setIsNullable((flags & NULLABLE) != 0);
+    }
+    if ((flags & HAS_SIZE) != 0) {
+      column.setColumnSize(m_sizes[index]);
+    }
+    if ((flags & HAS_ORDINAL) != 0) {
+      column.setOrdinal(m_ordinals[index]);
+    }
+    return column;
+  }
+
+  @Override
+  public int size() {
+    return m_names.length;
+  }
+}
@@ -89,6 +89,20 @@ public class RelationalTable extends BaseColumnContainer {
     }
     m_indicesByColumns = indexMapBuilder.build();
   }
+  /**
+   * Compact the columns of the table and of its indices, if they're set (see {@link BaseColumnContainer#compactColumns()}).
+   * @return whether the columns of the table were compacted.
+   */
+  @Override
+  public boolean compactColumns() {
+    if (m_indicesByColumns != null) {
+      for (RelationalIndex index : m_indicesByColumns.values()) {
+        index.compactColumns();
+      }
+    }
+    return super.compactColumns();
+  }
+
   /**
    * Get the indices. Do NOT modify these indices -- doing so will mess up internal search indexes!
    * @return Returns the indices
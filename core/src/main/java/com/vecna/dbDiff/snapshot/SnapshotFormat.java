@@ -0,0 +1,72 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.snapshot;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants of the schema snapshot file format. All numbers are big-endian ints unless noted otherwise. A snapshot
+ * consists of
+ * <ol>
+ * <li>the header: magic number and format version;</li>
+ * <li>the string dictionary: the number of strings followed by each string as a byte length and UTF-8 bytes. Everywhere
+ * else strings are referred to by their position in the dictionary, with {@link #NULL_STRING} standing for null;</li>
+ * <li>the table index: the number of tables followed by the name, record offset (relative to the start of the records)
+ * and record length of each table;</li>
+ * <li>the table records.</li>
+ * </ol>
+ *
+ * A table record contains the table catalog, schema, name, type and type name, followed by the length-prefixed lists of
+ * columns, primary key column names, foreign keys and indices. Index columns are stored as column names and resolved
+ * against the columns of the table when loading.
+ *
+ * @author ogolberg@vecna.com
+ */
+final class SnapshotFormat {
+  /** Magic number ("DBDS"). */
+  static final int MAGIC = 0x44424453;
+
+  /** Current format version. */
+  static final int VERSION = 1;
+
+  /** Dictionary reference standing for null. */
+  static final int NULL_STRING = -1;
+
+  /** Length standing for a null list. */
+  static final int NULL_LIST = -1;
+
+  /** Column flag: nullability is known. */
+  static final int NULLABLE_KNOWN = 1;
+
+  /** Column flag: the column is nullable. */
+  static final int NULLABLE = 2;
+
+  /** Column flag: the column has a size. */
+  static final int HAS_SIZE = 4;
+
+  /** Column flag: the column has an ordinal. */
+  static final int HAS_ORDINAL = 8;
+
+  /** Charset of the dictionary strings. */
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Not instantiable.
+   */
+  private SnapshotFormat() {
+  }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.snapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.SchemaInterner;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.InconsistentSchemaException;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Loads a schema snapshot written by {@link SnapshotWriter}. The file is memory-mapped; only the string dictionary and
+ * the table index are decoded up front, so single tables can be loaded without decoding the rest of the file. Names are
+ * shared through the dictionary, and catalogs/schemas and column types are shared by all tables loaded by a reader.
+ *
+ * Loading is thread-safe.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SnapshotReader implements Closeable {
+  private final RandomAccessFile m_file;
+  private final ByteBuffer m_records;
+  private final String[] m_strings;
+  private final Map<String, int[]> m_index = new LinkedHashMap<>();
+  private final SchemaInterner m_interner = new SchemaInterner();
+  private boolean m_compactColumns;
+
+  /**
+   * Open a snapshot.
+   * @param file the snapshot file.
+   * @throws IOException if the file can't be read or isn't a snapshot.
+   */
+  public SnapshotReader(File file) throws IOException {
+    m_file = new RandomAccessFile(file, "r");
+    try {
+      ByteBuffer buffer = m_file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, m_file.length());
+
+      if (buffer.remaining() < 8 || buffer.getInt() != SnapshotFormat.MAGIC) {
+        throw new IOException(file + " is not a schema snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != SnapshotFormat.VERSION) {
+        throw new IOException("unsupported snapshot version " + version + " in " + file);
+      }
+
+      m_strings = new String[buffer.getInt()];
+      for (int i = 0; i < m_strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        m_strings[i] = new String(bytes, SnapshotFormat.UTF8);
+      }
+
+      int tableCount = buffer.getInt();
+      for (int i = 0; i < tableCount; i++) {
+        String name = m_strings[buffer.getInt()];
+        m_index.put(name, new int[] {buffer.getInt(), buffer.getInt()});
+      }
+
+      m_records = buffer.slice();
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      m_file.close();
+      throw new IOException(file + " is truncated or corrupt", e);
+    } catch (IOException | RuntimeException e) {
+      m_file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Choose whether loaded tables store their columns compactly (see
+   * {@link com.vecna.dbDiff.model.relationalDb.BaseColumnContainer#compactColumns()}), which takes a fraction of the
+   * memory for large schemas but makes the columns read-only.
+   * @param compactColumns whether to compact the columns; false by default.
+   */
+  public void setCompactColumns(boolean compactColumns) {
+    m_compactColumns = compactColumns;
+  }
+
+  /**
+   * @return names of the tables in the snapshot, in the order they were saved.
+   */
+  public Set<String> getTableNames() {
+    return Collections.unmodifiableSet(m_index.keySet());
+  }
+
+  /**
+   * Load a single table.
+   * @param name table name.
+   * @return the table or null if the snapshot doesn't contain it.
+   * @throws InconsistentSchemaException if the snapshot is corrupt.
+   */
+  public RelationalTable loadTable(String name) throws InconsistentSchemaException {
+    int[] entry = m_index.get(name);
+    if (entry == null) {
+      return null;
+    }
+
+    ByteBuffer record = m_records.duplicate();
+    record.position(entry[0]);
+    record.limit(entry[0] + entry[1]);
+    try {
+      return readTable(record);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new InconsistentSchemaException("corrupt snapshot record for table " + name);
+    }
+  }
+
+  /**
+   * Load the tables one at a time in name order, e.g. for
+   * {@link com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine#compareSortedTables(Iterator, Iterator)}. Each table is
+   * only loaded when the iterator gets to it and isn't retained by the reader.
+   * @return iterator over the tables, ordered by name; throws {@link InconsistentSchemaException} if the snapshot is
+   * corrupt.
+   */
+  public Iterator<RelationalTable> iterateTables() {
+    return Iterators.transform(new TreeSet<>(m_index.keySet()).iterator(), new Function<String, RelationalTable>() {
+      @Override
+      public RelationalTable apply(String name) {
+        return loadTable(name);
+      }
+    });
+  }
+
+  /**
+   * Load all tables.
+   * @return the database.
+   * @throws InconsistentSchemaException if the snapshot is corrupt.
+   */
+  public RelationalDatabase loadDatabase() throws InconsistentSchemaException {
+    List<RelationalTable> tables = new ArrayList<>(m_index.size());
+    for (String name : m_index.keySet()) {
+      tables.add(loadTable(name));
+    }
+    return new RelationalDatabase(tables);
+  }
+
+  /**
+   * @param buffer buffer positioned at a dictionary reference.
+   * @return the referenced string.
+   */
+  private String readString(ByteBuffer buffer) {
+    int id = buffer.getInt();
+    return id == SnapshotFormat.NULL_STRING ? null : m_strings[id];
+  }
+
+  /**
+   * @param buffer buffer positioned at a catalog/schema.
+   * @return the catalog/schema.
+   */
+  private CatalogSchema readCatalogSchema(ByteBuffer buffer) {
+    return m_interner.catalogSchema(readString(buffer), readString(buffer));
+  }
+
+  /**
+   * @param buffer buffer positioned at a column.
+   * @return the column.
+   */
+  private Column readColumn(ByteBuffer buffer) {
+    CatalogSchema catalogSchema = readCatalogSchema(buffer);
+    String table = readString(buffer);
+    Column column = new Column(catalogSchema, readString(buffer), table);
+    int type = buffer.getInt();
+    column.setColumnType(m_interner.columnType(type, readString(buffer)));
+    column.setDefault(readString(buffer));
+
+    int flags = buffer.get();
+    if ((flags & SnapshotFormat.NULLABLE_KNOWN) != 0) {
+      column.setIsNullable((flags & SnapshotFormat.NULLABLE) != 0);
+    }
+    if ((flags & SnapshotFormat.HAS_SIZE) != 0) {
+      column.setColumnSize(buffer.getInt());
+    }
+    if ((flags & SnapshotFormat.HAS_ORDINAL) != 0) {
+      column.setOrdinal(buffer.getInt());
+    }
+    return column;
+  }
+
+  /**
+   * @param buffer buffer positioned at a foreign key.
+   * @return the foreign key.
+   */
+  private ForeignKey readForeignKey(ByteBuffer buffer) {
+    ForeignKey fk = new ForeignKey();
+    fk.setFkName(readString(buffer));
+    fk.setKeySeq(readString(buffer));
+    fk.setFkCatalogSchema(readCatalogSchema(buffer));
+    fk.setFkTable(readString(buffer));
+    fk.setFkColumn(readString(buffer));
+    fk.setPkCatalogSchema(readCatalogSchema(buffer));
+    fk.setPkTable(readString(buffer));
+    fk.setPkColumn(readString(buffer));
+    return fk;
+  }
+
+  /**
+   * @param buffer buffer positioned at a table record.
+   * @return the table.
+   * @throws InconsistentSchemaException if an index refers to a column the table doesn't have.
+   */
+  private RelationalTable readTable(ByteBuffer buffer) throws InconsistentSchemaException {
+    CatalogSchema catalogSchema = readCatalogSchema(buffer);
+    RelationalTable table = new RelationalTable(catalogSchema, readString(buffer));
+    table.setType(readString(buffer));
+    table.setTypeName(readString(buffer));
+
+    int columnCount = buffer.getInt();
+    List<Column> columns = new ArrayList<>(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      columns.add(readColumn(buffer));
+    }
+    table.setColumns(columns);
+
+    int pkCount = buffer.getInt();
+    if (pkCount != SnapshotFormat.NULL_LIST) {
+      List<String> pkColumns = new ArrayList<>(pkCount);
+      for (int i = 0; i < pkCount; i++) {
+        pkColumns.add(readString(buffer));
+      }
+      table.setPkColumns(pkColumns);
+    }
+
+    int fkCount = buffer.getInt();
+    Set<ForeignKey> fks = new HashSet<>();
+    for (int i = 0; i < fkCount; i++) {
+      fks.add(readForeignKey(buffer));
+    }
+    table.setFks(fks);
+
+    int indexCount = buffer.getInt();
+    List<RelationalIndex> indices = new ArrayList<>(indexCount);
+    for (int i = 0; i < indexCount; i++) {
+      CatalogSchema indexCatalogSchema = readCatalogSchema(buffer);
+      RelationalIndex index = new RelationalIndex(indexCatalogSchema, readString(buffer));
+      int indexColumnCount = buffer.getInt();
+      List<Column> indexColumns = new ArrayList<>(indexColumnCount);
+      for (int j = 0; j < indexColumnCount; j++) {
+        String columnName = readString(buffer);
+        Column column = table.getColumnByName(columnName);
+        if (column == null) {
+          throw new InconsistentSchemaException("cannot find column " + columnName + " referenced by index "
+              + index.getName() + " in table " + table.getName());
+        }
+        indexColumns.add(column);
+      }
+      index.setColumns(indexColumns);
+      indices.add(index);
+    }
+    table.setIndices(indices);
+
+    if (m_compactColumns) {
+      table.compactColumns();
+    }
+    return table;
+  }
+
+  /**
+   * Close the snapshot file. The mapping itself is released when it's garbage collected.
+   * @throws IOException if the file can't be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    m_file.close();
+  }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Saves a {@link RelationalDatabase} as a binary snapshot (see {@link SnapshotFormat}) that can be loaded back with a
+ * {@link SnapshotReader}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SnapshotWriter {
+  private final List<String> m_strings = new ArrayList<>();
+  private final Map<String, Integer> m_stringIds = new HashMap<>();
+
+  /**
+   * @param s a string.
+   * @return the dictionary reference of the string.
+   */
+  private int id(String s) {
+    if (s == null) {
+      return SnapshotFormat.NULL_STRING;
+    }
+    Integer id = m_stringIds.get(s);
+    if (id == null) {
+      id = m_strings.size();
+      m_strings.add(s);
+      m_stringIds.put(s, id);
+    }
+    return id;
+  }
+
+  /**
+   * Write a catalog/schema.
+   * @param out output.
+   * @param catalogSchema catalog/schema.
+   * @throws IOException if the output can't be written.
+   */
+  private void writeCatalogSchema(DataOutputStream out, CatalogSchema catalogSchema) throws IOException {
+    out.writeInt(id(catalogSchema == null ? null : catalogSchema.getCatalog()));
+    out.writeInt(id(catalogSchema == null ? null : catalogSchema.getSchema()));
+  }
+
+  /**
+   * Write a column.
+   * @param out output.
+   * @param column column.
+   * @throws IOException if the output can't be written.
+   */
+  private void writeColumn(DataOutputStream out, Column column) throws IOException {
+    writeCatalogSchema(out, column.getCatalogSchema());
+    out.writeInt(id(column.getTable()));
+    out.writeInt(id(column.getName()));
+    out.writeInt(column.getType());
+    out.writeInt(id(column.getTypeName()));
+    out.writeInt(id(column.getDefault()));
+
+    int flags = 0;
+    if (column.getIsNullable() != null) {
+      flags |= SnapshotFormat.NULLABLE_KNOWN;
+      if (column.getIsNullable()) {
+        flags |= SnapshotFormat.NULLABLE;
+      }
+    }
+    if (column.getColumnSize() != null) {
+      flags |= SnapshotFormat.HAS_SIZE;
+    }
+    if (column.getOrdinal() != null) {
+      flags |= SnapshotFormat.HAS_ORDINAL;
+    }
+    out.writeByte(flags);
+
+    if (column.getColumnSize() != null) {
+      out.writeInt(column.getColumnSize());
+    }
+    if (column.getOrdinal() != null) {
+      out.writeInt(column.getOrdinal());
+    }
+  }
+
+  /**
+   * Write a foreign key.
+   * @param out output.
+   * @param fk foreign key.
+   * @throws IOException if the output can't be written.
+   */
+  private void writeForeignKey(DataOutputStream out, ForeignKey fk) throws IOException {
+    out.writeInt(id(fk.getFkName()));
+    out.writeInt(id(fk.getKeySeq()));
+    writeCatalogSchema(out, fk.getFkCatalogSchema());
+    out.writeInt(id(fk.getFkTable()));
+    out.writeInt(id(fk.getFkColumn()));
+    writeCatalogSchema(out, fk.getPkCatalogSchema());
+    out.writeInt(id(fk.getPkTable()));
+    out.writeInt(id(fk.getPkColumn()));
+  }
+
+  /**
+   * Write a table record.
+   * @param out output.
+   * @param table table.
+   * @throws IOException if the output can't be written.
+   */
+  private void writeTable(DataOutputStream out, RelationalTable table) throws IOException {
+    writeCatalogSchema(out, table.getCatalogSchema());
+    out.writeInt(id(table.getName()));
+    out.writeInt(id(table.getType()));
+    out.writeInt(id(table.getTypeName()));
+
+    out.writeInt(table.getColumns().size());
+    for (Column column : table.getColumns()) {
+      writeColumn(out, column);
+    }
+
+    if (table.getPkColumns() == null) {
+      out.writeInt(SnapshotFormat.NULL_LIST);
+    } else {
+      out.writeInt(table.getPkColumns().size());
+      for (String pkColumn : table.getPkColumns()) {
+        out.writeInt(id(pkColumn));
+      }
+    }
+
+    List<ForeignKey> fks = table.getFks();
+    out.writeInt(fks.size());
+    for (ForeignKey fk : fks) {
+      writeForeignKey(out, fk);
+    }
+
+    out.writeInt(table.getIndices().size());
+    for (RelationalIndex index : table.getIndices()) {
+      writeCatalogSchema(out, index.getCatalogSchema());
+      out.writeInt(id(index.getName()));
+      out.writeInt(index.getColumns().size());
+      for (Column column : index.getColumns()) {
+        out.writeInt(id(column.getName()));
+      }
+    }
+  }
+
+  /**
+   * Save a database to a stream. The tables must be fully built (columns, keys and indices set).
+   * @param database the database.
+   * @param stream output stream; not closed by this method.
+   * @throws IOException if the stream can't be written.
+   */
+  public void write(RelationalDatabase database, OutputStream stream) throws IOException {
+    m_strings.clear();
+    m_stringIds.clear();
+
+    // the dictionary goes first, so the records are written to memory until all strings are known
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordsOut = new DataOutputStream(records);
+    List<int[]> index = new ArrayList<>();
+
+    for (RelationalTable table : database.getTables()) {
+      int offset = recordsOut.size();
+      writeTable(recordsOut, table);
+      index.add(new int[] {id(table.getName()), offset, recordsOut.size() - offset});
+    }
+    recordsOut.flush();
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(SnapshotFormat.MAGIC);
+    out.writeInt(SnapshotFormat.VERSION);
+
+    out.writeInt(m_strings.size());
+    for (String s : m_strings) {
+      byte[] bytes = s.getBytes(SnapshotFormat.UTF8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    out.writeInt(index.size());
+    for (int[] entry : index) {
+      out.writeInt(entry[0]);
+      out.writeInt(entry[1]);
+      out.writeInt(entry[2]);
+    }
+
+    records.writeTo(out);
+    out.flush();
+  }
+
+  /**
+   * Save a database to a file.
+   * @param database the database.
+   * @param file the file.
+   * @throws IOException if the file can't be written.
+   */
+  public void write(RelationalDatabase database, File file) throws IOException {
+    try (OutputStream stream = new FileOutputStream(file)) {
+      write(database, stream);
+    }
+  }
+}
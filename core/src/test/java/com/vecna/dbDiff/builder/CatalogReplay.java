@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.vecna.dbDiff.builder.CatalogQueryRelationalDatabaseBuilder.CatalogQuery;
+import com.vecna.dbDiff.builder.CatalogQueryRelationalDatabaseBuilder.RowHandler;
+
+/**
+ * Replays catalog rows recorded from a live database to a {@link CatalogQueryRelationalDatabaseBuilder}.
+ * The recording has one [QUERY] section per {@link CatalogQuery}, one tab-separated row per line and \N for NULL.
+ *
+ * @author ogolberg@vecna.com
+ */
+class CatalogReplay {
+  private final ListMultimap<CatalogQuery, String[]> m_rows = ArrayListMultimap.create();
+
+  /**
+   * Load a recording.
+   * @param resource classpath resource.
+   * @throws Exception if the recording cannot be read.
+   */
+  CatalogReplay(String resource) throws Exception {
+    try (InputStream stream = getClass().getResourceAsStream(resource)) {
+      CatalogQuery section = null;
+      for (String line : IOUtils.toString(stream).split("\n")) {
+        if (line.startsWith("#") || line.trim().isEmpty()) {
+          continue;
+        } else if (line.startsWith("[")) {
+          section = CatalogQuery.valueOf(line.substring(1, line.length() - 1));
+        } else {
+          String[] row = line.split("\t");
+          for (int i = 0; i < row.length; i++) {
+            if ("\\N".equals(row[i])) {
+              row[i] = null;
+            }
+          }
+          m_rows.put(section, row);
+        }
+      }
+    }
+  }
+
+  /**
+   * Feed the recorded rows of a query to a handler.
+   * @param query the query.
+   * @param handler row handler.
+   * @throws SQLException if thrown by the handler.
+   */
+  void replay(CatalogQuery query, RowHandler handler) throws SQLException {
+    final List<String[]> rows = m_rows.get(query);
+
+    // a minimal forward-only result set over the recorded rows
+    ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class},
+                                                      new InvocationHandler() {
+      private int m_row = -1;
+      private boolean m_wasNull;
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+          case "next":
+            return ++m_row < rows.size();
+          case "wasNull":
+            return m_wasNull;
+          case "getString":
+            return value(args);
+          case "getInt":
+            String intValue = value(args);
+            return m_wasNull ? 0 : Integer.parseInt(intValue);
+          case "getShort":
+            String shortValue = value(args);
+            return m_wasNull ? (short) 0 : Short.parseShort(shortValue);
+          case "getBoolean":
+            String booleanValue = value(args);
+            return !m_wasNull && ("t".equals(booleanValue) || "1".equals(booleanValue) || "true".equals(booleanValue));
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+
+      private String value(Object[] args) {
+        String value = rows.get(m_row)[(Integer) args[0] - 1];
+        m_wasNull = value == null;
+        return value;
+      }
+    });
+
+    while (rs.next()) {
+      handler.handleRow(rs);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link IncrementalRelationalDatabaseBuilder} with a simulated database.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class IncrementalRelationalDatabaseBuilderTest extends TestCase {
+  private static final CatalogSchema CATALOG_SCHEMA = CatalogSchema.defaultCatalogSchema();
+
+  /**
+   * Simulated database: column names by table name, plus a marker per table that's bumped on every change.
+   */
+  private final Map<String, List<String>> m_columns = new TreeMap<>();
+  private final Map<String, Integer> m_versions = new TreeMap<>();
+  private final Map<String, String> m_references = new TreeMap<>();
+  private final List<List<String>> m_reads = new ArrayList<>();
+
+  private void alter(String table, String... columns) {
+    m_columns.put(table, Arrays.asList(columns));
+    Integer version = m_versions.get(table);
+    m_versions.put(table, version == null ? 1 : version + 1);
+  }
+
+  private void drop(String table) {
+    m_columns.remove(table);
+    m_versions.remove(table);
+  }
+
+  private RelationalTable readTable(String name) throws Exception {
+    RelationalTable table = new RelationalTable(CATALOG_SCHEMA, name);
+    List<Column> columns = new ArrayList<>();
+    int ordinal = 1;
+    for (String columnName : m_columns.get(name)) {
+      Column column = new Column(CATALOG_SCHEMA, columnName, name);
+      column.setColumnType(new ColumnType(Types.BIGINT, "int8"));
+      column.setOrdinal(ordinal++);
+      columns.add(column);
+    }
+    table.setColumns(columns);
+
+    HashSet<ForeignKey> fks = new HashSet<>();
+    String referenced = m_references.get(name);
+    if (referenced != null) {
+      ForeignKey fk = new ForeignKey();
+      fk.setFkName("fk_" + name);
+      fk.setKeySeq("1");
+      fk.setFkCatalogSchema(CATALOG_SCHEMA);
+      fk.setFkTable(name);
+      fk.setFkColumn(m_columns.get(name).get(0));
+      fk.setPkCatalogSchema(CATALOG_SCHEMA);
+      fk.setPkTable(referenced);
+      fk.setPkColumn(m_columns.get(referenced).get(0));
+      fks.add(fk);
+    }
+    table.setFks(fks);
+    table.setIndices(Collections.<RelationalIndex>emptyList());
+    return table;
+  }
+
+  private IncrementalRelationalDatabaseBuilder createBuilder() {
+    FilteringRelationalDatabaseBuilder builder = new FilteringRelationalDatabaseBuilder() {
+      @Override
+      public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) {
+        return createRelationalDatabase(catalogSchema, new TableFilter());
+      }
+
+      @Override
+      public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter) {
+        List<RelationalTable> tables = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try {
+          for (String name : m_columns.keySet()) {
+            if (filter.accept(name)) {
+              tables.add(readTable(name));
+              names.add(name);
+            }
+          }
+        } catch (Exception e) {
+          throw new RelationalDatabaseReadException(e);
+        }
+        m_reads.add(names);
+        return new RelationalDatabase(tables);
+      }
+    };
+
+    return new IncrementalRelationalDatabaseBuilder(builder, new ChangeMarkerReader() {
+      @Override
+      public Map<String, String> readChangeMarkers(CatalogSchema catalogSchema) {
+        Map<String, String> markers = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : m_versions.entrySet()) {
+          markers.put(entry.getKey(), entry.getValue().toString());
+        }
+        return markers;
+      }
+    });
+  }
+
+  /**
+   * Only changed tables and the tables referencing them are re-read.
+   * @throws Exception
+   */
+  public void testIncrementalRead() throws Exception {
+    alter("address", "id", "street");
+    alter("person", "id", "name");
+    alter("person_relatives", "person_id", "relative_id");
+    m_references.put("person_relatives", "person");
+
+    IncrementalRelationalDatabaseBuilder builder = createBuilder();
+    RelationalDatabase first = builder.createRelationalDatabase(CATALOG_SCHEMA);
+    assertEquals(Arrays.asList("address", "person", "person_relatives"), m_reads.get(0));
+    assertEquals(3, builder.getChangedTableNames().size());
+
+    assertSame("nothing changed", first, builder.createRelationalDatabase(CATALOG_SCHEMA));
+    assertEquals(1, m_reads.size());
+    assertTrue(builder.getChangedTableNames().isEmpty());
+
+    alter("person", "id", "name", "dob");
+    RelationalDatabase second = builder.createRelationalDatabase(CATALOG_SCHEMA);
+    assertEquals(new HashSet<>(Arrays.asList("person", "person_relatives")), new HashSet<>(m_reads.get(1)));
+    assertSame("unchanged tables should be shared", first.getTableByName("address"), second.getTableByName("address"));
+    assertEquals(Arrays.asList("id", "name", "dob"), second.getTableByName("person").getColumnNames());
+
+    drop("address");
+    alter("zone", "id");
+    RelationalDatabase third = builder.createRelationalDatabase(CATALOG_SCHEMA);
+    assertEquals(Arrays.asList("zone"), m_reads.get(2));
+    assertNull(third.getTableByName("address"));
+    assertNotNull(third.getTableByName("zone"));
+    assertSame(second.getTableByName("person"), third.getTableByName("person"));
+    assertEquals(new HashSet<>(Arrays.asList("address", "zone")), builder.getChangedTableNames());
+  }
+
+  /**
+   * A different filter causes a full read.
+   * @throws Exception
+   */
+  public void testFilterChange() throws Exception {
+    alter("address", "id", "street");
+    alter("person", "id", "name");
+
+    IncrementalRelationalDatabaseBuilder builder = createBuilder();
+    TableFilter filter = new TableFilter();
+    filter.addExcludedName("address");
+    assertEquals(1, builder.createRelationalDatabase(CATALOG_SCHEMA, filter).getTables().size());
+
+    alter("address", "id", "street", "city");
+    assertEquals(1, builder.createRelationalDatabase(CATALOG_SCHEMA, filter).getTables().size());
+    assertEquals("changes to excluded tables should be ignored", 1, m_reads.size());
+
+    assertEquals(2, builder.createRelationalDatabase(CATALOG_SCHEMA).getTables().size());
+    assertEquals(2, m_reads.size());
+  }
+}
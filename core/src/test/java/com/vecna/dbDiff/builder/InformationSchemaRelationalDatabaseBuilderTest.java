@@ -0,0 +1,156 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.builder.CatalogQueryRelationalDatabaseBuilder.CatalogQuery;
+import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link InformationSchemaRelationalDatabaseBuilder} against recorded INFORMATION_SCHEMA rows.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class InformationSchemaRelationalDatabaseBuilderTest extends TestCase {
+  private static final CatalogSchema PUBLIC = new CatalogSchema("APP", "PUBLIC");
+
+  private RelationalDatabase getDatabase() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/information-schema-catalog-replay.txt");
+
+    InformationSchemaRelationalDatabaseBuilder builder =
+        new InformationSchemaRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, CatalogSchema catalogSchema, RowHandler handler) throws SQLException {
+        replay.replay(query, handler);
+      }
+    };
+
+    return builder.createRelationalDatabase(PUBLIC);
+  }
+
+  /**
+   * Tables and columns, with standard type names mapped to sql types.
+   * @throws Exception
+   */
+  public void testTablesAndColumns() throws Exception {
+    RelationalDatabase database = getDatabase();
+    assertEquals(2, database.getTables().size());
+
+    RelationalTable account = database.getTableByName("ACCOUNT");
+    assertEquals(PUBLIC, account.getCatalogSchema());
+    assertEquals(Arrays.asList("ID", "CODE", "OPENED"), account.getColumnNames());
+
+    Column code = account.getColumnByName("CODE");
+    assertEquals(Types.VARCHAR, code.getType());
+    assertEquals(Integer.valueOf(20), code.getColumnSize());
+    assertEquals(Boolean.FALSE, code.getIsNullable());
+
+    Column opened = account.getColumnByName("OPENED");
+    assertEquals(Types.TIMESTAMP, opened.getType());
+    assertEquals("TIMESTAMP WITH TIME ZONE", opened.getTypeName());
+    assertEquals("CURRENT_TIMESTAMP", opened.getDefault());
+    assertEquals(Boolean.TRUE, opened.getIsNullable());
+
+    assertEquals("binary precision in decimal digits, as reported by getColumns()", Integer.valueOf(19),
+                 account.getColumnByName("ID").getColumnSize());
+
+    RelationalTable entry = database.getTableByName("ENTRY");
+    assertEquals(Integer.valueOf(10), entry.getColumnByName("SEQ").getColumnSize());
+    assertEquals(Types.NUMERIC, entry.getColumnByName("AMOUNT").getType());
+    assertEquals(Integer.valueOf(19), entry.getColumnByName("AMOUNT").getColumnSize());
+    assertEquals(Integer.valueOf(3), entry.getColumnByName("AMOUNT").getOrdinal());
+
+    Column geom = entry.getColumnByName("GEOM");
+    assertEquals(Types.OTHER, geom.getType());
+    assertEquals("GEOMETRY", geom.getTypeName());
+  }
+
+  /**
+   * Primary keys, foreign keys and the indices derived from primary key and unique constraints.
+   * @throws Exception
+   */
+  public void testKeysAndIndices() throws Exception {
+    RelationalDatabase database = getDatabase();
+
+    RelationalTable account = database.getTableByName("ACCOUNT");
+    assertEquals(Arrays.asList("ID"), account.getPkColumns());
+
+    RelationalTable entry = database.getTableByName("ENTRY");
+    assertEquals(Arrays.asList("ACCOUNT_ID", "SEQ"), entry.getPkColumns());
+
+    Set<ForeignKey> fks = entry.getFksByName("FK_ENTRY_ACCOUNT");
+    assertEquals(1, fks.size());
+    ForeignKey fk = fks.iterator().next();
+    assertEquals("ACCOUNT", fk.getPkTable());
+    assertEquals("ID", fk.getPkColumn());
+    assertEquals("ACCOUNT_ID", fk.getFkColumn());
+    assertEquals(PUBLIC, fk.getPkCatalogSchema());
+
+    assertEquals(2, account.getIndices().size());
+    Collection<RelationalIndex> unique = account.getIndicesByColumns().get(Arrays.asList("CODE"));
+    assertEquals(1, unique.size());
+    assertEquals("UQ_ACCOUNT_CODE", unique.iterator().next().getName());
+
+    // the plain index on ENTRY(AMOUNT) isn't described by the standard views
+    assertEquals(1, entry.getIndices().size());
+    assertEquals("PK_ENTRY", entry.getIndicesByColumns().get(Arrays.asList("ACCOUNT_ID", "SEQ")).iterator().next().getName());
+    assertTrue(entry.getIndicesByColumns().get(Arrays.asList("AMOUNT")).isEmpty());
+  }
+
+  /**
+   * Schemas of the same name in different catalogs are kept apart when several schemas are read at once.
+   * @throws Exception
+   */
+  public void testSchemasOfTheSameNameInDifferentCatalogs() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/information-schema-catalog-replay.txt");
+
+    InformationSchemaRelationalDatabaseBuilder builder =
+        new InformationSchemaRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, List<CatalogSchema> catalogSchemas, RowHandler handler)
+          throws SQLException {
+        String sql = getSql(query, catalogSchemas.size());
+        assertTrue(sql, sql.contains("SCHEMA IN (?, ?)"));
+        assertFalse(sql, sql.contains(SCHEMA_NAMES));
+        replay.replay(query, handler);
+      }
+    };
+
+    CatalogSchema other = new CatalogSchema("OTHER", "PUBLIC");
+    Map<CatalogSchema, RelationalDatabase> databases = builder.createRelationalDatabases(Arrays.asList(PUBLIC, other));
+
+    assertEquals(2, databases.get(PUBLIC).getTables().size());
+    assertEquals(Arrays.asList("ID", "CODE", "OPENED"), databases.get(PUBLIC).getTableByName("ACCOUNT").getColumnNames());
+    assertTrue(databases.get(other).getTables().isEmpty());
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.builder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+
+/**
+ * A {@link MetadataFactory} over in-memory schemas of tables with bigint columns, the first of which is the primary
+ * key. There are no foreign keys or indices besides the primary keys. Metadata calls are recorded as "method:table"
+ * ("method:*" for a null table name), prefixed with the schema ("method:schema.table", or "method:*.table" for a null
+ * schema) unless it's the first schema, and {@link #beforeCall(String, String)} can be overridden to make them fail or
+ * block.
+ *
+ * @author ogolberg@vecna.com
+ */
+class MetadataStub implements MetadataFactory {
+  private final String m_defaultSchema;
+  private final Map<String, Map<String, List<String>>> m_columns = new LinkedHashMap<>();
+  private String m_schema;
+  private final List<String> m_calls = Collections.synchronizedList(new ArrayList<String>());
+
+  /**
+   * @param schema name of the schema.
+   */
+  MetadataStub(String schema) {
+    m_defaultSchema = schema;
+    schema(schema);
+  }
+
+  /**
+   * Add a schema; the tables added next belong to it.
+   * @param schema name of the schema.
+   * @return this.
+   */
+  MetadataStub schema(String schema) {
+    m_schema = schema;
+    if (!m_columns.containsKey(schema)) {
+      m_columns.put(schema, new LinkedHashMap<String, List<String>>());
+    }
+    return this;
+  }
+
+  /**
+   * Add a table.
+   * @param name table name.
+   * @param columns column names.
+   * @return this.
+   */
+  MetadataStub table(String name, String... columns) {
+    List<String> columnNames = new ArrayList<>();
+    Collections.addAll(columnNames, columns);
+    m_columns.get(m_schema).put(name, columnNames);
+    return this;
+  }
+
+  /**
+   * @return the metadata calls made so far, in the order they were made.
+   */
+  List<String> getCalls() {
+    synchronized (m_calls) {
+      return new ArrayList<>(m_calls);
+    }
+  }
+
+  /**
+   * Called before every metadata call.
+   * @param method name of the {@link DatabaseMetaData} method.
+   * @param table the table name passed to the method or null.
+   * @throws SQLException to make the call fail.
+   */
+  protected void beforeCall(String method, String table) throws SQLException {
+  }
+
+  /**
+   * @param method name of a {@link DatabaseMetaData} method.
+   * @param schema the schema name passed to the method or null.
+   * @param table the table name passed to the method or null.
+   * @return the rows of the result, laid out as specified by {@link DatabaseMetaData}.
+   */
+  private List<Object[]> rows(String method, String schema, String table) {
+    List<Object[]> rows = new ArrayList<>();
+    for (Map.Entry<String, Map<String, List<String>>> schemaTables : m_columns.entrySet()) {
+      String schemaName = schemaTables.getKey();
+      if (schema != null && !schema.equals(schemaName)) {
+        continue;
+      }
+      for (Map.Entry<String, List<String>> tableColumns : schemaTables.getValue().entrySet()) {
+        String name = tableColumns.getKey();
+        List<String> columns = tableColumns.getValue();
+        if (table != null && !table.equals(name)) {
+          continue;
+        }
+        switch (method) {
+          case "getTables":
+            rows.add(new Object[] {null, schemaName, name, "TABLE", null});
+            break;
+          case "getColumns":
+            for (int i = 0; i < columns.size(); i++) {
+              rows.add(new Object[] {null, schemaName, name, columns.get(i), Types.BIGINT, "BIGINT", 19, null, null, null,
+                                     DatabaseMetaData.columnNoNulls, null, null, null, null, null, i + 1});
+            }
+            break;
+          case "getPrimaryKeys":
+            rows.add(new Object[] {null, schemaName, name, columns.get(0), 1});
+            break;
+          case "getIndexInfo":
+            rows.add(new Object[] {null, schemaName, name, false, null, "PK_" + name, null, 1, columns.get(0)});
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * @return the rows of {@link DatabaseMetaData#getSchemas()}.
+   */
+  private List<Object[]> schemaRows() {
+    List<Object[]> rows = new ArrayList<>();
+    for (String schema : m_columns.keySet()) {
+      rows.add(new Object[] {schema, null});
+    }
+    return rows;
+  }
+
+  /**
+   * @param rows rows.
+   * @return a forward-only result set over the rows.
+   */
+  private static ResultSet resultSet(final List<Object[]> rows) {
+    return (ResultSet) Proxy.newProxyInstance(MetadataStub.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                                              new InvocationHandler() {
+      private int m_row = -1;
+      private boolean m_wasNull;
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+          case "next":
+            return ++m_row < rows.size();
+          case "wasNull":
+            return m_wasNull;
+          case "close":
+            return null;
+          case "getString":
+            Object value = value(args);
+            return value == null ? null : value.toString();
+          case "getInt":
+            Object intValue = value(args);
+            return intValue == null ? 0 : ((Number) intValue).intValue();
+          case "getShort":
+            Object shortValue = value(args);
+            return shortValue == null ? (short) 0 : ((Number) shortValue).shortValue();
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+
+      private Object value(Object[] args) {
+        Object value = rows.get(m_row)[(Integer) args[0] - 1];
+        m_wasNull = value == null;
+        return value;
+      }
+    });
+  }
+
+  @Override
+  public DatabaseMetaData getMetadata() {
+    return (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+                                                     new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+          case "getSearchStringEscape":
+            return "\\";
+          case "getTables":
+          case "getColumns":
+          case "getImportedKeys":
+          case "getPrimaryKeys":
+          case "getIndexInfo":
+            String schema = (String) args[1];
+            String table = (String) args[2];
+            String prefix = m_defaultSchema.equals(schema) ? "" : (schema == null ? "*" : schema) + ".";
+            m_calls.add(method.getName() + ":" + prefix + (table == null ? "*" : table));
+            beforeCall(method.getName(), table);
+            return resultSet(rows(method.getName(), schema, table));
+          case "getSchemas":
+            m_calls.add(method.getName());
+            return resultSet(schemaRows());
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.builder.CatalogQueryRelationalDatabaseBuilder.CatalogQuery;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.MetadataCategory;
+import com.vecna.dbDiff.model.ReadProfile;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link PostgreSqlRelationalDatabaseBuilder} against recorded pg_catalog rows.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class PostgreSqlRelationalDatabaseBuilderTest extends TestCase {
+  private RelationalDatabase getDatabase(ReadProfile readProfile) throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/pg-catalog-replay.txt");
+
+    PostgreSqlRelationalDatabaseBuilder builder = new PostgreSqlRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, CatalogSchema catalogSchema, RowHandler handler) throws SQLException {
+        replay.replay(query, handler);
+      }
+    };
+    builder.setReadProfile(readProfile);
+
+    return builder.createRelationalDatabase(CatalogSchema.defaultCatalogSchema());
+  }
+
+  /**
+   * Test {@link PostgreSqlRelationalDatabaseBuilder#createRelationalDatabases(java.util.Collection)}.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabases() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/pg-catalog-replay-tenants.txt");
+    final List<CatalogQuery> queries = new ArrayList<>();
+
+    PostgreSqlRelationalDatabaseBuilder builder = new PostgreSqlRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, List<CatalogSchema> catalogSchemas, RowHandler handler) throws SQLException {
+        assertEquals(2, catalogSchemas.size());
+        assertTrue(getSql(query, catalogSchemas.size()).contains("nspname IN (?, ?)"));
+        queries.add(query);
+        replay.replay(query, handler);
+      }
+    };
+
+    CatalogSchema tenantA = new CatalogSchema(null, "tenant_a");
+    CatalogSchema tenantB = new CatalogSchema(null, "tenant_b");
+    Map<CatalogSchema, RelationalDatabase> databases = builder.createRelationalDatabases(Arrays.asList(tenantA, tenantB));
+
+    assertEquals("one query per kind of metadata", Arrays.asList(CatalogQuery.values()), queries);
+    assertEquals(Arrays.asList(tenantA, tenantB), new ArrayList<>(databases.keySet()));
+
+    RelationalTable personA = databases.get(tenantA).getTableByName("person");
+    assertEquals(tenantA, personA.getCatalogSchema());
+    assertEquals(Arrays.asList("id", "name"), personA.getColumnNames());
+
+    RelationalTable personB = databases.get(tenantB).getTableByName("person");
+    assertEquals(Arrays.asList("id"), personB.getColumnNames());
+    assertEquals(Arrays.asList("id"), personB.getPkColumns());
+    assertEquals(1, personB.getIndices().size());
+  }
+
+  /**
+   * A filter that lists exact table names is pushed down into every catalog query.
+   * @throws Exception
+   */
+  public void testTableNamePushdown() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/pg-catalog-replay.txt");
+    final List<String> sqls = new ArrayList<>();
+    final List<Collection<String>> tableNames = new ArrayList<>();
+
+    PostgreSqlRelationalDatabaseBuilder builder = new PostgreSqlRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, List<CatalogSchema> catalogSchemas, Collection<String> names,
+                           RowHandler handler) throws SQLException {
+        sqls.add(getSql(query, catalogSchemas.size(), names.size()));
+        tableNames.add(new ArrayList<>(names));
+        replay.replay(query, handler);
+      }
+    };
+
+    TableFilter filter = new TableFilter();
+    filter.addIncludedName("person");
+    filter.addIncludedName("missing");
+    RelationalDatabase database = builder.createRelationalDatabase(CatalogSchema.defaultCatalogSchema(), filter);
+
+    assertEquals(1, database.getTables().size());
+    assertEquals(Arrays.asList("id"), database.getTableByName("person").getPkColumns());
+
+    assertEquals(CatalogQuery.values().length, sqls.size());
+    assertTrue(sqls.get(0), sqls.get(0).endsWith("AND c.relname IN (?, ?) ORDER BY c.relname"));
+    assertEquals(2, tableNames.get(0).size());
+    for (int i = 1; i < sqls.size(); i++) {
+      assertTrue(sqls.get(i), sqls.get(i).contains("relname IN (?)"));
+      assertEquals("only the tables that were found are read", Arrays.asList("person"), tableNames.get(i));
+    }
+    assertTrue(sqls.get(3), sqls.get(3).contains("AND fkc.relname IN (?)"));
+    assertTrue(sqls.get(1), sqls.get(1).contains("AND c.relname IN (?) AND a.attnum > 0"));
+    for (String sql : sqls) {
+      assertFalse(sql, sql.contains(CatalogQueryRelationalDatabaseBuilder.TABLE_NAMES_FILTER));
+    }
+  }
+
+  /**
+   * Partitioned tables are listed along with their partitions, like the driver does.
+   * @throws Exception
+   */
+  public void testPartitionedTables() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/pg-catalog-replay-partitioned.txt");
+    final List<String> sqls = new ArrayList<>();
+
+    PostgreSqlRelationalDatabaseBuilder builder = new PostgreSqlRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, CatalogSchema catalogSchema, RowHandler handler) throws SQLException {
+        sqls.add(getSql(query));
+        replay.replay(query, handler);
+      }
+    };
+    RelationalDatabase database = builder.createRelationalDatabase(CatalogSchema.defaultCatalogSchema());
+
+    assertTrue(sqls.get(0), sqls.get(0).contains("c.relkind IN ('r', 'p')"));
+    assertTrue(sqls.get(1), sqls.get(1).contains("c.relkind IN ('r', 'p')"));
+
+    RelationalTable event = database.getTableByName("event");
+    assertEquals("TABLE", event.getType());
+    assertEquals(Arrays.asList("id", "created"), event.getColumnNames());
+    assertEquals(Arrays.asList("id", "created"), event.getPkColumns());
+    assertEquals(Arrays.asList("id", "created"), database.getTableByName("event_2026").getColumnNames());
+  }
+
+  /**
+   * Repeated catalogs/schemas, column types and names are shared by the whole model instead of being copied from every
+   * catalog row.
+   * @throws Exception
+   */
+  public void testSharedInstances() throws Exception {
+    RelationalDatabase database = getDatabase(ReadProfile.ALL);
+
+    Set<Object> catalogSchemas = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    Set<Object> columnTypes = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    Set<Object> personNames = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    int columnCount = 0;
+
+    for (RelationalTable table : database.getTables()) {
+      catalogSchemas.add(table.getCatalogSchema());
+      if ("person".equals(table.getName())) {
+        personNames.add(table.getName());
+      }
+      for (Column column : table.getColumns()) {
+        catalogSchemas.add(column.getCatalogSchema());
+        columnTypes.add(column.getColumnType());
+        if ("person".equals(column.getTable())) {
+          personNames.add(column.getTable());
+        }
+        columnCount++;
+      }
+      for (ForeignKey fk : table.getFks()) {
+        catalogSchemas.add(fk.getFkCatalogSchema());
+        catalogSchemas.add(fk.getPkCatalogSchema());
+        personNames.add(fk.getPkTable());
+      }
+    }
+
+    assertEquals(6, columnCount);
+    assertEquals("one catalog/schema instance per schema", 1, catalogSchemas.size());
+    assertEquals("one column type instance per distinct type", 3, columnTypes.size());
+    assertEquals("one instance per distinct name", 1, personNames.size());
+  }
+
+  /**
+   * Test {@link PostgreSqlRelationalDatabaseBuilder#createRelationalDatabase(CatalogSchema)} with a read profile that
+   * leaves out foreign keys and indices.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseWithReadProfile() throws Exception {
+    ReadProfile readProfile = ReadProfile.of(MetadataCategory.COLUMNS, MetadataCategory.PRIMARY_KEYS);
+    RelationalDatabase database = getDatabase(readProfile);
+
+    RelationalTable joinTable = database.getTableByName("person_relatives");
+    assertEquals("wrong number of columns", 3, joinTable.getColumns().size());
+    assertEquals("wrong PK columns", Arrays.asList("person_id", "relative_id"), joinTable.getPkColumns());
+    assertTrue("foreign keys should not be read", joinTable.getFks().isEmpty());
+    assertTrue("indices should not be read", joinTable.getIndices().isEmpty());
+
+    RelationalDatabase fullDatabase = getDatabase(ReadProfile.ALL);
+    assertTrue("skipped metadata should not be compared",
+               new RdbDiffEngine(readProfile).compareRelationalDatabase(fullDatabase, database).isEmpty());
+    assertFalse("skipped metadata should be reported as missing by a full comparison",
+                new RdbDiffEngine().compareRelationalDatabase(fullDatabase, database).isEmpty());
+  }
+
+  /**
+   * Test {@link PostgreSqlRelationalDatabaseBuilder#createRelationalDatabase(CatalogSchema)}.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabase() throws Exception {
+    RelationalDatabase database = getDatabase(ReadProfile.ALL);
+
+    assertEquals("wrong number of tables", 2, database.getTables().size());
+
+    RelationalTable personTable = database.getTableByName("person");
+    assertNotNull("table person not found", personTable);
+    assertEquals(CatalogSchema.defaultCatalogSchema(), personTable.getCatalogSchema());
+
+    List<Column> cols = new ArrayList<>(personTable.getColumns());
+    assertEquals("wrong number of columns", 3, cols.size());
+    assertEquals("wrong column", "id", cols.get(0).getName());
+    assertEquals("wrong column", Boolean.FALSE, cols.get(0).getIsNullable());
+    assertEquals("wrong column", Types.BIGINT, cols.get(0).getType());
+    assertEquals("wrong column", "int8", cols.get(0).getTypeName());
+    assertEquals("wrong column", Integer.valueOf(19), cols.get(0).getColumnSize());
+
+    assertEquals("wrong column", "name", cols.get(1).getName());
+    assertEquals("wrong column", Types.VARCHAR, cols.get(1).getType());
+    assertEquals("wrong column", Integer.valueOf(255), cols.get(1).getColumnSize());
+
+    assertEquals("wrong column", "dob", cols.get(2).getName());
+    assertEquals("wrong column", Types.TIMESTAMP, cols.get(2).getType());
+    assertEquals("wrong column", Integer.valueOf(3), cols.get(2).getOrdinal());
+
+    assertEquals("wrong PK columns", Arrays.asList("id"), personTable.getPkColumns());
+    assertEquals("wrong number of indices", 2, personTable.getIndices().size());
+    assertEquals("name_dob_idx", personTable.getIndicesByColumns().get(Arrays.asList("name", "dob")).iterator().next().getName());
+
+    RelationalTable joinTable = database.getTableByName("person_relatives");
+    cols = new ArrayList<>(joinTable.getColumns());
+    assertEquals("wrong number of columns", 3, cols.size());
+    assertEquals("wrong column", Boolean.TRUE, cols.get(2).getIsNullable());
+
+    assertEquals("wrong PK columns", Arrays.asList("person_id", "relative_id"), joinTable.getPkColumns());
+    assertEquals("wrong number of indices", 1, joinTable.getIndices().size());
+
+    ForeignKey fkPerson = joinTable.getFksByName("fk_person").iterator().next();
+    assertEquals("person_id", fkPerson.getFkColumn());
+    assertEquals("person", fkPerson.getPkTable());
+    assertEquals("id", fkPerson.getPkColumn());
+    assertEquals("1", fkPerson.getKeySeq());
+    assertEquals(1, joinTable.getFksByName("fk_relative").size());
+  }
+}
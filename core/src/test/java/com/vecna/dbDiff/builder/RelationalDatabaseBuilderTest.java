@@ -17,20 +17,43 @@
 package com.vecna.dbDiff.builder;
 
 import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
 import org.apache.commons.io.IOUtils;
 
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareErrorType;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
 import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.jdbc.PooledMetadataFactory;
 import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
 import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.MetadataCategory;
+import com.vecna.dbDiff.model.ReadProfile;
 import com.vecna.dbDiff.model.db.Column;
 import com.vecna.dbDiff.model.db.ForeignKey;
 import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
@@ -43,20 +66,26 @@ import com.vecna.dbDiff.model.relationalDb.RelationalTable;
  * @author ogolberg@vecna.com
  */
 public class RelationalDatabaseBuilderTest extends TestCase {
-  private RelationalDatabase getDatabase() throws Exception {
-    try (MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1", "sa", "")) {
-      try (InputStream stream = getClass().getResourceAsStream("/test-db.sql")) {
-        String sql = IOUtils.toString(stream);
+  private RelationalDatabase getDatabase(String dbName, boolean bulkRead) throws Exception {
+    try (MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1", "sa", "")) {
+      return getDatabase(factory, bulkRead);
+    }
+  }
 
-        Connection ddlConnection = factory.getMetadata().getConnection();
-        ddlConnection.setAutoCommit(true);
+  private RelationalDatabase getDatabase(MetadataFactory factory, boolean bulkRead) throws Exception {
+    try (InputStream stream = getClass().getResourceAsStream("/test-db.sql")) {
+      String sql = IOUtils.toString(stream);
 
-        for (String sqlStatement : sql.split(";")) {
-          ddlConnection.createStatement().execute(sqlStatement);
-        }
+      Connection ddlConnection = factory.getMetadata().getConnection();
+      ddlConnection.setAutoCommit(true);
+
+      for (String sqlStatement : sql.split(";")) {
+        ddlConnection.createStatement().execute(sqlStatement);
       }
+    }
 
-      RelationalDatabaseBuilder builder = new RelationalDatabaseBuilderImpl(factory);
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory, 4)) {
+      builder.setBulkRead(bulkRead);
       return builder.createRelationalDatabase(new CatalogSchema(null, "PUBLIC"));
     }
   }
@@ -85,7 +114,527 @@ public class RelationalDatabaseBuilderTest extends TestCase {
    * @throws Exception
    */
   public void testCreateRelationalDatabase() throws Exception {
-    RelationalDatabase database = getDatabase();
+    verifyDatabase(getDatabase("test", false));
+  }
+
+  /**
+   * Test {@link RelationalDatabaseBuilderImpl#createRelationalDatabase(CatalogSchema)) in bulk mode.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseInBulk() throws Exception {
+    verifyDatabase(getDatabase("testBulk", true));
+  }
+
+  /**
+   * Test {@link RelationalDatabaseBuilderImpl#createRelationalDatabase(CatalogSchema)) with a bounded connection pool.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseWithPool() throws Exception {
+    try (PooledMetadataFactory factory = new PooledMetadataFactory("jdbc:h2:mem:testPool;DB_CLOSE_DELAY=-1", "sa", "", 2)) {
+      verifyDatabase(getDatabase(factory, false));
+      assertTrue("too many connections", factory.getOpenConnections() <= 2);
+    }
+  }
+
+  /**
+   * Test {@link RelationalDatabaseBuilderImpl#createRelationalDatabase(CatalogSchema)) with table size hints from a
+   * previous read.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseWithSizeHints() throws Exception {
+    try (MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:testHints;DB_CLOSE_DELAY=-1", "sa", "")) {
+      RelationalDatabase previous = getDatabase(factory, false);
+
+      final Table<CatalogSchema, String, Long> sizes = RelationalDatabaseBuilderImpl.getTableSizes(previous);
+      final CatalogSchema catalogSchema = previous.getTableByName("PERSON").getCatalogSchema();
+      assertEquals("wrong size of PERSON", Long.valueOf(5), sizes.get(catalogSchema, "PERSON"));
+
+      try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory, 4)) {
+        builder.setTableSizeHints(sizes);
+        verifyDatabase(builder.createRelationalDatabase(new CatalogSchema(null, "PUBLIC")));
+      }
+
+      // with a single thread, tables are completed in the order their reads are scheduled
+      final List<RelationalTable> tables = new ArrayList<>();
+      try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory, 1)) {
+        builder.setTableSizeHints(sizes);
+        builder.readRelationalTables(new CatalogSchema(null, "PUBLIC"), new RelationalTableListener() {
+          @Override
+          public void tableRead(RelationalTable table) {
+            tables.add(table);
+          }
+        });
+      }
+
+      assertEquals("wrong number of tables", previous.getTables().size(), tables.size());
+      for (int i = 1; i < tables.size(); i++) {
+        assertTrue(tables.get(i).getName() + " was read before the larger " + tables.get(i - 1).getName(),
+                   sizes.get(catalogSchema, tables.get(i - 1).getName()) >= sizes.get(catalogSchema, tables.get(i).getName()));
+      }
+    }
+  }
+
+  /**
+   * A few schemas of a catalog are listed one by one; schemas that make up most of the catalog are listed at once.
+   */
+  public void testSchemaScope() {
+    MetadataStub stub = new MetadataStub("PUBLIC").table("T", "ID");
+    List<CatalogSchema> tenants = new ArrayList<>();
+    for (String tenant : Arrays.asList("S1", "S2", "S3", "S4")) {
+      stub.schema(tenant).table("T", "ID").table(tenant + "_ONLY", "ID");
+      tenants.add(new CatalogSchema(null, tenant));
+    }
+
+    Map<CatalogSchema, RelationalDatabase> databases;
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 2)) {
+      builder.setBulkRead(true);
+      databases = builder.createRelationalDatabases(tenants.subList(0, 2));
+    }
+    assertEquals(2, databases.size());
+    assertNotNull(databases.get(tenants.get(1)).getTableByName("S2_ONLY"));
+    assertEquals(2, databases.get(tenants.get(1)).getTables().size());
+    assertEquals(Arrays.asList("getSchemas", "getTables:S1.*", "getColumns:S1.*", "getImportedKeys:S1.*",
+                               "getPrimaryKeys:S1.*", "getIndexInfo:S1.*", "getTables:S2.*", "getColumns:S2.*",
+                               "getImportedKeys:S2.*", "getPrimaryKeys:S2.*", "getIndexInfo:S2.*"), stub.getCalls());
+
+    stub = new MetadataStub("PUBLIC").table("T", "ID");
+    for (String tenant : Arrays.asList("S1", "S2", "S3", "S4")) {
+      stub.schema(tenant).table("T", "ID");
+    }
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 2)) {
+      builder.setBulkRead(true);
+      databases = builder.createRelationalDatabases(tenants);
+    }
+    assertEquals(4, databases.size());
+    assertEquals(1, databases.get(tenants.get(3)).getTables().size());
+    assertEquals(Arrays.asList("getSchemas", "getTables:*.*", "getColumns:*.*", "getImportedKeys:*.*",
+                               "getPrimaryKeys:*.*", "getIndexInfo:*.*"), stub.getCalls());
+  }
+
+  /**
+   * Size hints of tables with the same name in different schemas don't clash.
+   */
+  public void testSizeHintsBySchema() {
+    CatalogSchema s1 = new CatalogSchema(null, "S1");
+    CatalogSchema s2 = new CatalogSchema(null, "S2");
+    MetadataStub stub = new MetadataStub("PUBLIC").schema("S1").table("T", "ID").schema("S2").table("T", "ID");
+
+    Table<CatalogSchema, String, Long> sizes = HashBasedTable.create();
+    sizes.put(s1, "T", 1L);
+    sizes.put(s2, "T", 9L);
+
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 1)) {
+      builder.setTableSizeHints(sizes);
+      builder.createRelationalDatabases(Arrays.asList(s1, s2));
+    }
+
+    List<String> columnReads = new ArrayList<>();
+    for (String call : stub.getCalls()) {
+      if (call.startsWith("getColumns:")) {
+        columnReads.add(call);
+      }
+    }
+    assertEquals(Arrays.asList("getColumns:S2.T", "getColumns:S1.T"), columnReads);
+  }
+
+  /**
+   * Subclasses overriding the pattern-less getTables() query still see unfiltered reads.
+   */
+  public void testGetTablesOverride() {
+    final List<CatalogSchema> listed = new ArrayList<>();
+    MetadataStub stub = new MetadataStub("PUBLIC").table("A", "ID").table("B", "ID");
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 1) {
+      @Override
+      protected ResultSet doGetTablesQuery(CatalogSchema catalogSchema, String[] tableTypes) throws SQLException {
+        listed.add(catalogSchema);
+        return super.doGetTablesQuery(catalogSchema, tableTypes);
+      }
+    }) {
+      assertEquals(2, builder.createRelationalDatabase(STUB_SCHEMA).getTables().size());
+      assertEquals(Arrays.asList(STUB_SCHEMA), listed);
+
+      TableFilter filter = new TableFilter();
+      filter.addIncludedName("A");
+      assertEquals(1, builder.createRelationalDatabase(STUB_SCHEMA, filter).getTables().size());
+      assertEquals("a name pattern bypasses the override", 1, listed.size());
+    }
+  }
+
+  /**
+   * Tables with larger size hints are scheduled first; tables without a hint go last, in their original order.
+   */
+  public void testSizeHintOrder() {
+    MetadataStub stub = new MetadataStub("PUBLIC").table("A", "ID").table("B", "ID").table("C", "ID").table("D", "ID");
+
+    Table<CatalogSchema, String, Long> sizes = HashBasedTable.create();
+    sizes.put(STUB_SCHEMA, "B", 2L);
+    sizes.put(STUB_SCHEMA, "D", 7L);
+    sizes.put(new CatalogSchema(null, "OTHER"), "A", 9L);
+
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 1)) {
+      builder.setTableSizeHints(sizes);
+      builder.createRelationalDatabase(STUB_SCHEMA);
+    }
+
+    List<String> columnReads = new ArrayList<>();
+    for (String call : stub.getCalls()) {
+      if (call.startsWith("getColumns:")) {
+        columnReads.add(call);
+      }
+    }
+    assertEquals(Arrays.asList("getColumns:D", "getColumns:B", "getColumns:A", "getColumns:C"), columnReads);
+  }
+
+  /**
+   * A restricted read profile skips the metadata calls of the left out categories, and a diff engine with the same profile
+   * doesn't report the missing metadata.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseWithReadProfile() throws Exception {
+    try (final MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:testProfile;DB_CLOSE_DELAY=-1", "sa", "")) {
+      RelationalDatabase full = getDatabase(factory, false);
+
+      final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+      MetadataFactory recordingFactory = new MetadataFactory() {
+        @Override
+        public DatabaseMetaData getMetadata() {
+          final DatabaseMetaData metadata = factory.getMetadata();
+          return (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+                                                           new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+              calls.add(method.getName());
+              try {
+                return method.invoke(metadata, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            }
+          });
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+
+      ReadProfile readProfile = ReadProfile.of(MetadataCategory.COLUMNS, MetadataCategory.PRIMARY_KEYS);
+      RelationalDatabase partial;
+      try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(recordingFactory, 4)) {
+        builder.setReadProfile(readProfile);
+        partial = builder.createRelationalDatabase(new CatalogSchema(null, "PUBLIC"));
+      }
+
+      assertTrue(calls.contains("getColumns"));
+      assertTrue(calls.contains("getPrimaryKeys"));
+      assertFalse("indices were read", calls.contains("getIndexInfo"));
+      assertFalse("foreign keys were read", calls.contains("getImportedKeys"));
+
+      RelationalTable relatives = partial.getTableByName("PERSON_RELATIVES");
+      assertEquals(Arrays.asList("PERSON_ID", "RELATIVE_ID"), relatives.getPkColumns());
+      assertTrue(relatives.getFks().isEmpty());
+      assertTrue(relatives.getIndices().isEmpty());
+
+      List<RdbCompareError> errors = new RdbDiffEngine().compareRelationalDatabase(full, partial);
+      boolean missingIndex = false;
+      boolean missingFk = false;
+      for (RdbCompareError error : errors) {
+        missingIndex |= error.getErrorType() == RdbCompareErrorType.MISSING_INDEX;
+        missingFk |= error.getErrorType() == RdbCompareErrorType.MISSING_FK;
+      }
+      assertTrue("a full comparison should report the missing indices: " + errors, missingIndex);
+      assertTrue("a full comparison should report the missing foreign keys: " + errors, missingFk);
+
+      errors = new RdbDiffEngine(readProfile).compareRelationalDatabase(full, partial);
+      assertTrue("unexpected differences: " + errors, errors.isEmpty());
+    }
+  }
+
+  /**
+   * Test {@link RelationalDatabaseBuilderImpl#readRelationalTables(CatalogSchema, RelationalTableListener)}.
+   * @throws Exception
+   */
+  public void testReadRelationalTables() throws Exception {
+    try (MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:testStreaming;DB_CLOSE_DELAY=-1", "sa", "")) {
+      getDatabase(factory, false);
+
+      final List<RelationalTable> tables = Collections.synchronizedList(new ArrayList<RelationalTable>());
+      try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory, 4)) {
+        builder.readRelationalTables(new CatalogSchema(null, "PUBLIC"), new RelationalTableListener() {
+          @Override
+          public void tableRead(RelationalTable table) {
+            assertNotNull("indices not built for " + table.getName(), table.getIndices());
+            tables.add(table);
+          }
+        });
+      }
+
+      verifyDatabase(new RelationalDatabase(tables));
+    }
+  }
+
+  /**
+   * Test {@link RelationalDatabaseBuilderImpl#createRelationalDatabase(CatalogSchema, TableFilter)}.
+   * @throws Exception
+   */
+  public void testCreateRelationalDatabaseWithFilter() throws Exception {
+    try (MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:testFilter;DB_CLOSE_DELAY=-1", "sa", "")) {
+      getDatabase(factory, false);
+
+      try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory, 4)) {
+        TableFilter filter = new TableFilter();
+        filter.addIncludedGlob("PERSON*");
+        filter.addExcludedName("PERSON_RELATIVES");
+
+        RelationalDatabase database = builder.createRelationalDatabase(new CatalogSchema(null, "PUBLIC"), filter);
+        assertEquals("wrong number of tables", 1, database.getTables().size());
+        assertNotNull("table PERSON not found", database.getTableByName("PERSON"));
+      }
+    }
+  }
+
+  private static final CatalogSchema STUB_SCHEMA = new CatalogSchema(null, "PUBLIC");
+
+  /**
+   * Read a simulated schema in bulk mode.
+   * @param stub the simulated schema.
+   * @return the tables by name.
+   */
+  private RelationalDatabase readInBulk(MetadataStub stub) {
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 2)) {
+      builder.setBulkRead(true);
+      return builder.createRelationalDatabase(STUB_SCHEMA);
+    }
+  }
+
+  /**
+   * A successful bulk read that comes back empty (a schema without foreign keys) doesn't fall back to per-table calls.
+   */
+  public void testBulkReadEmptyResult() {
+    MetadataStub stub = new MetadataStub("PUBLIC").table("A", "ID").table("B", "ID", "A_ID");
+    RelationalDatabase database = readInBulk(stub);
+
+    assertTrue(database.getTableByName("B").getFks().isEmpty());
+    assertEquals(Arrays.asList("getTables:*", "getColumns:*", "getImportedKeys:*", "getPrimaryKeys:*", "getIndexInfo:*"),
+                 stub.getCalls());
+  }
+
+  /**
+   * A bulk read the driver doesn't support falls back to per-table calls.
+   */
+  public void testBulkReadUnsupported() {
+    for (final SQLException unsupported : Arrays.asList(new SQLFeatureNotSupportedException("table name required"),
+                                                         new SQLException("feature not supported", "0A000"),
+                                                         new SQLException("optional feature not implemented", "HYC00"),
+                                                         new SQLException("optional feature not implemented", "S1C00"))) {
+      MetadataStub stub = new MetadataStub("PUBLIC") {
+        @Override
+        protected void beforeCall(String method, String table) throws SQLException {
+          if ("getImportedKeys".equals(method) && table == null) {
+            throw unsupported;
+          }
+        }
+      }.table("A", "ID").table("B", "ID", "A_ID");
+      readInBulk(stub);
+
+      List<String> calls = stub.getCalls();
+      assertTrue(unsupported.getMessage(), calls.contains("getImportedKeys:A"));
+      assertTrue(unsupported.getMessage(), calls.contains("getImportedKeys:B"));
+      assertFalse(unsupported.getMessage(), calls.contains("getColumns:A"));
+    }
+  }
+
+  /**
+   * Other failures of a bulk read are thrown, including the generic CLI/ODBC errors and timeouts.
+   */
+  public void testBulkReadFailure() {
+    for (final String sqlState : Arrays.asList("08S01", "HY000", "S1000", "S1T00")) {
+      MetadataStub stub = new MetadataStub("PUBLIC") {
+        @Override
+        protected void beforeCall(String method, String table) throws SQLException {
+          if ("getImportedKeys".equals(method)) {
+            throw new SQLException("connection reset", sqlState);
+          }
+        }
+      }.table("A", "ID");
+
+      try {
+        readInBulk(stub);
+        fail("a " + sqlState + " failure should be thrown");
+      } catch (RelationalDatabaseReadException e) {
+        assertEquals(sqlState, ((SQLException) e.getCause()).getSQLState());
+      }
+      assertFalse(sqlState, stub.getCalls().contains("getImportedKeys:A"));
+    }
+  }
+
+  /**
+   * Runs tasks in the submitting thread, so that all of them have completed by the time their results are consumed.
+   */
+  private static class DirectExecutorService extends AbstractExecutorService {
+    private volatile boolean m_shutdown;
+
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override
+    public void shutdown() {
+      m_shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      m_shutdown = true;
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return m_shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return m_shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return m_shutdown;
+    }
+  }
+
+  /**
+   * A simulated schema whose per-table reads block until they're interrupted. The column read of the failing table fails
+   * once another read is blocked.
+   */
+  private static class BlockingMetadataStub extends MetadataStub {
+    private final CountDownLatch m_blocked = new CountDownLatch(1);
+    private final CountDownLatch m_interrupted = new CountDownLatch(1);
+    private final String m_failingTable;
+
+    /**
+     * @param failingTable the table whose columns can't be read, or null.
+     */
+    BlockingMetadataStub(String failingTable) {
+      super("PUBLIC");
+      m_failingTable = failingTable;
+    }
+
+    @Override
+    protected void beforeCall(String method, String table) throws SQLException {
+      if (table == null) {
+        return;
+      }
+      try {
+        if (table.equals(m_failingTable) && "getColumns".equals(method)) {
+          m_blocked.await(5, TimeUnit.SECONDS);
+          throw new SQLException("cannot read " + table);
+        }
+        m_blocked.countDown();
+        new CountDownLatch(1).await();
+      } catch (InterruptedException e) {
+        m_interrupted.countDown();
+        throw new SQLException("interrupted", e);
+      }
+    }
+
+    /**
+     * @return whether a blocked read was interrupted within a few seconds.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitInterrupted() throws InterruptedException {
+      return m_interrupted.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * The first failing table read is thrown right away, and the outstanding reads are cancelled.
+   * @throws Exception
+   */
+  public void testFirstFailureCancelsOtherReads() throws Exception {
+    BlockingMetadataStub stub = new BlockingMetadataStub("A");
+    stub.table("A", "ID").table("B", "ID").table("C", "ID").table("D", "ID");
+
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 2)) {
+      builder.createRelationalDatabase(STUB_SCHEMA);
+      fail("the failed read should be thrown");
+    } catch (RelationalDatabaseReadException e) {
+      assertEquals("cannot read A", e.getCause().getMessage());
+      assertEquals(0, e.getSuppressed().length);
+    }
+
+    assertTrue("blocked reads weren't interrupted", stub.awaitInterrupted());
+    for (String call : stub.getCalls()) {
+      assertFalse("pending read of D wasn't cancelled: " + call, call.endsWith(":D"));
+    }
+  }
+
+  /**
+   * Reads that don't finish before the deadline are cancelled.
+   * @throws Exception
+   */
+  public void testTimeout() throws Exception {
+    BlockingMetadataStub stub = new BlockingMetadataStub(null);
+    stub.table("A", "ID").table("B", "ID");
+
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 2)) {
+      builder.setTimeout(50, TimeUnit.MILLISECONDS);
+      builder.createRelationalDatabase(STUB_SCHEMA);
+      fail("the deadline should have passed");
+    } catch (RelationalDatabaseReadException e) {
+      assertEquals("schema information was not read within 50 ms", e.getMessage());
+    }
+
+    assertTrue("blocked reads weren't interrupted", stub.awaitInterrupted());
+  }
+
+  /**
+   * Read a simulated schema in which the columns of tables A and B can't be read, with every read completed before the
+   * failures are examined.
+   * @param suppressOtherFailures whether to attach the other failures.
+   * @return the thrown exception.
+   */
+  private RelationalDatabaseReadException readFailingTables(boolean suppressOtherFailures) {
+    MetadataStub stub = new MetadataStub("PUBLIC") {
+      @Override
+      protected void beforeCall(String method, String table) throws SQLException {
+        if ("getColumns".equals(method) && table != null && !"C".equals(table)) {
+          throw new SQLException("cannot read " + table);
+        }
+      }
+    }.table("A", "ID").table("B", "ID").table("C", "ID");
+
+    ExecutorService executor = new DirectExecutorService();
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, executor)) {
+      builder.setSuppressOtherFailures(suppressOtherFailures);
+      builder.createRelationalDatabase(STUB_SCHEMA);
+      fail("the failed read should be thrown");
+      return null;
+    } catch (RelationalDatabaseReadException e) {
+      assertEquals("cannot read A", e.getCause().getMessage());
+      return e;
+    }
+  }
+
+  /**
+   * The failures of other table reads are only attached when {@link RelationalDatabaseBuilderImpl#setSuppressOtherFailures}
+   * is enabled.
+   */
+  public void testSuppressOtherFailures() {
+    assertEquals(0, readFailingTables(false).getSuppressed().length);
+
+    Throwable[] suppressed = readFailingTables(true).getSuppressed();
+    assertEquals(1, suppressed.length);
+    assertEquals("cannot read B", suppressed[0].getMessage());
+  }
+
+  /**
+   * Verify the model built from test-db.sql.
+   */
+  private void verifyDatabase(RelationalDatabase database) {
 
     assertEquals("wrong number of tables", 2, database.getTables().size());
 
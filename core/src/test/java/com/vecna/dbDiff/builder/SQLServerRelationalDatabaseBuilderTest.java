@@ -0,0 +1,128 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.builder;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.builder.CatalogQueryRelationalDatabaseBuilder.CatalogQuery;
+import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link SQLServerRelationalDatabaseBuilder} against recorded sys.* catalog rows.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SQLServerRelationalDatabaseBuilderTest extends TestCase {
+  private static final CatalogSchema DBO = new CatalogSchema("shop", "dbo");
+
+  private RelationalDatabase getDatabase() throws Exception {
+    final CatalogReplay replay = new CatalogReplay("/sqlserver-catalog-replay.txt");
+
+    SQLServerRelationalDatabaseBuilder builder = new SQLServerRelationalDatabaseBuilder(new ThreadLocalMetadataFactory(null, null, null)) {
+      @Override
+      protected void query(CatalogQuery query, CatalogSchema catalogSchema, RowHandler handler) throws SQLException {
+        replay.replay(query, handler);
+      }
+    };
+
+    return builder.createRelationalDatabase(DBO);
+  }
+
+  /**
+   * Column types are resolved through the declared type of the column, so CLR and alias types aren't dropped.
+   * @throws Exception
+   */
+  public void testColumnTypes() throws Exception {
+    String sql = new SQLServerRelationalDatabaseBuilder(null).getSql(CatalogQuery.COLUMNS);
+    assertTrue(sql.contains("LEFT JOIN sys.types ty ON ty.user_type_id = c.user_type_id"));
+    assertTrue(sql.contains("LEFT JOIN sys.types bt ON bt.user_type_id = c.system_type_id"));
+
+    RelationalTable customer = getDatabase().getTableByName("customer");
+    assertEquals(DBO, customer.getCatalogSchema());
+    assertEquals(Arrays.asList("id", "location", "email", "code"), customer.getColumnNames());
+
+    Column id = customer.getColumnByName("id");
+    assertEquals(Types.INTEGER, id.getType());
+    assertEquals("int identity", id.getTypeName());
+    assertEquals(Boolean.FALSE, id.getIsNullable());
+
+    Column location = customer.getColumnByName("location");
+    assertEquals(Types.OTHER, location.getType());
+    assertEquals("geography", location.getTypeName());
+    assertEquals(Boolean.TRUE, location.getIsNullable());
+
+    Column email = customer.getColumnByName("email");
+    assertEquals(Types.VARCHAR, email.getType());
+    assertEquals(Integer.valueOf(100), email.getColumnSize());
+
+    Column code = customer.getColumnByName("code");
+    assertEquals(Types.VARCHAR, code.getType());
+    assertEquals("code_t", code.getTypeName());
+    assertEquals(Integer.valueOf(10), code.getColumnSize());
+    assertEquals("('X')", code.getDefault());
+    assertEquals(Integer.valueOf(4), code.getOrdinal());
+  }
+
+  /**
+   * Composite primary and foreign keys and unique indices.
+   * @throws Exception
+   */
+  public void testKeysAndIndices() throws Exception {
+    RelationalDatabase database = getDatabase();
+    assertEquals(3, database.getTables().size());
+
+    RelationalTable orders = database.getTableByName("orders");
+    assertEquals(Arrays.asList("customer_id", "order_no"), orders.getPkColumns());
+    assertEquals("(getdate())", orders.getColumnByName("placed").getDefault());
+
+    RelationalTable orderLine = database.getTableByName("order_line");
+    assertEquals(Arrays.asList("customer_id", "order_no", "line_no"), orderLine.getPkColumns());
+
+    Set<ForeignKey> lineOrder = orderLine.getFksByName("fk_line_order");
+    assertEquals(2, lineOrder.size());
+    for (ForeignKey fk : lineOrder) {
+      assertEquals("orders", fk.getPkTable());
+      assertEquals(fk.getFkColumn(), fk.getPkColumn());
+      assertEquals("customer_id".equals(fk.getFkColumn()) ? "1" : "2", fk.getKeySeq());
+      assertEquals(DBO, fk.getPkCatalogSchema());
+    }
+    assertEquals(1, orders.getFksByName("fk_orders_customer").size());
+
+    Collection<RelationalIndex> pk = orderLine.getIndicesByColumns().get(Arrays.asList("customer_id", "order_no", "line_no"));
+    assertEquals(1, pk.size());
+    assertEquals("PK__order_line", pk.iterator().next().getName());
+
+    RelationalTable customer = database.getTableByName("customer");
+    assertEquals(2, customer.getIndices().size());
+    Collection<RelationalIndex> unique = customer.getIndicesByColumns().get(Arrays.asList("email"));
+    assertEquals(1, unique.size());
+    assertEquals("uq_customer_email", unique.iterator().next().getName());
+  }
+}
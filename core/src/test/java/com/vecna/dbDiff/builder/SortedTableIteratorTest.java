@@ -0,0 +1,134 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link SortedTableIterator} with a simulated database.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SortedTableIteratorTest extends TestCase {
+  private static final CatalogSchema CATALOG_SCHEMA = CatalogSchema.defaultCatalogSchema();
+
+  /**
+   * Tables come out in name order, a batch at a time, skipping tables that no longer exist.
+   */
+  public void testBatches() {
+    final List<String> existing = Arrays.asList("c", "a", "e", "b", "d");
+    final List<List<String>> reads = new ArrayList<>();
+
+    FilteringRelationalDatabaseBuilder builder = new FilteringRelationalDatabaseBuilder() {
+      @Override
+      public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) {
+        return createRelationalDatabase(catalogSchema, new TableFilter());
+      }
+
+      @Override
+      public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter) {
+        List<RelationalTable> tables = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String name : existing) {
+          if (filter.accept(name)) {
+            tables.add(new RelationalTable(catalogSchema, name));
+            names.add(name);
+          }
+        }
+        Collections.sort(names);
+        reads.add(names);
+        return new RelationalDatabase(tables);
+      }
+    };
+
+    SortedTableIterator iterator = new SortedTableIterator(builder, CATALOG_SCHEMA,
+                                                           Arrays.asList("e", "dropped", "a", "c", "b", "d"), 2);
+    List<String> names = new ArrayList<>();
+    while (iterator.hasNext()) {
+      names.add(iterator.next().getName());
+    }
+
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"), names);
+    assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e")), reads);
+  }
+
+  /**
+   * @param stub the database.
+   * @param tableNameLookup whether to look up the tables by name.
+   * @return the names of the tables read in batches of two, in bulk mode.
+   */
+  private static List<String> readInBatches(MetadataStub stub, boolean tableNameLookup) {
+    List<String> names = new ArrayList<>();
+    try (RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(stub, 1)) {
+      builder.setBulkRead(true);
+      builder.setTableNameLookup(tableNameLookup);
+      SortedTableIterator iterator = new SortedTableIterator(builder, new CatalogSchema(null, "PUBLIC"),
+                                                             Arrays.asList("E", "DROPPED", "A", "C", "B", "D"), 2);
+      while (iterator.hasNext()) {
+        names.add(iterator.next().getName());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * In bulk mode, every batch lists and bulk reads the schema with five calls and keeps the tables of the batch.
+   */
+  public void testBulkReadPerBatch() {
+    MetadataStub stub = new MetadataStub("PUBLIC").table("A", "ID").table("B", "ID").table("C", "ID").table("D", "ID")
+        .table("E", "ID").table("OTHER1", "ID").table("OTHER2", "ID");
+
+    assertEquals(Arrays.asList("A", "B", "C", "D", "E"), readInBatches(stub, false));
+    for (String call : stub.getCalls()) {
+      assertTrue("a batch didn't read in bulk: " + call, call.endsWith(":*"));
+    }
+    assertEquals("five bulk calls per batch", 3 * 5, stub.getCalls().size());
+  }
+
+  /**
+   * With table name lookups, a batch looks up its own tables instead of listing (or bulk reading) the whole schema, so
+   * the number of metadata calls grows with the number of tables read rather than with the number of batches times the
+   * size of the schema.
+   */
+  public void testMetadataCallsPerBatch() {
+    MetadataStub stub = new MetadataStub("PUBLIC").table("A", "ID").table("B", "ID").table("C", "ID").table("D", "ID")
+        .table("E", "ID").table("OTHER1", "ID").table("OTHER2", "ID");
+
+    assertEquals(Arrays.asList("A", "B", "C", "D", "E"), readInBatches(stub, true));
+
+    List<String> listings = new ArrayList<>();
+    for (String call : stub.getCalls()) {
+      assertFalse("a batch read the whole schema: " + call, call.endsWith(":*"));
+      if (call.startsWith("getTables:")) {
+        listings.add(call);
+      }
+    }
+    assertEquals(Arrays.asList("getTables:A", "getTables:B", "getTables:C", "getTables:D", "getTables:DROPPED",
+                               "getTables:E"), listings);
+    assertEquals("one lookup per name and four reads per table", 6 + 5 * 4, stub.getCalls().size());
+  }
+}
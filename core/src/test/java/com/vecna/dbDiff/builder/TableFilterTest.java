@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.builder;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link TableFilter}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class TableFilterTest extends TestCase {
+  /**
+   * Test {@link TableFilter#accept(String)}.
+   */
+  public void testAccept() {
+    TableFilter filter = new TableFilter();
+    assertTrue("an empty filter should accept everything", filter.accept("person"));
+
+    filter.addIncludedGlob("person*");
+    filter.addIncludedRegex("audit_[0-9]+");
+    filter.addIncludedName("address");
+    filter.addExcludedGlob("*_old");
+    filter.addExcludedName("person_tmp");
+
+    assertTrue(filter.accept("person"));
+    assertTrue(filter.accept("person_relatives"));
+    assertTrue(filter.accept("audit_2014"));
+    assertTrue(filter.accept("address"));
+
+    assertFalse("not included", filter.accept("audit_log"));
+    assertFalse("not included", filter.accept("addresses"));
+    assertFalse("excluded by glob", filter.accept("person_old"));
+    assertFalse("excluded by name", filter.accept("person_tmp"));
+    assertFalse("matching is case-sensitive", filter.accept("PERSON"));
+  }
+
+  /**
+   * Test {@link TableFilter#getTableNamePattern(String)}.
+   */
+  public void testGetTableNamePattern() {
+    TableFilter filter = new TableFilter();
+    assertNull("nothing to push down", filter.getTableNamePattern("\\"));
+
+    filter.addIncludedGlob("person_?x*");
+    assertEquals("person\\__x%", filter.getTableNamePattern("\\"));
+    assertEquals("person__x%", filter.getTableNamePattern(""));
+
+    filter.addExcludedName("person_old");
+    assertEquals("excludes are applied afterwards", "person\\__x%", filter.getTableNamePattern("\\"));
+
+    filter.addIncludedName("address");
+    assertNull("multiple includes can't be pushed down", filter.getTableNamePattern("\\"));
+
+    filter = new TableFilter();
+    filter.addIncludedName("100%_done");
+    assertEquals("100\\%\\_done", filter.getTableNamePattern("\\"));
+
+    filter = new TableFilter();
+    filter.addIncludedRegex("person.*");
+    assertNull("regular expressions can't be pushed down", filter.getTableNamePattern("\\"));
+  }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.business.fingerprint.SchemaFingerprinter;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link RdbDiffEngine}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class RdbDiffEngineTest extends TestCase {
+  private static final CatalogSchema CATALOG_SCHEMA = CatalogSchema.defaultCatalogSchema();
+
+  private static RelationalTable createTable(String name, int columnCount, boolean nullable) throws Exception {
+    RelationalTable table = new RelationalTable(CATALOG_SCHEMA, name);
+    List<Column> columns = new ArrayList<>();
+    for (int i = 1; i <= columnCount; i++) {
+      Column column = new Column(CATALOG_SCHEMA, "col" + i, name);
+      column.setColumnType(new ColumnType(Types.INTEGER, "int4"));
+      column.setOrdinal(i);
+      column.setIsNullable(nullable);
+      columns.add(column);
+    }
+    table.setColumns(columns);
+    table.setPkColumns(Arrays.asList("col1"));
+    table.setFks(new HashSet<ForeignKey>());
+    table.setIndices(Collections.<RelationalIndex>emptyList());
+    return table;
+  }
+
+  /**
+   * Create a reference and a test database that differ in most tables.
+   * @return reference and test database.
+   * @throws Exception
+   */
+  static RelationalDatabase[] createDrifted() throws Exception {
+    List<RelationalTable> refTables = new ArrayList<>();
+    List<RelationalTable> testTables = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      refTables.add(createTable("table" + i, 3, true));
+      if (i % 10 != 0) {
+        testTables.add(createTable("table" + i, 3 + i % 3, i % 2 == 0));
+      }
+    }
+    testTables.add(createTable("extra", 1, true));
+    return new RelationalDatabase[] {new RelationalDatabase(refTables), new RelationalDatabase(testTables)};
+  }
+
+  /**
+   * @param errors differences.
+   * @return the messages of the differences.
+   */
+  static List<String> getMessages(List<RdbCompareError> errors) {
+    List<String> messages = new ArrayList<>();
+    for (RdbCompareError error : errors) {
+      messages.add(error.getErrorType() + ": " + error.getMessage());
+    }
+    return messages;
+  }
+
+  /**
+   * Comparing tables in parallel gives the same differences in the same order.
+   * @throws Exception
+   */
+  public void testParallel() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    List<RdbCompareError> serial = new RdbDiffEngine().compareRelationalDatabase(dbs[0], dbs[1]);
+    assertFalse(serial.isEmpty());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      RdbDiffEngine engine = new RdbDiffEngine();
+      engine.setExecutor(executor);
+      assertEquals(getMessages(serial), getMessages(engine.compareRelationalDatabase(dbs[0], dbs[1])));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * A limiting sink stops the comparison after the given number of differences.
+   * @throws Exception
+   */
+  public void testLimitingSink() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    List<RdbCompareError> all = new RdbDiffEngine().compareRelationalDatabase(dbs[0], dbs[1]);
+
+    LimitingErrorSink first = new LimitingErrorSink(1);
+    new RdbDiffEngine().compareRelationalDatabase(dbs[0], dbs[1], first);
+    assertFalse(first.shouldContinue());
+    assertEquals(getMessages(all.subList(0, 1)), getMessages(((CollectingErrorSink) first.getDelegate()).getErrors()));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      RdbDiffEngine engine = new RdbDiffEngine();
+      engine.setExecutor(executor);
+      CollectingErrorSink collected = new CollectingErrorSink();
+      engine.compareRelationalDatabase(dbs[0], dbs[1], new LimitingErrorSink(collected, 10));
+      assertEquals(getMessages(all.subList(0, 10)), getMessages(collected.getErrors()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Differences carry their table, name, expected and actual values and render the same messages as before.
+   * @throws Exception
+   */
+  public void testStructuredErrors() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    List<RdbCompareError> errors = new RdbDiffEngine().compareRelationalDatabase(dbs[0], dbs[1]);
+
+    RdbCompareError missingTable = null;
+    RdbCompareError nullability = null;
+    RdbCompareError unexpectedColumn = null;
+    RdbCompareError unexpectedTable = null;
+    for (RdbCompareError error : errors) {
+      if (missingTable == null && error.getErrorType() == RdbCompareErrorType.MISSING_TABLE) {
+        missingTable = error;
+      } else if (nullability == null && error.getErrorType() == RdbCompareErrorType.COL_NULLABLE_MISMATCH) {
+        nullability = error;
+      } else if (unexpectedColumn == null && error.getErrorType() == RdbCompareErrorType.UNEXPECTED_COLUMN) {
+        unexpectedColumn = error;
+      } else if (error.getErrorType() == RdbCompareErrorType.UNEXPECTED_TABLE) {
+        unexpectedTable = error;
+      }
+    }
+
+    assertEquals("table0", missingTable.getTable());
+    assertEquals("Reference Table 'table0' is missing", missingTable.getMessage());
+
+    assertEquals("table1", nullability.getTable());
+    assertEquals("col1", nullability.getName());
+    assertEquals(Boolean.TRUE, nullability.getExpected());
+    assertEquals(Boolean.FALSE, nullability.getActual());
+    assertEquals("Test column 'table1.col1' has wrong nullability.  Expected 'true' but got 'false'",
+                 nullability.getMessage());
+
+    assertEquals("table1", unexpectedColumn.getTable());
+    assertEquals("col4", unexpectedColumn.getName());
+    assertEquals("Column 'table1.col4' is unexpected", unexpectedColumn.getMessage());
+
+    assertEquals("extra", unexpectedTable.getTable());
+    assertNull(unexpectedTable.getName());
+    assertEquals("Test table 'extra' is not in expected db", unexpectedTable.getMessage());
+  }
+
+  /**
+   * The values of a difference are copied, so changes to the compared tables don't show up in it.
+   * @throws Exception
+   */
+  public void testValuesAreSnapshots() throws Exception {
+    RelationalTable ref = createTable("t", 2, true);
+    List<String> refPkColumns = new ArrayList<>(Arrays.asList("col1"));
+    ref.setPkColumns(refPkColumns);
+    RelationalTable test = createTable("t", 2, true);
+    test.setPkColumns(Arrays.asList("col2"));
+
+    List<RdbCompareError> errors = new RdbDiffEngine().compareRelationalDatabase(
+        new RelationalDatabase(Arrays.asList(ref)), new RelationalDatabase(Arrays.asList(test)));
+    assertEquals(1, errors.size());
+    RdbCompareError error = errors.get(0);
+    assertEquals(RdbCompareErrorType.MISCONFIGURED_PRIMARY_KEY, error.getErrorType());
+
+    refPkColumns.add("col2");
+    assertEquals(Arrays.asList("col1"), error.getExpected());
+    assertEquals("Test primary key t[col2] differs from reference primary key t[col1]", error.getMessage());
+
+    try {
+      ((List<?>) error.getExpected()).clear();
+      fail("the values of a difference can't be modified");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  /**
+   * @param table a table.
+   * @param names index names, null for an index with an unknown name.
+   * @return indices on the first column of the table.
+   */
+  private static List<RelationalIndex> createIndices(RelationalTable table, String... names) {
+    List<RelationalIndex> indices = new ArrayList<>();
+    for (String name : names) {
+      RelationalIndex index = new RelationalIndex(CATALOG_SCHEMA, name);
+      index.setColumns(Arrays.asList(table.getColumnByName("col1")));
+      indices.add(index);
+    }
+    return indices;
+  }
+
+  /**
+   * Named indices that unnamed indices on the other side can't all account for are reported together.
+   * @throws Exception
+   */
+  public void testUnnamedIndices() throws Exception {
+    RelationalTable ref = createTable("t", 1, true);
+    ref.setIndices(createIndices(ref, new String[] {null}));
+    RelationalTable test = createTable("t", 1, true);
+    test.setIndices(createIndices(test, "a", "b"));
+
+    List<RdbCompareError> errors = new RdbDiffEngine().compareRelationalDatabase(
+        new RelationalDatabase(Arrays.asList(ref)), new RelationalDatabase(Arrays.asList(test)));
+    assertEquals(1, errors.size());
+    RdbCompareError unexpected = errors.get(0);
+    assertEquals(RdbCompareErrorType.UNEXPECTED_INDEX, unexpected.getErrorType());
+    assertEquals("t", unexpected.getTable());
+    assertNull(unexpected.getName());
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), unexpected.getActual());
+    assertEquals(Arrays.asList(Arrays.asList("col1")), unexpected.getExpected());
+    assertEquals("At least 1 of test indices \"a=t(col1)\", \"b=t(col1)\" are unexpected!", unexpected.getMessage());
+
+    errors = new RdbDiffEngine().compareRelationalDatabase(new RelationalDatabase(Arrays.asList(test)),
+                                                           new RelationalDatabase(Arrays.asList(ref)));
+    assertEquals(1, errors.size());
+    RdbCompareError missing = errors.get(0);
+    assertEquals(RdbCompareErrorType.MISSING_INDEX, missing.getErrorType());
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), missing.getExpected());
+    assertEquals("At least 1 of reference indices \"a=t(col1)\", \"b=t(col1)\" are missing!", missing.getMessage());
+  }
+
+  /**
+   * @param database a database.
+   * @return its tables sorted by name.
+   */
+  private static List<RelationalTable> sortByName(RelationalDatabase database) {
+    List<RelationalTable> tables = new ArrayList<>(database.getTables());
+    Collections.sort(tables, new Comparator<RelationalTable>() {
+      @Override
+      public int compare(RelationalTable t1, RelationalTable t2) {
+        return t1.getName().compareTo(t2.getName());
+      }
+    });
+    return tables;
+  }
+
+  /**
+   * A merge join of name-ordered tables finds the same differences, ordered by table name.
+   * @throws Exception
+   */
+  public void testSortedTables() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    List<String> expected = getMessages(new RdbDiffEngine().compareRelationalDatabase(dbs[0], dbs[1]));
+
+    List<RdbCompareError> merged = new RdbDiffEngine().compareSortedTables(sortByName(dbs[0]).iterator(),
+                                                                           sortByName(dbs[1]).iterator());
+    assertEquals("Test table 'extra' is not in expected db", merged.get(0).getMessage());
+    assertEquals("Reference Table 'table0' is missing", merged.get(1).getMessage());
+
+    List<String> actual = getMessages(merged);
+    Collections.sort(expected);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+
+    try {
+      new RdbDiffEngine().compareSortedTables(dbs[0].getTables().iterator(), dbs[1].getTables().iterator());
+      fail("tables aren't sorted by name");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * An incremental comparison only compares the changed tables and finds the same differences as a full one.
+   * @throws Exception
+   */
+  public void testIncremental() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    RdbDiffEngine engine = new RdbDiffEngine();
+    RdbDiffResult first = engine.compareRelationalDatabase(dbs[0], dbs[1], null, Collections.<String>emptySet());
+    assertEquals(getMessages(engine.compareRelationalDatabase(dbs[0], dbs[1])), getMessages(first.getErrors()));
+    assertEquals(45, first.getComparedTableCount());
+
+    List<RelationalTable> testTables = new ArrayList<>();
+    for (RelationalTable table : dbs[1].getTables()) {
+      if (table.getName().equals("table3")) {
+        testTables.add(createTable("table3", 2, true));
+      } else if (!table.getName().equals("table4")) {
+        testTables.add(table);
+      }
+    }
+    RelationalDatabase testDb = new RelationalDatabase(testTables);
+
+    RdbDiffResult second = engine.compareRelationalDatabase(dbs[0], testDb, first,
+                                                            new HashSet<>(Arrays.asList("table3", "table4")));
+    assertEquals(getMessages(engine.compareRelationalDatabase(dbs[0], testDb)), getMessages(second.getErrors()));
+    assertEquals(1, second.getComparedTableCount());
+
+    // with fingerprints, tables that changed without being reported are compared too
+    RdbDiffEngine fingerprinting = new RdbDiffEngine();
+    fingerprinting.setFingerprinter(new SchemaFingerprinter());
+    RdbDiffResult withFingerprints = fingerprinting.compareRelationalDatabase(dbs[0], dbs[1], null,
+                                                                              Collections.<String>emptySet());
+    RdbDiffResult unreported = fingerprinting.compareRelationalDatabase(dbs[0], testDb, withFingerprints,
+                                                                        Collections.<String>emptySet());
+    assertEquals(getMessages(engine.compareRelationalDatabase(dbs[0], testDb)), getMessages(unreported.getErrors()));
+    assertEquals(1, unreported.getComparedTableCount());
+  }
+
+  /**
+   * Changed table names are matched regardless of case, and unknown changes make every table be compared again.
+   * @throws Exception
+   */
+  public void testIncrementalChangedTableNames() throws Exception {
+    RelationalDatabase[] dbs = createDrifted();
+    RdbDiffEngine engine = new RdbDiffEngine();
+    RdbDiffResult first = engine.compareRelationalDatabase(dbs[0], dbs[1], null, Collections.<String>emptySet());
+
+    List<RelationalTable> testTables = new ArrayList<>();
+    for (RelationalTable table : dbs[1].getTables()) {
+      testTables.add(table.getName().equals("table3") ? createTable("table3", 2, true) : table);
+    }
+    RelationalDatabase testDb = new RelationalDatabase(testTables);
+    List<String> expected = getMessages(engine.compareRelationalDatabase(dbs[0], testDb));
+
+    RdbDiffResult upperCase = engine.compareRelationalDatabase(dbs[0], testDb, first,
+                                                               new HashSet<>(Arrays.asList("TABLE3")));
+    assertEquals(expected, getMessages(upperCase.getErrors()));
+    assertEquals(1, upperCase.getComparedTableCount());
+
+    RdbDiffResult unknown = engine.compareRelationalDatabase(dbs[0], testDb, first, null);
+    assertEquals(expected, getMessages(unknown.getErrors()));
+    assertEquals(first.getComparedTableCount(), unknown.getComparedTableCount());
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.dbCompare.impl;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+
+import com.vecna.dbDiff.builder.RelationalDatabaseBuilderImpl;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+
+/**
+ * Tests {@link RdbDiffPipeline}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class RdbDiffPipelineTest extends TestCase {
+  private static final CatalogSchema PUBLIC = new CatalogSchema(null, "PUBLIC");
+
+  /**
+   * Create test-db.sql in an in-memory database and apply additional statements.
+   * @param dbName database name.
+   * @param statements additional ddl.
+   * @return a metadata factory connected to the database.
+   */
+  private MetadataFactory createDatabase(String dbName, String... statements) throws Exception {
+    MetadataFactory factory = new ThreadLocalMetadataFactory("jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1", "sa", "");
+    Connection ddlConnection = factory.getMetadata().getConnection();
+    ddlConnection.setAutoCommit(true);
+
+    try (InputStream stream = getClass().getResourceAsStream("/test-db.sql")) {
+      for (String sqlStatement : IOUtils.toString(stream).split(";")) {
+        ddlConnection.createStatement().execute(sqlStatement);
+      }
+    }
+    for (String sqlStatement : statements) {
+      ddlConnection.createStatement().execute(sqlStatement);
+    }
+    return factory;
+  }
+
+  /**
+   * @param errors differences.
+   * @return their messages.
+   */
+  private static List<String> getMessages(List<RdbCompareError> errors) {
+    List<String> messages = new ArrayList<>();
+    for (RdbCompareError error : errors) {
+      messages.add(error.getErrorType() + ": " + error.getMessage());
+    }
+    return messages;
+  }
+
+  /**
+   * The pipeline reports the same differences as {@link RdbDiffEngine#compareRelationalDatabase}, including missing and
+   * unexpected tables, in the same order when the tables are listed by name.
+   * @throws Exception
+   */
+  public void testCompareLikeEngine() throws Exception {
+    try (MetadataFactory refFactory = createDatabase("pipelineRef", "create table audit (id int8 not null)");
+        MetadataFactory testFactory = createDatabase("pipelineTest", "create table a_extra (id int8 not null)",
+                                                     "create table zz_extra (id int8 not null)",
+                                                     "alter table person add column nickname varchar(20)",
+                                                     "drop index name_dob_idx");
+        RelationalDatabaseBuilderImpl refBuilder = new RelationalDatabaseBuilderImpl(refFactory, 2);
+        RelationalDatabaseBuilderImpl testBuilder = new RelationalDatabaseBuilderImpl(testFactory, 2)) {
+      RelationalDatabase refDb = refBuilder.createRelationalDatabase(PUBLIC);
+      RelationalDatabase testDb = testBuilder.createRelationalDatabase(PUBLIC);
+
+      List<String> expected = getMessages(new RdbDiffEngine().compareRelationalDatabase(refDb, testDb));
+      int last = expected.size() - 1;
+      assertTrue("no differences in PERSON: " + expected, last > 3);
+      assertTrue(expected.get(0), expected.get(0).contains("A_EXTRA"));
+      assertTrue(expected.get(last - 1), expected.get(last - 1).contains("ZZ_EXTRA"));
+      assertTrue(expected.get(last), expected.get(last).contains("AUDIT"));
+
+      assertEquals(expected, getMessages(new RdbDiffPipeline().compare(refBuilder, PUBLIC, testBuilder, PUBLIC)));
+      assertEquals(expected, getMessages(new RdbDiffPipeline().compare(refDb, testBuilder, PUBLIC)));
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fingerprint;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareErrorType;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link SchemaFingerprinter}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SchemaFingerprinterTest extends TestCase {
+  private static Column column(CatalogSchema catalogSchema, String table, String name, int ordinal, int type,
+                               String typeName, Boolean nullable) {
+    Column column = new Column(catalogSchema, name, table);
+    column.setColumnType(new ColumnType(type, typeName));
+    column.setOrdinal(ordinal);
+    column.setIsNullable(nullable);
+    return column;
+  }
+
+  private static RelationalDatabase createDatabase(CatalogSchema catalogSchema, boolean nullableName) throws Exception {
+    RelationalTable person = new RelationalTable(catalogSchema, "person");
+    Column id = column(catalogSchema, "person", "id", 1, Types.BIGINT, "int8", false);
+    Column name = column(catalogSchema, "person", "name", 2, Types.VARCHAR, "varchar", nullableName);
+    name.setColumnSize(255);
+    person.setColumns(Arrays.asList(id, name));
+    person.setPkColumns(Arrays.asList("id"));
+    person.setFks(new HashSet<ForeignKey>());
+    RelationalIndex nameIdx = new RelationalIndex(catalogSchema, "name_idx");
+    nameIdx.setColumns(Arrays.asList(name));
+    person.setIndices(Arrays.asList(nameIdx));
+
+    RelationalTable relatives = new RelationalTable(catalogSchema, "person_relatives");
+    relatives.setColumns(Arrays.asList(column(catalogSchema, "person_relatives", "person_id", 1, Types.BIGINT, "int8",
+                                              false)));
+    ForeignKey fk = new ForeignKey();
+    fk.setFkName("fk_person");
+    fk.setKeySeq("1");
+    fk.setFkCatalogSchema(catalogSchema);
+    fk.setFkTable("person_relatives");
+    fk.setFkColumn("person_id");
+    fk.setPkCatalogSchema(catalogSchema);
+    fk.setPkTable("person");
+    fk.setPkColumn("id");
+    relatives.setFks(new HashSet<>(Arrays.asList(fk)));
+    relatives.setIndices(Collections.<RelationalIndex>emptyList());
+
+    return new RelationalDatabase(Arrays.asList(relatives, person));
+  }
+
+  /**
+   * Identical schemas have the same fingerprints and aren't compared table by table.
+   * @throws Exception
+   */
+  public void testIdenticalSchemas() throws Exception {
+    RelationalDatabase ref = createDatabase(CatalogSchema.defaultCatalogSchema(), true);
+    RelationalDatabase test = createDatabase(CatalogSchema.defaultCatalogSchema(), true);
+
+    SchemaFingerprinter fingerprinter = new SchemaFingerprinter();
+    assertEquals(fingerprinter.getDatabaseFingerprint(ref), fingerprinter.getDatabaseFingerprint(test));
+
+    RdbDiffEngine engine = new RdbDiffEngine();
+    engine.setFingerprinter(fingerprinter);
+    assertTrue(engine.compareRelationalDatabase(ref, test).isEmpty());
+  }
+
+  /**
+   * The catalog/schema of a table doesn't affect its fingerprint (unlike the catalog/schema referenced by its foreign keys).
+   * @throws Exception
+   */
+  public void testCatalogSchemaIgnored() throws Exception {
+    RelationalDatabase ref = createDatabase(new CatalogSchema("ref", "public"), true);
+    RelationalDatabase test = createDatabase(new CatalogSchema("test", "public"), true);
+
+    SchemaFingerprinter fingerprinter = new SchemaFingerprinter();
+    assertEquals(fingerprinter.getTableFingerprint(ref.getTableByName("person")),
+                 fingerprinter.getTableFingerprint(test.getTableByName("person")));
+    assertFalse(fingerprinter.getTableFingerprint(ref.getTableByName("person_relatives"))
+                .equals(fingerprinter.getTableFingerprint(test.getTableByName("person_relatives"))));
+  }
+
+  /**
+   * A schema-relative fingerprint also ignores foreign keys pointing to the schema of their own table.
+   * @throws Exception
+   */
+  public void testSchemaRelative() throws Exception {
+    RelationalDatabase ref = createDatabase(new CatalogSchema("db", "tenant_a"), true);
+    RelationalDatabase test = createDatabase(new CatalogSchema("db", "tenant_b"), true);
+
+    SchemaFingerprinter fingerprinter = new SchemaFingerprinter(null, true);
+    assertEquals(fingerprinter.getDatabaseFingerprint(ref), fingerprinter.getDatabaseFingerprint(test));
+    assertFalse(new SchemaFingerprinter().getDatabaseFingerprint(ref)
+                .equals(new SchemaFingerprinter().getDatabaseFingerprint(test)));
+  }
+
+  /**
+   * A changed column changes the fingerprints of its table and the database, but not of the other tables.
+   * @throws Exception
+   */
+  public void testChangedColumn() throws Exception {
+    RelationalDatabase ref = createDatabase(CatalogSchema.defaultCatalogSchema(), true);
+    RelationalDatabase test = createDatabase(CatalogSchema.defaultCatalogSchema(), false);
+
+    SchemaFingerprinter fingerprinter = new SchemaFingerprinter();
+    assertFalse(fingerprinter.getDatabaseFingerprint(ref).equals(fingerprinter.getDatabaseFingerprint(test)));
+    assertFalse(fingerprinter.getTableFingerprint(ref.getTableByName("person"))
+                .equals(fingerprinter.getTableFingerprint(test.getTableByName("person"))));
+    assertEquals(fingerprinter.getTableFingerprint(ref.getTableByName("person_relatives")),
+                 fingerprinter.getTableFingerprint(test.getTableByName("person_relatives")));
+
+    RdbDiffEngine engine = new RdbDiffEngine();
+    engine.setFingerprinter(fingerprinter);
+    List<RdbCompareError> errors = engine.compareRelationalDatabase(ref, test);
+    assertEquals(1, errors.size());
+    assertEquals(RdbCompareErrorType.COL_NULLABLE_MISMATCH, errors.get(0).getErrorType());
+    assertEquals(new RdbDiffEngine().compareRelationalDatabase(ref, test).get(0).getMessage(), errors.get(0).getMessage());
+  }
+
+  /**
+   * Fingerprinting in parallel gives the same result.
+   * @throws Exception
+   */
+  public void testParallel() throws Exception {
+    RelationalDatabase database = createDatabase(CatalogSchema.defaultCatalogSchema(), true);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      assertEquals(new SchemaFingerprinter().getDatabaseFingerprint(database),
+                   new SchemaFingerprinter(executor).getDatabaseFingerprint(database));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
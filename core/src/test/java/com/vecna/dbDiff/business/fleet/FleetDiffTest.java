@@ -0,0 +1,205 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.business.fleet;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.builder.RelationalDatabaseReadException;
+import com.vecna.dbDiff.builder.RelationalTableListener;
+import com.vecna.dbDiff.builder.StreamingRelationalDatabaseBuilder;
+import com.vecna.dbDiff.builder.TableFilter;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareErrorType;
+import com.vecna.dbDiff.jdbc.MetadataFactory;
+import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link FleetDiff} with simulated targets. The url of a target says how it behaves: "match", "drift", "slow" or
+ * "broken".
+ *
+ * @author ogolberg@vecna.com
+ */
+public class FleetDiffTest extends TestCase {
+  private static final CatalogSchema CATALOG_SCHEMA = CatalogSchema.defaultCatalogSchema();
+
+  private static RelationalTable createTable(String... columnNames) {
+    RelationalTable table = new RelationalTable(CATALOG_SCHEMA, "person");
+    List<Column> columns = new ArrayList<>();
+    for (int i = 0; i < columnNames.length; i++) {
+      Column column = new Column(CATALOG_SCHEMA, columnNames[i], "person");
+      column.setColumnType(new ColumnType(Types.BIGINT, "int8"));
+      column.setOrdinal(i + 1);
+      columns.add(column);
+    }
+    table.setColumns(columns);
+    table.setFks(new HashSet<ForeignKey>());
+    table.setIndices(Collections.<RelationalIndex>emptyList());
+    return table;
+  }
+
+  private final AtomicInteger m_openConnections = new AtomicInteger();
+  private final AtomicInteger m_maxOpenConnections = new AtomicInteger();
+
+  private FleetDiff createFleetDiff(int maxConnections) {
+    return new FleetDiff(maxConnections) {
+      @Override
+      protected MetadataFactory createMetadataFactory(FleetTarget target, int connections) {
+        int open = m_openConnections.addAndGet(connections);
+        synchronized (m_maxOpenConnections) {
+          m_maxOpenConnections.set(Math.max(open, m_maxOpenConnections.get()));
+        }
+        final int released = connections;
+        return new ThreadLocalMetadataFactory(null, null, null) {
+          @Override
+          public void close() {
+            m_openConnections.addAndGet(-released);
+          }
+        };
+      }
+
+      @Override
+      protected StreamingRelationalDatabaseBuilder createBuilder(final FleetTarget target, MetadataFactory metadataFactory,
+                                                                 int parallelism) {
+        return new StreamingRelationalDatabaseBuilder() {
+          @Override
+          public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public RelationalDatabase createRelationalDatabase(CatalogSchema catalogSchema, TableFilter filter) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public void readRelationalTables(CatalogSchema catalogSchema, RelationalTableListener listener) {
+            String behavior = target.getJdbcUrl();
+            if ("slow".equals(behavior)) {
+              try {
+                Thread.sleep(10000);
+              } catch (InterruptedException e) {
+                throw new RelationalDatabaseReadException(e);
+              }
+            } else if ("broken".equals(behavior)) {
+              throw new RelationalDatabaseReadException("connection refused");
+            }
+            listener.tableRead("drift".equals(behavior) ? createTable("id") : createTable("id", "name"));
+          }
+
+          @Override
+          public void readRelationalTables(CatalogSchema catalogSchema, TableFilter filter,
+                                           RelationalTableListener listener) {
+            readRelationalTables(catalogSchema, listener);
+          }
+
+          @Override
+          public void close() {
+          }
+        };
+      }
+    };
+  }
+
+  private static List<FleetTarget> createTargets(String... behaviors) {
+    List<FleetTarget> targets = new ArrayList<>();
+    for (int i = 0; i < behaviors.length; i++) {
+      targets.add(new FleetTarget("db" + i, "test.Driver", behaviors[i], null, null, CATALOG_SCHEMA));
+    }
+    return targets;
+  }
+
+  /**
+   * Targets with the same differences are grouped.
+   * @throws Exception
+   */
+  public void testGrouping() throws Exception {
+    RelationalDatabase refDb = new RelationalDatabase(Arrays.asList(createTable("id", "name")));
+    List<FleetTarget> targets = createTargets("match", "drift", "match", "broken", "match", "drift");
+
+    FleetReport report = createFleetDiff(2).compare(refDb, targets);
+
+    assertEquals(2, report.getGroups().size());
+    assertEquals(Arrays.asList(targets.get(0), targets.get(2), targets.get(4)), report.getMatchingTargets());
+
+    FleetReport.Group drift = report.getGroups().get(1);
+    assertEquals(Arrays.asList(targets.get(1), targets.get(5)), drift.getTargets());
+    assertEquals(1, drift.getErrors().size());
+    assertEquals(RdbCompareErrorType.MISSING_COLUMN, drift.getErrors().get(0).getErrorType());
+
+    assertEquals(Collections.singleton(targets.get(3)), report.getFailures().keySet());
+    assertTrue(report.getSummary(), report.getSummary().startsWith("3 databases match the reference\n"
+        + "2 databases share 1 difference: [db1, db5]\n"));
+
+    assertTrue("too many connections", m_maxOpenConnections.get() <= 2);
+    assertEquals("connections left open", 0, m_openConnections.get());
+  }
+
+  /**
+   * A target that takes too long fails without holding up the others.
+   * @throws Exception
+   */
+  public void testTimeout() throws Exception {
+    RelationalDatabase refDb = new RelationalDatabase(Arrays.asList(createTable("id", "name")));
+    List<FleetTarget> targets = createTargets("slow", "match");
+
+    FleetDiff fleetDiff = createFleetDiff(2);
+    fleetDiff.setTimeout(200, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    FleetReport report = fleetDiff.compare(refDb, targets);
+
+    assertTrue("the slow target should have been interrupted", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(Arrays.asList(targets.get(1)), report.getMatchingTargets());
+    assertTrue(report.getFailures().get(targets.get(0)).getMessage().contains("within 200 ms"));
+  }
+
+  /**
+   * A target can't use more connections than the whole fleet diff, otherwise the connection cap would be exceeded.
+   */
+  public void testConnectionsPerTarget() {
+    FleetDiff fleetDiff = new FleetDiff(4);
+    fleetDiff.setConnectionsPerTarget(4);
+
+    try {
+      fleetDiff.setConnectionsPerTarget(5);
+      fail("more connections per target than in total");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    try {
+      fleetDiff.setConnectionsPerTarget(0);
+      fail("no connections per target");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.business.fleet;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareErrorType;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link TenantSchemaComparator}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class TenantSchemaComparatorTest extends TestCase {
+  private static final CatalogSchema TEMPLATE = new CatalogSchema("db", "template");
+
+  private static Column column(CatalogSchema catalogSchema, String table, String name, int ordinal, Boolean nullable) {
+    Column column = new Column(catalogSchema, name, table);
+    column.setColumnType(new ColumnType(Types.BIGINT, "int8"));
+    column.setOrdinal(ordinal);
+    column.setIsNullable(nullable);
+    return column;
+  }
+
+  private static RelationalDatabase createDatabase(CatalogSchema catalogSchema, boolean nullableId) throws Exception {
+    RelationalTable person = new RelationalTable(catalogSchema, "person");
+    Column id = column(catalogSchema, "person", "id", 1, nullableId);
+    person.setColumns(Arrays.asList(id));
+    person.setPkColumns(Arrays.asList("id"));
+    person.setFks(new HashSet<ForeignKey>());
+    RelationalIndex idIdx = new RelationalIndex(catalogSchema, "id_idx");
+    idIdx.setColumns(Arrays.asList(id));
+    person.setIndices(Arrays.asList(idIdx));
+
+    RelationalTable relatives = new RelationalTable(catalogSchema, "person_relatives");
+    relatives.setColumns(Arrays.asList(column(catalogSchema, "person_relatives", "person_id", 1, false)));
+    ForeignKey fk = new ForeignKey();
+    fk.setFkName("fk_person");
+    fk.setKeySeq("1");
+    fk.setFkCatalogSchema(catalogSchema);
+    fk.setFkTable("person_relatives");
+    fk.setFkColumn("person_id");
+    fk.setPkCatalogSchema(catalogSchema);
+    fk.setPkTable("person");
+    fk.setPkColumn("id");
+    relatives.setFks(new HashSet<>(Arrays.asList(fk)));
+    relatives.setIndices(Collections.<RelationalIndex>emptyList());
+
+    return new RelationalDatabase(Arrays.asList(person, relatives));
+  }
+
+  /**
+   * Tenants with the same shape are grouped and each shape is diffed once.
+   * @throws Exception
+   */
+  public void testGroups() throws Exception {
+    final AtomicInteger comparisons = new AtomicInteger();
+    RdbDiffEngine engine = new RdbDiffEngine() {
+      @Override
+      public List<RdbCompareError> compareRelationalDatabase(RelationalDatabase refDb, RelationalDatabase testDb) {
+        comparisons.incrementAndGet();
+        return super.compareRelationalDatabase(refDb, testDb);
+      }
+    };
+
+    TenantSchemaComparator comparator = new TenantSchemaComparator(TEMPLATE, createDatabase(TEMPLATE, false), engine);
+    CatalogSchema a = new CatalogSchema("db", "tenant_a");
+    CatalogSchema b = new CatalogSchema("db", "tenant_b");
+    CatalogSchema c = new CatalogSchema("db", "tenant_c");
+    CatalogSchema d = new CatalogSchema("db", "tenant_d");
+    comparator.addTenant(a, createDatabase(a, false));
+    comparator.addTenant(b, createDatabase(b, true));
+    comparator.addTenant(c, createDatabase(c, false));
+    comparator.addTenant(d, createDatabase(d, true));
+
+    List<TenantSchemaComparator.Group> groups = comparator.getGroups();
+    assertEquals(2, groups.size());
+    assertEquals(Arrays.asList(a, c), groups.get(0).getTenants());
+    assertTrue("foreign keys within a tenant should match the template", groups.get(0).getErrors().isEmpty());
+    assertEquals(Arrays.asList(b, d), groups.get(1).getTenants());
+    assertEquals(1, groups.get(1).getErrors().size());
+    assertEquals(RdbCompareErrorType.COL_NULLABLE_MISMATCH, groups.get(1).getErrors().get(0).getErrorType());
+
+    assertEquals("only the drifted shape should be diffed", 1, comparisons.get());
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.vecna.dbDiff.jdbc;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link PooledMetadataFactory}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class PooledMetadataFactoryTest extends TestCase {
+  /**
+   * A thread waits a bounded time for a borrowed connection and gets it once it's released.
+   * @throws Exception
+   */
+  public void testBorrowTimeout() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (final PooledMetadataFactory factory = new PooledMetadataFactory("jdbc:h2:mem:testPoolTimeout;DB_CLOSE_DELAY=-1",
+                                                                         "sa", "", 1)) {
+      factory.setBorrowTimeout(100, TimeUnit.MILLISECONDS);
+      Callable<Void> borrow = new Callable<Void>() {
+        @Override
+        public Void call() {
+          try {
+            factory.getMetadata();
+          } finally {
+            MetadataFactories.releaseMetadata(factory);
+          }
+          return null;
+        }
+      };
+
+      factory.getMetadata();
+      try {
+        executor.submit(borrow).get();
+        fail("the only connection is borrowed");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+
+      factory.releaseMetadata();
+      executor.submit(borrow).get();
+      assertEquals(1, factory.getOpenConnections());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
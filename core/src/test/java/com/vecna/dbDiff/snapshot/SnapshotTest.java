@@ -0,0 +1,260 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.vecna.dbDiff.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareErrorType;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.ColumnType;
+import com.vecna.dbDiff.model.db.Column;
+import com.vecna.dbDiff.model.db.ForeignKey;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+import com.vecna.dbDiff.model.relationalDb.RelationalIndex;
+import com.vecna.dbDiff.model.relationalDb.RelationalTable;
+
+/**
+ * Tests {@link SnapshotWriter} and {@link SnapshotReader}.
+ *
+ * @author ogolberg@vecna.com
+ */
+public class SnapshotTest extends TestCase {
+  private static final CatalogSchema CATALOG_SCHEMA = new CatalogSchema("test", "public");
+
+  private static Column column(String table, String name, int ordinal, int type, String typeName, Boolean nullable) {
+    Column column = new Column(CATALOG_SCHEMA, name, table);
+    column.setColumnType(new ColumnType(type, typeName));
+    column.setOrdinal(ordinal);
+    column.setIsNullable(nullable);
+    return column;
+  }
+
+  private static RelationalDatabase createDatabase() {
+    RelationalTable person = new RelationalTable(CATALOG_SCHEMA, "person");
+    person.setType("TABLE");
+    Column id = column("person", "id", 1, Types.BIGINT, "int8", false);
+    Column name = column("person", "name", 2, Types.VARCHAR, "varchar", true);
+    name.setColumnSize(255);
+    name.setDefault("'nobody'::character varying");
+    Column dob = column("person", "dob", 3, Types.TIMESTAMP, "timestamp", null);
+    person.setColumns(Arrays.asList(id, name, dob));
+    person.setPkColumns(Arrays.asList("id"));
+    person.setFks(new HashSet<ForeignKey>());
+
+    RelationalIndex nameDobIdx = new RelationalIndex(CATALOG_SCHEMA, "name_dob_idx");
+    nameDobIdx.setColumns(Arrays.asList(name, dob));
+    person.setIndices(Arrays.asList(nameDobIdx));
+
+    RelationalTable relatives = new RelationalTable(CATALOG_SCHEMA, "person_relatives");
+    relatives.setType("TABLE");
+    relatives.setColumns(Arrays.asList(column("person_relatives", "person_id", 1, Types.BIGINT, "int8", false)));
+    relatives.setPkColumns(null);
+
+    ForeignKey fk = new ForeignKey();
+    fk.setFkName("fk_person");
+    fk.setKeySeq("1");
+    fk.setFkCatalogSchema(CATALOG_SCHEMA);
+    fk.setFkTable("person_relatives");
+    fk.setFkColumn("person_id");
+    fk.setPkCatalogSchema(CATALOG_SCHEMA);
+    fk.setPkTable("person");
+    fk.setPkColumn("id");
+    relatives.setFks(new HashSet<>(Arrays.asList(fk)));
+    relatives.setIndices(Collections.<RelationalIndex>emptyList());
+
+    return new RelationalDatabase(Arrays.asList(person, relatives));
+  }
+
+  private File writeSnapshot(RelationalDatabase database) throws Exception {
+    File file = File.createTempFile("schema", ".snapshot");
+    file.deleteOnExit();
+    new SnapshotWriter().write(database, file);
+    return file;
+  }
+
+  /**
+   * Save a database and load it back.
+   * @throws Exception
+   */
+  public void testRoundTrip() throws Exception {
+    RelationalDatabase database = createDatabase();
+
+    RelationalDatabase loaded;
+    try (SnapshotReader reader = new SnapshotReader(writeSnapshot(database))) {
+      assertEquals(Arrays.asList("person", "person_relatives"), new ArrayList<>(reader.getTableNames()));
+      loaded = reader.loadDatabase();
+    }
+
+    assertTrue("loaded schema differs", new RdbDiffEngine().compareRelationalDatabase(database, loaded).isEmpty());
+    assertTrue("loaded schema differs", new RdbDiffEngine().compareRelationalDatabase(loaded, database).isEmpty());
+
+    RelationalTable person = loaded.getTableByName("person");
+    assertEquals(CATALOG_SCHEMA, person.getCatalogSchema());
+    assertEquals("TABLE", person.getType());
+    assertNull(person.getTypeName());
+
+    List<Column> columns = new ArrayList<>(person.getColumns());
+    assertEquals(Arrays.asList("id", "name", "dob"), person.getColumnNames());
+    assertEquals(Boolean.FALSE, columns.get(0).getIsNullable());
+    assertNull(columns.get(0).getColumnSize());
+    assertEquals(Integer.valueOf(255), columns.get(1).getColumnSize());
+    assertEquals("'nobody'::character varying", columns.get(1).getDefault());
+    assertNull(columns.get(2).getIsNullable());
+    assertEquals(new ColumnType(Types.TIMESTAMP, "timestamp"), columns.get(2).getColumnType());
+    assertEquals("person", columns.get(2).getTable());
+
+    RelationalIndex index = person.getIndices().iterator().next();
+    assertEquals("name_dob_idx", index.getName());
+    assertSame("index columns should be the table columns", columns.get(1), index.getColumnByName("name"));
+
+    RelationalTable relatives = loaded.getTableByName("person_relatives");
+    assertNull(relatives.getPkColumns());
+    assertEquals("person", relatives.getFksByName("fk_person").iterator().next().getPkTable());
+  }
+
+  /**
+   * Load tables with compact column storage.
+   * @throws Exception
+   */
+  public void testCompactColumns() throws Exception {
+    RelationalDatabase database = createDatabase();
+
+    RelationalDatabase loaded;
+    try (SnapshotReader reader = new SnapshotReader(writeSnapshot(database))) {
+      reader.setCompactColumns(true);
+      loaded = reader.loadDatabase();
+    }
+
+    assertTrue("loaded schema differs", new RdbDiffEngine().compareRelationalDatabase(database, loaded).isEmpty());
+    assertTrue("loaded schema differs", new RdbDiffEngine().compareRelationalDatabase(loaded, database).isEmpty());
+
+    RelationalTable person = loaded.getTableByName("person");
+    assertTrue(person.isCompact());
+    assertEquals(Arrays.asList("id", "name", "dob"), person.getColumnNames());
+    Column name = person.getColumnByName("name");
+    assertEquals(Integer.valueOf(2), name.getOrdinal());
+    assertEquals(Integer.valueOf(255), name.getColumnSize());
+    assertEquals("'nobody'::character varying", name.getDefault());
+    assertNull(person.getColumnByName("dob").getIsNullable());
+    assertNull(person.getColumnByName("no_such_column"));
+
+    RelationalIndex index = person.getIndices().iterator().next();
+    assertTrue(index.isCompact());
+    assertEquals(Arrays.asList("name", "dob"), index.getColumnNames());
+
+    person.setColumns(Arrays.asList(column("person", "age", 4, Types.INTEGER, "int4", true)));
+    assertFalse("setting columns should switch back to regular storage", person.isCompact());
+    assertEquals(Arrays.asList("id", "name", "dob", "age"), person.getColumnNames());
+  }
+
+  /**
+   * Compact tables share column types and are compared from their arrays.
+   * @throws Exception
+   */
+  public void testCompareCompactColumns() throws Exception {
+    File file = writeSnapshot(createDatabase());
+    RelationalDatabase first;
+    RelationalDatabase second;
+    try (SnapshotReader reader = new SnapshotReader(file)) {
+      reader.setCompactColumns(true);
+      first = reader.loadDatabase();
+    }
+    try (SnapshotReader reader = new SnapshotReader(file)) {
+      reader.setCompactColumns(true);
+      second = reader.loadDatabase();
+    }
+
+    RelationalTable person = first.getTableByName("person");
+    assertSame(person.getColumnByName("name").getColumnType(), person.getColumnByName("name").getColumnType());
+    assertTrue(person.hasSameColumns(second.getTableByName("person")));
+    assertFalse(person.hasSameColumns(first.getTableByName("person_relatives")));
+    assertTrue(new RdbDiffEngine().compareRelationalDatabase(first, second).isEmpty());
+
+    RelationalDatabase changed = createDatabase();
+    changed.getTableByName("person").getColumnByName("name").setColumnSize(100);
+    changed.getTableByName("person").compactColumns();
+    assertFalse(person.hasSameColumns(changed.getTableByName("person")));
+
+    List<RdbCompareError> errors = new RdbDiffEngine().compareRelationalDatabase(first, changed);
+    assertEquals(1, errors.size());
+    assertEquals(RdbCompareErrorType.COL_SIZE_MISMATCH, errors.get(0).getErrorType());
+  }
+
+  /**
+   * Load a single table.
+   * @throws Exception
+   */
+  public void testLoadTable() throws Exception {
+    try (SnapshotReader reader = new SnapshotReader(writeSnapshot(createDatabase()))) {
+      RelationalTable relatives = reader.loadTable("person_relatives");
+      assertEquals(Arrays.asList("person_id"), relatives.getColumnNames());
+      assertNull(reader.loadTable("no_such_table"));
+    }
+  }
+
+  /**
+   * Load the tables one at a time in name order.
+   * @throws Exception
+   */
+  public void testIterateTables() throws Exception {
+    RelationalDatabase database = createDatabase();
+    RelationalTable extra = new RelationalTable(CATALOG_SCHEMA, "address");
+    extra.setColumns(Arrays.asList(column("address", "street", 1, Types.VARCHAR, "varchar", true)));
+    extra.setFks(new HashSet<ForeignKey>());
+    extra.setIndices(Collections.<RelationalIndex>emptyList());
+    List<RelationalTable> tables = new ArrayList<>(database.getTables());
+    tables.add(extra);
+
+    try (SnapshotReader reader = new SnapshotReader(writeSnapshot(new RelationalDatabase(tables)))) {
+      List<String> names = new ArrayList<>();
+      for (Iterator<RelationalTable> iterator = reader.iterateTables(); iterator.hasNext();) {
+        names.add(iterator.next().getName());
+      }
+      assertEquals(Arrays.asList("address", "person", "person_relatives"), names);
+
+      assertTrue("loaded schema differs", new RdbDiffEngine().compareSortedTables(reader.iterateTables(),
+                                                                                  reader.iterateTables()).isEmpty());
+    }
+  }
+
+  /**
+   * Reject files that aren't snapshots.
+   * @throws Exception
+   */
+  public void testNotASnapshot() throws Exception {
+    File file = File.createTempFile("schema", ".snapshot");
+    file.deleteOnExit();
+    try {
+      new SnapshotReader(file).close();
+      fail("an empty file is not a snapshot");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
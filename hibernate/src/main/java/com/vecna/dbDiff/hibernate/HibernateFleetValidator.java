@@ -0,0 +1,64 @@
+/**
+ * Copyright 2011 Vecna Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+*/
+
+package com.vecna.dbDiff.hibernate;
+
+import java.util.List;
+
+import org.hibernate.cfg.Configuration;
+
+import com.vecna.dbDiff.business.catalogSchema.impl.DefaultCatalogSchemaResolverFactory;
+import com.vecna.dbDiff.business.fleet.FleetDiff;
+import com.vecna.dbDiff.business.fleet.FleetReport;
+import com.vecna.dbDiff.business.fleet.FleetTarget;
+import com.vecna.dbDiff.model.CatalogSchema;
+import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
+
+/**
+ * Compares hibernate configuration schema to the schemas of many live databases. The hibernate mappings are converted
+ * once and the result is shared by all comparisons.
+ * @author ogolberg@vecna.com
+ */
+public class HibernateFleetValidator {
+  private final Configuration m_configuration;
+  private final FleetDiff m_fleetDiff;
+
+  /**
+   * Create a new instance
+   * @param configuration hibernate configuration; its connection properties determine the dialect-specific mapping.
+   * @param fleetDiff compares the databases.
+   */
+  public HibernateFleetValidator(Configuration configuration, FleetDiff fleetDiff) {
+    m_configuration = configuration;
+    m_fleetDiff = fleetDiff;
+  }
+
+  /**
+   * Compare schemas
+   * @param targets the databases to validate.
+   * @return the differences of each database, grouped by database.
+   */
+  public FleetReport validate(List<FleetTarget> targets) {
+    String jdbcDriver = m_configuration.getProperty("hibernate.connection.driver_class");
+    String jdbcUrl = m_configuration.getProperty("hibernate.connection.url");
+
+    CatalogSchema catalogSchema = DefaultCatalogSchemaResolverFactory.getCatalogSchemaResolver()
+    .resolveCatalogSchema(jdbcDriver, jdbcUrl);
+
+    RelationalDatabase hibernateSchema = new HibernateMappingsConverter(catalogSchema, m_configuration).convert();
+    return m_fleetDiff.compare(hibernateSchema, targets);
+  }
+}
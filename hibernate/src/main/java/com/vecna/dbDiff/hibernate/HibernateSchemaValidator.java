@@ -22,11 +22,13 @@ import java.util.List;
 
 import org.hibernate.cfg.Configuration;
 
-import com.vecna.dbDiff.builder.RelationalDatabaseBuilder;
+import com.vecna.dbDiff.builder.DefaultRelationalDatabaseBuilderFactory;
 import com.vecna.dbDiff.builder.RelationalDatabaseBuilderImpl;
+import com.vecna.dbDiff.builder.StreamingRelationalDatabaseBuilder;
 import com.vecna.dbDiff.business.catalogSchema.impl.DefaultCatalogSchemaResolverFactory;
 import com.vecna.dbDiff.business.dbCompare.impl.RdbCompareError;
 import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffEngine;
+import com.vecna.dbDiff.business.dbCompare.impl.RdbDiffPipeline;
 import com.vecna.dbDiff.jdbc.ThreadLocalMetadataFactory;
 import com.vecna.dbDiff.model.CatalogSchema;
 import com.vecna.dbDiff.model.relationalDb.RelationalDatabase;
@@ -54,20 +56,12 @@ public class HibernateSchemaValidator {
    * @throws SQLException if live schema can't be retrieved
    */
   public List<RdbCompareError> validate() throws InconsistentSchemaException, SQLException {
-    String jdbcDriver = m_configuration.getProperty("hibernate.connection.driver_class");
-    String jdbcUrl = m_configuration.getProperty("hibernate.connection.url");
-    String jdbcUser = m_configuration.getProperty("hibernate.connection.username");
-    String jdbcPassword = m_configuration.getProperty("hibernate.connection.password");
-
-    CatalogSchema catalogSchema = DefaultCatalogSchemaResolverFactory.getCatalogSchemaResolver()
-    .resolveCatalogSchema(jdbcDriver, jdbcUrl);
-
-    RelationalDatabase hibernateSchema = new HibernateMappingsConverter(catalogSchema, m_configuration).convert();
+    RelationalDatabase hibernateSchema = convertMappings();
 
     RelationalDatabase liveSchema;
 
-    try (ThreadLocalMetadataFactory factory = new ThreadLocalMetadataFactory(jdbcUrl, jdbcUser, jdbcPassword)) {
-      RelationalDatabaseBuilder builder = new RelationalDatabaseBuilderImpl(factory);
+    try (ThreadLocalMetadataFactory factory = createMetadataFactory();
+        RelationalDatabaseBuilderImpl builder = new RelationalDatabaseBuilderImpl(factory)) {
       liveSchema = builder.createRelationalDatabase(CatalogSchema.defaultCatalogSchema());
     } catch (IOException e) {
       throw new SQLException(e);
@@ -75,4 +69,48 @@ public class HibernateSchemaValidator {
 
     return new RdbDiffEngine().compareRelationalDatabase(hibernateSchema, liveSchema);
   }
+
+  /**
+   * Compare schemas, reading the live schema with the fastest reader available for the driver (see
+   * {@link DefaultRelationalDatabaseBuilderFactory}) and comparing its tables as they're read. The differences are the
+   * same as the ones of {@link #validate()}, but they're ordered as described in {@link RdbDiffPipeline}.
+   * @return list of schema differences
+   * @throws InconsistentSchemaException if schemas can't be retrieved/built
+   * @throws SQLException if live schema can't be retrieved
+   */
+  public List<RdbCompareError> validateStreaming() throws InconsistentSchemaException, SQLException {
+    RelationalDatabase hibernateSchema = convertMappings();
+
+    // live tables are compared as they're read
+    try (ThreadLocalMetadataFactory factory = createMetadataFactory();
+        StreamingRelationalDatabaseBuilder builder = DefaultRelationalDatabaseBuilderFactory.getRelationalDatabaseBuilder(
+            m_configuration.getProperty("hibernate.connection.driver_class"), factory)) {
+      return new RdbDiffPipeline().compare(hibernateSchema, builder, CatalogSchema.defaultCatalogSchema());
+    } catch (IOException e) {
+      throw new SQLException(e);
+    }
+  }
+
+  /**
+   * @return the schema described by the hibernate mappings.
+   * @throws InconsistentSchemaException if the schema can't be built
+   */
+  private RelationalDatabase convertMappings() throws InconsistentSchemaException {
+    String jdbcDriver = m_configuration.getProperty("hibernate.connection.driver_class");
+    String jdbcUrl = m_configuration.getProperty("hibernate.connection.url");
+
+    CatalogSchema catalogSchema = DefaultCatalogSchemaResolverFactory.getCatalogSchemaResolver()
+    .resolveCatalogSchema(jdbcDriver, jdbcUrl);
+
+    return new HibernateMappingsConverter(catalogSchema, m_configuration).convert();
+  }
+
+  /**
+   * @return a metadata factory connected to the live database.
+   */
+  private ThreadLocalMetadataFactory createMetadataFactory() {
+    return new ThreadLocalMetadataFactory(m_configuration.getProperty("hibernate.connection.url"),
+                                          m_configuration.getProperty("hibernate.connection.username"),
+                                          m_configuration.getProperty("hibernate.connection.password"));
+  }
 }